@@ -9,9 +9,11 @@ import com.ecotale.commands.TopBalanceCommand;
 import com.ecotale.config.EcotaleConfig;
 import com.ecotale.economy.EconomyManager;
 import com.ecotale.hud.BalanceHud;
+import com.ecotale.hud.HudUpdateCoalescer;
 import com.ecotale.lib.vaultunlocked.VaultUnlockedPlugin;
 import com.ecotale.security.SecurityLogger;
 import com.ecotale.storage.H2StorageProvider;
+import com.ecotale.storage.MySQLStorageProvider;
 import com.ecotale.util.PerformanceMonitor;
 import com.hypixel.hytale.common.plugin.PluginIdentifier;
 import com.hypixel.hytale.common.semver.SemverRange;
@@ -47,9 +49,9 @@ public class Main
         super.setup();
         instance = this;
         CONFIG.save();
+        new HudUpdateCoalescer(CONFIG.get().getHudUpdateWindowMs());
         this.economyManager = new EconomyManager(this);
-        H2StorageProvider h2 = this.economyManager.getH2Storage();
-        if (h2 != null) {
+        if (this.economyManager.getH2Storage() != null || this.economyManager.getStorage() instanceof MySQLStorageProvider) {
             this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
                 Thread t = new Thread(r, "Ecotale-TopBalance-Snapshot");
                 t.setDaemon(false);
@@ -58,7 +60,7 @@ public class Main
             LocalTime snapshotTime = Main.parseSnapshotTime((CONFIG.get()).getTopBalanceSnapshotTime());
             ZoneId zoneId = Main.parseSnapshotZone((CONFIG.get()).getTopBalanceSnapshotTimeZone());
             long initialDelay = Main.computeInitialDelayMillis(snapshotTime, zoneId);
-            this.snapshotScheduler.scheduleAtFixedRate(() -> h2.snapshotForDateAsync(LocalDate.now(zoneId)), initialDelay, TimeUnit.DAYS.toMillis(1L), TimeUnit.MILLISECONDS);
+            this.snapshotScheduler.scheduleAtFixedRate(() -> this.economyManager.snapshotDailyBalances(LocalDate.now(zoneId)), initialDelay, TimeUnit.DAYS.toMillis(1L), TimeUnit.MILLISECONDS);
         }
         EcotaleAPI.init(this.economyManager, (CONFIG.get()).getRateLimitBurst(), (CONFIG.get()).getRateLimitRefill());
         this.initVaultUnlocked();
@@ -71,13 +73,24 @@ public class Main
             Player player = event.getHolder().getComponent(Player.getComponentType());
             PlayerRef playerRef = event.getHolder().getComponent(PlayerRef.getComponentType());
             if (player != null && playerRef != null) {
-                this.economyManager.ensureAccount(playerRef.getUuid());
+                this.economyManager.setOnline(playerRef.getUuid(), true);
+                boolean cached = this.economyManager.getPlayerBalance(playerRef.getUuid()) != null;
+                this.economyManager.ensureAccountAsync(playerRef.getUuid()).thenAccept(balance -> {
+                    // HUD was built from the cache before the account arrived; refresh it with the
+                    // loaded balance. updatePlayerHud posts the rebuild to the player's world thread.
+                    if (!cached && CONFIG.get().isEnableHudDisplay()) {
+                        BalanceHud.updatePlayerHud(playerRef.getUuid(), balance.getBalance(), 0.0);
+                    }
+                }).exceptionally(error -> {
+                    this.getLogger().at(Level.WARNING).log("Failed to load account of %s: %s", (Object) playerRef.getUsername(), (Object) error.getMessage());
+                    return null;
+                });
                 H2StorageProvider h2Storage = this.economyManager.getH2Storage();
                 if (h2Storage != null) {
                     h2Storage.updatePlayerName(playerRef.getUuid(), playerRef.getUsername());
                 }
                 if (CONFIG.get().isEnableHudDisplay()) {
-                    BalanceHud hud = new BalanceHud(playerRef);
+                    BalanceHud hud = BalanceHud.register(playerRef);
                     MultipleHUD.getInstance().setCustomHud(player, playerRef, "ecotale", hud);
                 }
             }
@@ -85,6 +98,11 @@ public class Main
         this.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, event -> {
             PlayerRef playerRef = event.getPlayerRef();
             EcotaleAPI.resetRateLimit(playerRef.getUuid());
+            this.economyManager.setOnline(playerRef.getUuid(), false);
+            BalanceHud.unregister(playerRef.getUuid());
+            if (HudUpdateCoalescer.getInstance() != null) {
+                HudUpdateCoalescer.getInstance().discard(playerRef.getUuid());
+            }
         });
         new PerformanceMonitor();
         this.getLogger().at(Level.INFO).log("Ecotale Economy loaded - HUD balance display active!");
@@ -107,6 +125,9 @@ public class Main
         if (PerformanceMonitor.getInstance() != null) {
             PerformanceMonitor.getInstance().shutdown();
         }
+        if (HudUpdateCoalescer.getInstance() != null) {
+            HudUpdateCoalescer.getInstance().shutdown();
+        }
         if (this.economyManager != null) {
             this.economyManager.shutdown();
         }
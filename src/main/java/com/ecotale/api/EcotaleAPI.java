@@ -43,6 +43,9 @@ public final class EcotaleAPI {
     private static EconomyManager economyManager;
     private static RateLimiter rateLimiter;
     
+    /** Leaderboard page tokens of the in-memory fallback: prefix + next offset. */
+    private static final String CACHE_TOKEN_PREFIX = "c";
+    
     private EcotaleAPI() {}
     
     /**
@@ -100,6 +103,11 @@ public final class EcotaleAPI {
     /**
      * Get a player's current balance.
      * NOT rate limited.
+     * 
+     * Reads the account cache only and never waits on storage, so it is safe on the
+     * world thread. In bounded cache mode (CacheMode Bounded), and while the startup
+     * preload is running, an offline player's account may not be cached and reads as 0;
+     * use {@link #getBalanceMinorAsync(UUID)} for those.
      */
     public static double getBalance(@Nonnull UUID playerUuid) {
         validateAvailable();
@@ -115,6 +123,44 @@ public final class EcotaleAPI {
         return economyManager.hasBalance(playerUuid, amount);
     }
     
+    /**
+     * Get a player's current balance in exact minor units (see {@link #getMinorUnitScale()}).
+     * NOT rate limited.
+     * 
+     * Reads the cache only, like {@link #getBalance(UUID)}.
+     */
+    public static long getBalanceMinor(@Nonnull UUID playerUuid) {
+        validateAvailable();
+        return economyManager.getBalanceMinor(playerUuid);
+    }
+    
+    /**
+     * Get a player's current balance in minor units without blocking: completes
+     * immediately for cached accounts, after a storage read otherwise.
+     * NOT rate limited.
+     */
+    public static java.util.concurrent.CompletableFuture<Long> getBalanceMinorAsync(@Nonnull UUID playerUuid) {
+        validateAvailable();
+        return economyManager.getBalanceMinorAsync(playerUuid);
+    }
+    
+    /**
+     * Check if a player has at least the specified amount in minor units.
+     * NOT rate limited.
+     */
+    public static boolean hasBalanceMinor(@Nonnull UUID playerUuid, long amount) {
+        validateAvailable();
+        return economyManager.hasBalanceMinor(playerUuid, amount);
+    }
+    
+    /**
+     * Number of decimal places in one minor unit (e.g. 2 means amounts are in cents).
+     * NOT rate limited.
+     */
+    public static int getMinorUnitScale() {
+        return com.ecotale.economy.Money.scale();
+    }
+    
     /**
      * Get the currency symbol (e.g., "$").
      * NOT rate limited.
@@ -188,6 +234,19 @@ public final class EcotaleAPI {
         return economyManager.deposit(playerUuid, amount, reason);
     }
     
+    /**
+     * Deposit an exact amount of minor units into a player's account.
+     * 
+     * Rate limited: 50 burst, 10/second sustained.
+     * 
+     * @see #deposit(UUID, double, String)
+     */
+    public static boolean depositMinor(@Nonnull UUID playerUuid, long amount, @Nonnull String reason) {
+        validateAvailable();
+        checkRateLimit(playerUuid);
+        return economyManager.depositMinor(playerUuid, amount, reason);
+    }
+    
     /**
      * Withdraw money from a player's account.
      * 
@@ -205,6 +264,19 @@ public final class EcotaleAPI {
         return economyManager.withdraw(playerUuid, amount, reason);
     }
     
+    /**
+     * Withdraw an exact amount of minor units from a player's account.
+     * 
+     * Rate limited: 50 burst, 10/second sustained.
+     * 
+     * @see #withdraw(UUID, double, String)
+     */
+    public static boolean withdrawMinor(@Nonnull UUID playerUuid, long amount, @Nonnull String reason) {
+        validateAvailable();
+        checkRateLimit(playerUuid);
+        return economyManager.withdrawMinor(playerUuid, amount, reason);
+    }
+    
     /**
      * Transfer money between two players.
      * 
@@ -225,6 +297,36 @@ public final class EcotaleAPI {
         return economyManager.transfer(from, to, amount, reason);
     }
     
+    /**
+     * Apply several deposits/withdrawals atomically: either every operation
+     * succeeds or none does. Events, HUD updates and log writes are coalesced.
+     * 
+     * Rate limited: one token per distinct account in the batch.
+     * 
+     * Example (reward 3 players and charge a fee in one unit):
+     * <pre>
+     * EcotaleAPI.applyBatch(List.of(
+     *     EconomyManager.Operation.deposit(a, 100, "Event reward"),
+     *     EconomyManager.Operation.deposit(b, 100, "Event reward"),
+     *     EconomyManager.Operation.withdraw(host, 200, "Event payout")));
+     * </pre>
+     * 
+     * @param operations Legs to apply, in order
+     * @return BatchResult indicating success or why nothing was applied
+     * @throws EcotaleRateLimitException if rate limit exceeded
+     */
+    public static EconomyManager.BatchResult applyBatch(@Nonnull java.util.List<EconomyManager.Operation> operations) {
+        validateAvailable();
+        java.util.Set<UUID> accounts = new java.util.LinkedHashSet<>();
+        for (EconomyManager.Operation op : operations) {
+            accounts.add(op.player());
+        }
+        for (UUID account : accounts) {
+            checkRateLimit(account);
+        }
+        return economyManager.applyBatch(operations);
+    }
+    
     /**
      * Set a player's balance to a specific amount.
      * Intended for admin/console use only.
@@ -262,21 +364,151 @@ public final class EcotaleAPI {
             return h2.getTopBalances(limit).join();
         }
         // Fallback for other storage providers (uses cache only)
-        return economyManager.getAllBalances().values().stream()
-            .sorted((a, b) -> Double.compare(b.getBalance(), a.getBalance()))
-            .limit(limit)
+        return economyManager.getLeaderboard(limit).stream()
+            .map(java.util.Map.Entry::getValue)
             .toList();
     }
     
     /**
-     * Get all player UUIDs that have economy accounts.
+     * Get one page of the leaderboard, highest balance first.
      * NOT rate limited.
      * 
-     * @return Set of all player UUIDs with accounts
+     * PERFORMANCE: SQL providers seek straight to the page through an index, so
+     * deep pages cost the same as the first one. Other providers page the in-memory
+     * leaderboard.
+     * 
+     * @param pageToken {@code nextToken} of the previous page, or null for the first page
+     * @param limit Maximum number of entries per page
+     * @return The page; {@code nextToken} is null on the last page
+     * @throws IllegalArgumentException If the token did not come from this method
+     */
+    public static com.ecotale.economy.Page<com.ecotale.economy.TopBalanceEntry> getTopBalancesPage(String pageToken, int limit) {
+        validateAvailable();
+        int pageSize = Math.max(1, limit);
+        var storage = com.ecotale.Main.getInstance().getEconomyManager().getStorage();
+        if (storage instanceof com.ecotale.storage.H2StorageProvider h2) {
+            return h2.queryTopBalancesPageAsync(pageToken, pageSize).join();
+        }
+        if (storage instanceof com.ecotale.storage.MySQLStorageProvider mysql) {
+            return mysql.queryTopBalancesPageAsync(pageToken, pageSize).join();
+        }
+        // Fallback for other storage providers (uses cache only); the token is the next offset
+        int offset = 0;
+        if (pageToken != null && !pageToken.isEmpty()) {
+            try {
+                offset = Integer.parseInt(pageToken.substring(CACHE_TOKEN_PREFIX.length()));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token", e);
+            }
+            if (!pageToken.startsWith(CACHE_TOKEN_PREFIX) || offset < 0) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+        }
+        java.util.List<com.ecotale.economy.TopBalanceEntry> items = economyManager.getLeaderboardPage(offset, pageSize).stream()
+            .map(e -> new com.ecotale.economy.TopBalanceEntry(e.uuid(), null, e.balance(), 0.0))
+            .toList();
+        int next = offset + items.size();
+        String nextToken = items.size() == pageSize && next < economyManager.totalAccounts() ? CACHE_TOKEN_PREFIX + next : null;
+        return new com.ecotale.economy.Page<>(items, nextToken);
+    }
+    
+    /**
+     * Get a player's 1-based leaderboard position.
+     * Answered from memory in O(log n); in bounded cache mode (CacheMode Bounded)
+     * counted in storage, blocking the caller; use {@link #getRankAsync(UUID)} there.
+     * NOT rate limited.
+     * 
+     * @return Rank, or -1 if the player has no loaded account
+     */
+    public static int getRank(@Nonnull UUID playerUuid) {
+        validateAvailable();
+        return economyManager.rankOf(playerUuid);
+    }
+    
+    /**
+     * Get a player's 1-based leaderboard position without blocking.
+     * NOT rate limited.
+     * 
+     * @return Rank, or -1 if the player has no loaded account
+     */
+    public static java.util.concurrent.CompletableFuture<Integer> getRankAsync(@Nonnull UUID playerUuid) {
+        validateAvailable();
+        return economyManager.rankOfAsync(playerUuid);
+    }
+    
+    /**
+     * Count accounts with a balance strictly greater than the given amount.
+     * Blocks on storage in bounded cache mode like {@link #getRank(UUID)}.
+     * NOT rate limited.
+     */
+    public static int countAbove(double amount) {
+        validateAvailable();
+        return economyManager.countAbove(amount);
+    }
+    
+    /**
+     * Count accounts with a balance strictly greater than the given amount without blocking.
+     * NOT rate limited.
+     */
+    public static java.util.concurrent.CompletableFuture<Integer> countAboveAsync(double amount) {
+        validateAvailable();
+        return economyManager.countAboveAsync(amount);
+    }
+    
+    /**
+     * Get the number of economy accounts.
+     * NOT rate limited.
+     */
+    public static int getTotalAccounts() {
+        validateAvailable();
+        return economyManager.totalAccounts();
+    }
+    
+    /**
+     * Get running economy totals: money supply, account count, average,
+     * lifetime earned/spent and min/max balance. Reads are O(1)/O(log n)
+     * and never copy the account cache, so this is safe to poll.
+     * NOT rate limited.
+     */
+    public static com.ecotale.economy.EconomyStats getEconomyStats() {
+        validateAvailable();
+        return economyManager.getEconomyStats();
+    }
+    
+    /**
+     * Get the wealth distribution: percentiles (median, p90, p99), Gini coefficient
+     * and account counts per balance bracket. Backed by a histogram that every
+     * balance change updates, so reads never sort the accounts.
+     * NOT rate limited.
+     */
+    public static com.ecotale.economy.WealthDistribution getWealthDistribution() {
+        validateAvailable();
+        return economyManager.getEconomyStats().getDistribution();
+    }
+    
+    /**
+     * Get the UUIDs of the cached economy accounts: every account, except in bounded
+     * cache mode (CacheMode Bounded), where only recently used accounts are cached.
+     * NOT rate limited.
+     * 
+     * @return Unmodifiable live view of the cached player UUIDs (not a copy)
      */
     public static java.util.Set<UUID> getAllPlayerUUIDs() {
         validateAvailable();
-        return economyManager.getAllBalances().keySet();
+        return economyManager.getAccounts().accountIds();
+    }
+    
+    /**
+     * Get a read-only view of the cached accounts: containsAccount, forEachAccount,
+     * a parallel-friendly spliterator and a page-at-a-time cursor.
+     * Backed by the live cache, nothing is copied. In bounded cache mode only the
+     * recently used accounts are cached; see {@link #getTotalAccounts()} for the count
+     * of every account.
+     * NOT rate limited.
+     */
+    public static com.ecotale.economy.AccountView getAccounts() {
+        validateAvailable();
+        return economyManager.getAccounts();
     }
     
     /**
@@ -288,9 +520,7 @@ public final class EcotaleAPI {
      */
     public static double getTotalCirculating() {
         validateAvailable();
-        return economyManager.getAllBalances().values().stream()
-            .mapToDouble(com.ecotale.economy.PlayerBalance::getBalance)
-            .sum();
+        return com.ecotale.economy.Money.toDouble(economyManager.getTotalCirculatingMinor());
     }
     
     /**
@@ -323,6 +553,51 @@ public final class EcotaleAPI {
         return economyManager.getTransactionLogger().getRecentForPlayer(playerUuid, limit);
     }
     
+    /**
+     * Get one page of the persisted transaction log, newest first.
+     * NOT rate limited.
+     * 
+     * With H2 or MySQL storage this pages through the full log using the
+     * (timestamp, id) index. Other providers only have the in-memory ring buffer,
+     * which is returned as a single page without a next token.
+     * 
+     * @param playerFilter Player UUID or case-insensitive name prefix, or null for all players
+     * @param pageToken {@code nextToken} of the previous page with the same filter, or null for the first page
+     * @param limit Maximum number of entries per page
+     * @return The page; {@code nextToken} is null on the last page
+     * @throws IllegalArgumentException If the token did not come from this method
+     * @throws com.ecotale.storage.PlayerFilterTooBroadException If the name prefix matches more
+     *         than 16 players; ask for a longer prefix or a UUID
+     */
+    public static com.ecotale.economy.Page<com.ecotale.economy.TransactionEntry> getTransactionPage(
+            String playerFilter, String pageToken, int limit) {
+        validateAvailable();
+        int pageSize = Math.max(1, limit);
+        var storage = com.ecotale.Main.getInstance().getEconomyManager().getStorage();
+        try {
+            if (storage instanceof com.ecotale.storage.H2StorageProvider h2) {
+                return h2.queryTransactionsPageAsync(playerFilter, pageToken, pageSize).join();
+            }
+            if (storage instanceof com.ecotale.storage.MySQLStorageProvider mysql) {
+                return mysql.queryTransactionsPageAsync(playerFilter, pageToken, pageSize).join();
+            }
+        } catch (java.util.concurrent.CompletionException e) {
+            if (e.getCause() instanceof com.ecotale.storage.PlayerFilterTooBroadException tooBroad) {
+                throw tooBroad;
+            }
+            throw e;
+        }
+        if (pageToken != null && !pageToken.isEmpty()) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        String filter = playerFilter != null ? playerFilter.toLowerCase() : "";
+        java.util.List<com.ecotale.economy.TransactionEntry> items = economyManager.getTransactionLogger().getAll().stream()
+            .filter(e -> filter.isEmpty() || (e.playerName() != null && e.playerName().toLowerCase().startsWith(filter)))
+            .limit(pageSize)
+            .toList();
+        return new com.ecotale.economy.Page<>(items, null);
+    }
+    
     // ========== Physical Coins Provider (Addon) ==========
     
     private static PhysicalCoinsProvider coinsProvider = null;
@@ -1,5 +1,7 @@
 package com.ecotale.api.events;
 
+import com.ecotale.economy.Money;
+
 import javax.annotation.Nonnull;
 import java.util.UUID;
 
@@ -35,21 +37,37 @@ public class BalanceChangeEvent extends EcotaleEvent {
     }
     
     private final UUID playerUuid;
-    private final double oldBalance;
-    private final double newBalance;
+    private final long oldBalance;
+    private final long newBalance;
     private final Cause cause;
     private final String reason;
     
     public BalanceChangeEvent(@Nonnull UUID playerUuid, double oldBalance, 
                                double newBalance, @Nonnull Cause cause, 
                                @Nonnull String reason) {
+        this(playerUuid, cause, reason, Money.toMinor(oldBalance), Money.toMinor(newBalance));
+    }
+    
+    private BalanceChangeEvent(@Nonnull UUID playerUuid, @Nonnull Cause cause, @Nonnull String reason,
+                               long oldBalanceMinor, long newBalanceMinor) {
         this.playerUuid = playerUuid;
-        this.oldBalance = oldBalance;
-        this.newBalance = newBalance;
+        this.oldBalance = oldBalanceMinor;
+        this.newBalance = newBalanceMinor;
         this.cause = cause;
         this.reason = reason;
     }
     
+    /**
+     * Create an event from minor-unit balances (see {@link Money}). A separate factory,
+     * so integer arguments to the constructor keep meaning whole currency units.
+     */
+    @Nonnull
+    public static BalanceChangeEvent ofMinor(@Nonnull UUID playerUuid, long oldBalanceMinor,
+                                             long newBalanceMinor, @Nonnull Cause cause,
+                                             @Nonnull String reason) {
+        return new BalanceChangeEvent(playerUuid, cause, reason, oldBalanceMinor, newBalanceMinor);
+    }
+    
     /**
      * Get the UUID of the player whose balance changed.
      */
@@ -62,6 +80,13 @@ public class BalanceChangeEvent extends EcotaleEvent {
      * Get the balance before the change.
      */
     public double getOldBalance() {
+        return Money.toDouble(oldBalance);
+    }
+    
+    /**
+     * Get the balance before the change, in minor units.
+     */
+    public long getOldBalanceMinor() {
         return oldBalance;
     }
     
@@ -69,6 +94,13 @@ public class BalanceChangeEvent extends EcotaleEvent {
      * Get the balance after the change.
      */
     public double getNewBalance() {
+        return Money.toDouble(newBalance);
+    }
+    
+    /**
+     * Get the balance after the change, in minor units.
+     */
+    public long getNewBalanceMinor() {
         return newBalance;
     }
     
@@ -76,6 +108,13 @@ public class BalanceChangeEvent extends EcotaleEvent {
      * Get the amount changed (positive for increase, negative for decrease).
      */
     public double getDelta() {
+        return Money.toDouble(newBalance - oldBalance);
+    }
+    
+    /**
+     * Get the amount changed in minor units (exact).
+     */
+    public long getDeltaMinor() {
         return newBalance - oldBalance;
     }
     
@@ -3,10 +3,14 @@ package com.ecotale.commands;
 import com.ecotale.Main;
 import com.ecotale.api.PlayerDBService;
 import com.ecotale.config.EcotaleConfig;
+import com.ecotale.economy.EconomyManager;
+import com.ecotale.economy.FlushStats;
 import com.ecotale.economy.PlayerBalance;
 import com.ecotale.gui.EcoAdminGui;
 import com.ecotale.hud.BalanceHud;
 import com.ecotale.storage.H2StorageProvider;
+import com.ecotale.storage.TransactionArchiver;
+import com.ecotale.storage.TransactionLogWriter;
 import com.ecotale.util.PerformanceMonitor;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
@@ -74,7 +78,7 @@ extends AbstractAsyncCommand {
     }
 
     private static void updateHud(UUID playerUuid, double newBalance) {
-        BalanceHud.updatePlayerHud(playerUuid, newBalance, null);
+        BalanceHud.updatePlayerHud(playerUuid, newBalance, 0.0);
     }
 
     private static class EcoSetCommand
@@ -409,14 +413,13 @@ extends AbstractAsyncCommand {
 
         @NonNullDecl
         protected CompletableFuture<Void> executeAsync(@NotNull CommandContext ctx) {
-            Map<UUID, PlayerBalance> balances = Main.getInstance().getEconomyManager().getAllBalances();
-            if (balances.isEmpty()) {
+            List<PlayerBalance> top10 = Main.getInstance().getEconomyManager().getLeaderboard(10).stream().map(Map.Entry::getValue).toList();
+            if (top10.isEmpty()) {
                 ctx.sendMessage(Message.raw("No player balances found").color(Color.GRAY));
                 return CompletableFuture.completedFuture(null);
             }
             ctx.sendMessage(Message.raw("=== Top Balances ===").color(new Color(255, 215, 0)));
             H2StorageProvider h2Storage = Main.getInstance().getEconomyManager().getH2Storage();
-            List<PlayerBalance> top10 = balances.values().stream().sorted(Comparator.comparingDouble(PlayerBalance::getBalance).reversed()).limit(10L).toList();
             List<CompletableFuture<String>> nameFutures = top10.stream().map(balance -> {
                 if (h2Storage != null) {
                     return h2Storage.getPlayerNameAsync(balance.getPlayerUuid()).thenApply(name -> name != null ? name : balance.getPlayerUuid().toString().substring(0, 8) + "...");
@@ -482,6 +485,34 @@ extends AbstractAsyncCommand {
                 Color green = new Color(50, 205, 50);
                 ctx.sendMessage(Message.raw("--- Ecotale Economy Metrics ---").color(gold));
                 ctx.sendMessage(Message.join(Message.raw("Cached Balances: ").color(white), Message.raw((monitor.getCachedPlayers() + " / 1000")).color(green)));
+                EconomyManager economy = Main.getInstance().getEconomyManager();
+                if (!economy.isPreloaded()) {
+                    ctx.sendMessage(Message.join(Message.raw("Preload: ").color(white), Message.raw((economy.getPreloadedCount() + " / " + economy.getStorage().getPlayerCount() + " loaded, missing accounts load on demand")).color(Color.ORANGE)));
+                }
+                if (economy.isBoundedCache()) {
+                    ctx.sendMessage(Message.join(Message.raw("Cache: ").color(white), Message.raw(("bounded, " + economy.getCachedPlayerCount() + " / " + economy.getMaxCachedAccounts() + " accounts, " + economy.getEvictedCount() + " evicted")).color(green)));
+                }
+                FlushStats flush = Main.getInstance().getEconomyManager().getFlushStats();
+                ctx.sendMessage(Message.join(Message.raw("Auto-saves: ").color(white), Message.raw((flush.getFlushes() + " (" + flush.getRowsWritten() + " rows, " + flush.getRowsFailed() + " failed)")).color(green)));
+                ctx.sendMessage(Message.join(Message.raw("Last Save: ").color(white), Message.raw((flush.getLastSize() + " rows in " + flush.getLastDurationMs() + " ms")).color(green)));
+                ctx.sendMessage(Message.join(Message.raw("Save Time: ").color(white), Message.raw((String.format("avg %.1f ms, max %d ms", flush.getAvgDurationMs(), flush.getMaxDurationMs()))).color(green)));
+                if (flush.getBackoff() > 1) {
+                    ctx.sendMessage(Message.join(Message.raw("Save Backoff: ").color(white), Message.raw(("x" + flush.getBackoff() + " (storage slow or failing)")).color(Color.ORANGE)));
+                }
+                TransactionLogWriter txLog = Main.getInstance().getEconomyManager().getTransactionLogger().getLogWriter();
+                if (txLog != null) {
+                    ctx.sendMessage(Message.join(Message.raw("Tx Log: ").color(white), Message.raw((txLog.getWritten() + " written in " + txLog.getFlushes() + " batches, " + txLog.getQueueDepth() + " queued")).color(green)));
+                    ctx.sendMessage(Message.join(Message.raw("Tx Log Flush: ").color(white), Message.raw((String.format("last %d rows in %d ms, avg %.1f ms, max %d ms", txLog.getLastBatchSize(), txLog.getLastFlushMs(), txLog.getAvgFlushMs(), txLog.getMaxFlushMs()))).color(green)));
+                    if (txLog.getFailed() > 0L || txLog.getDropped() > 0L) {
+                        ctx.sendMessage(Message.join(Message.raw("Tx Log Lost: ").color(white), Message.raw((txLog.getFailed() + " failed, " + txLog.getDropped() + " dropped")).color(Color.ORANGE)));
+                    }
+                }
+                TransactionArchiver archiver = Main.getInstance().getEconomyManager().getTransactionLogger().getArchiver();
+                if (archiver != null) {
+                    TransactionArchiver.Result last = archiver.getLastResult();
+                    String archive = last == null ? "pending, rows older than " + archiver.getArchiveAfterDays() + " days" : last.rows() + " rows from " + last.days() + " days in " + last.durationMs() + " ms";
+                    ctx.sendMessage(Message.join(Message.raw("Tx Archive: ").color(white), Message.raw(archive).color(green)));
+                }
                 ctx.sendMessage(Message.raw("---------------------------------").color(gold));
                 ctx.sendMessage(Message.raw("System metrics moved to /guard metrics").color(Color.GRAY));
             } else {
@@ -64,7 +64,43 @@ public class EcotaleConfig {
         c.usePlayerLanguage = v;
     }, (c, e) -> c.usePlayerLanguage).add().append(new KeyedCodec<>("DebugMode", Codec.BOOLEAN), (c, v, e) -> {
         c.debugMode = v;
-    }, (c, e) -> c.debugMode).add().build();
+    }, (c, e) -> c.debugMode).add().append(new KeyedCodec<>("LockFreeBalances", Codec.BOOLEAN), (c, v, e) -> {
+        c.lockFreeBalances = v;
+    }, (c, e) -> c.lockFreeBalances).add().append(new KeyedCodec<>("EnableJournal", Codec.BOOLEAN), (c, v, e) -> {
+        c.enableJournal = v;
+    }, (c, e) -> c.enableJournal).add().append(new KeyedCodec<>("JournalSyncIntervalMs", Codec.INTEGER), (c, v, e) -> {
+        c.journalSyncIntervalMs = v;
+    }, (c, e) -> c.journalSyncIntervalMs).add().append(new KeyedCodec<>("AutoSaveDirtyThreshold", Codec.INTEGER), (c, v, e) -> {
+        c.autoSaveDirtyThreshold = v;
+    }, (c, e) -> c.autoSaveDirtyThreshold).add().append(new KeyedCodec<>("AutoSaveSlowFlushMs", Codec.INTEGER), (c, v, e) -> {
+        c.autoSaveSlowFlushMs = v;
+    }, (c, e) -> c.autoSaveSlowFlushMs).add().append(new KeyedCodec<>("HudUpdateWindowMs", Codec.INTEGER), (c, v, e) -> {
+        c.hudUpdateWindowMs = v;
+    }, (c, e) -> c.hudUpdateWindowMs).add().append(new KeyedCodec<>("H2ReadConnections", Codec.INTEGER), (c, v, e) -> {
+        c.h2ReadConnections = v;
+    }, (c, e) -> c.h2ReadConnections).add().append(new KeyedCodec<>("MysqlReadConnections", Codec.INTEGER), (c, v, e) -> {
+        c.mysqlReadConnections = v;
+    }, (c, e) -> c.mysqlReadConnections).add().append(new KeyedCodec<>("MysqlConnectTimeoutMs", Codec.INTEGER), (c, v, e) -> {
+        c.mysqlConnectTimeoutMs = v;
+    }, (c, e) -> c.mysqlConnectTimeoutMs).add().append(new KeyedCodec<>("TxLogQueueCapacity", Codec.INTEGER), (c, v, e) -> {
+        c.txLogQueueCapacity = v;
+    }, (c, e) -> c.txLogQueueCapacity).add().append(new KeyedCodec<>("TxLogBatchSize", Codec.INTEGER), (c, v, e) -> {
+        c.txLogBatchSize = v;
+    }, (c, e) -> c.txLogBatchSize).add().append(new KeyedCodec<>("TxLogFlushIntervalMs", Codec.INTEGER), (c, v, e) -> {
+        c.txLogFlushIntervalMs = v;
+    }, (c, e) -> c.txLogFlushIntervalMs).add().append(new KeyedCodec<>("TxArchiveAfterDays", Codec.INTEGER), (c, v, e) -> {
+        c.txArchiveAfterDays = v;
+    }, (c, e) -> c.txArchiveAfterDays).add().append(new KeyedCodec<>("TxArchiveRetentionDays", Codec.INTEGER), (c, v, e) -> {
+        c.txArchiveRetentionDays = v;
+    }, (c, e) -> c.txArchiveRetentionDays).add().append(new KeyedCodec<>("CacheMode", Codec.STRING), (c, v, e) -> {
+        c.cacheMode = v;
+    }, (c, e) -> c.cacheMode).add().append(new KeyedCodec<>("CacheMaxAccounts", Codec.INTEGER), (c, v, e) -> {
+        c.cacheMaxAccounts = v;
+    }, (c, e) -> c.cacheMaxAccounts).add().append(new KeyedCodec<>("CacheIdleMinutes", Codec.INTEGER), (c, v, e) -> {
+        c.cacheIdleMinutes = v;
+    }, (c, e) -> c.cacheIdleMinutes).add().append(new KeyedCodec<>("CachePreloadActiveDays", Codec.INTEGER), (c, v, e) -> {
+        c.cachePreloadActiveDays = v;
+    }, (c, e) -> c.cachePreloadActiveDays).add().build();
     private String currencySymbol = "$";
     private String hudPrefix = "Bank";
     private double startingBalance = 100.0;
@@ -94,6 +130,24 @@ public class EcotaleConfig {
     private String language = "en-US";
     private boolean usePlayerLanguage = true;
     private boolean debugMode = false;
+    private boolean lockFreeBalances = false;
+    private boolean enableJournal = false;
+    private int journalSyncIntervalMs = 20;
+    private int autoSaveDirtyThreshold = 500;
+    private int autoSaveSlowFlushMs = 2000;
+    private int hudUpdateWindowMs = 250;
+    private int h2ReadConnections = 4;
+    private int mysqlReadConnections = 4;
+    private int mysqlConnectTimeoutMs = 5000;
+    private int txLogQueueCapacity = 20000;
+    private int txLogBatchSize = 500;
+    private int txLogFlushIntervalMs = 200;
+    private int txArchiveAfterDays = 0;
+    private int txArchiveRetentionDays = 0;
+    private String cacheMode = "Full";
+    private int cacheMaxAccounts = 50000;
+    private int cacheIdleMinutes = 30;
+    private int cachePreloadActiveDays = 7;
 
     public String getCurrencySymbol() {
         return this.currencySymbol;
@@ -263,6 +317,78 @@ public class EcotaleConfig {
         this.debugMode = debug;
     }
 
+    public boolean isLockFreeBalances() {
+        return this.lockFreeBalances;
+    }
+
+    public boolean isEnableJournal() {
+        return this.enableJournal;
+    }
+
+    public int getJournalSyncIntervalMs() {
+        return this.journalSyncIntervalMs;
+    }
+
+    public int getAutoSaveDirtyThreshold() {
+        return this.autoSaveDirtyThreshold;
+    }
+
+    public int getAutoSaveSlowFlushMs() {
+        return this.autoSaveSlowFlushMs;
+    }
+
+    public int getHudUpdateWindowMs() {
+        return this.hudUpdateWindowMs;
+    }
+
+    public int getH2ReadConnections() {
+        return this.h2ReadConnections;
+    }
+
+    public int getMysqlReadConnections() {
+        return this.mysqlReadConnections;
+    }
+
+    public int getMysqlConnectTimeoutMs() {
+        return this.mysqlConnectTimeoutMs;
+    }
+
+    public int getTxLogQueueCapacity() {
+        return this.txLogQueueCapacity;
+    }
+
+    public int getTxLogBatchSize() {
+        return this.txLogBatchSize;
+    }
+
+    public int getTxLogFlushIntervalMs() {
+        return this.txLogFlushIntervalMs;
+    }
+
+    public int getTxArchiveAfterDays() {
+        return this.txArchiveAfterDays;
+    }
+
+    public int getTxArchiveRetentionDays() {
+        return this.txArchiveRetentionDays;
+    }
+
+    public String getCacheMode() {
+        return this.cacheMode;
+    }
+
+    public int getCacheMaxAccounts() {
+        return this.cacheMaxAccounts;
+    }
+
+    public int getCacheIdleMinutes() {
+        return this.cacheIdleMinutes;
+    }
+
+    public int getCachePreloadActiveDays() {
+        return this.cachePreloadActiveDays;
+    }
+
     public String format(double amount) {
         StringBuilder pattern = new StringBuilder("#,##0");
         if (this.decimalPlaces > 0) {
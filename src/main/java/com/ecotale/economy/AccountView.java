@@ -0,0 +1,101 @@
+package com.ecotale.economy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import javax.annotation.Nonnull;
+
+/**
+ * Read-only view over the live account cache. Nothing here copies the cache. In bounded
+ * cache mode the cache, and so this view, holds only the recently used accounts.
+ *
+ * Iteration is weakly consistent (as for {@link ConcurrentHashMap}): it never throws
+ * on concurrent changes and sees every account that existed for the whole pass,
+ * while accounts added or removed during the pass may or may not be seen.
+ * The returned {@link PlayerBalance} objects are the live accounts; use the
+ * {@link EconomyManager} methods to change them.
+ */
+public class AccountView {
+    private final ConcurrentHashMap<UUID, PlayerBalance> cache;
+    private final Set<UUID> keys;
+
+    AccountView(ConcurrentHashMap<UUID, PlayerBalance> cache) {
+        this.cache = cache;
+        this.keys = Collections.unmodifiableSet(cache.keySet());
+    }
+
+    public boolean containsAccount(@Nonnull UUID playerUuid) {
+        return this.cache.containsKey(playerUuid);
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public void forEachAccount(@Nonnull BiConsumer<UUID, PlayerBalance> action) {
+        this.cache.forEach(action);
+    }
+
+    /**
+     * Splittable, concurrent spliterator for {@code StreamSupport.stream(spliterator, true)}.
+     */
+    public Spliterator<PlayerBalance> spliterator() {
+        return this.cache.values().spliterator();
+    }
+
+    /**
+     * Unmodifiable live view of the cached account UUIDs.
+     */
+    public Set<UUID> accountIds() {
+        return this.keys;
+    }
+
+    /**
+     * Start a cursor that hands out the accounts a page at a time, e.g. one page
+     * per tick for background jobs that must not stall the server.
+     */
+    public Cursor cursor() {
+        return new Cursor(this.cache.values().iterator());
+    }
+
+    /**
+     * Page-at-a-time walk over the live cache. Not thread-safe; use one cursor per task.
+     */
+    public static class Cursor {
+        private final Iterator<PlayerBalance> iterator;
+        private int position;
+
+        Cursor(Iterator<PlayerBalance> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+
+        /**
+         * @return Up to {@code limit} further accounts; empty once the cursor is exhausted
+         */
+        public List<PlayerBalance> nextPage(int limit) {
+            ArrayList<PlayerBalance> page = new ArrayList<>(Math.max(0, Math.min(limit, 256)));
+            while (page.size() < limit && this.iterator.hasNext()) {
+                page.add(this.iterator.next());
+            }
+            this.position += page.size();
+            return page;
+        }
+
+        /**
+         * @return Number of accounts handed out so far
+         */
+        public int position() {
+            return this.position;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.ecotale.economy;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of balance changes between autosaves.
+ *
+ * Purpose:
+ * - A crash loses at most one sync interval of changes instead of a whole AutoSaveInterval
+ * - Database writes stay infrequent and batched
+ *
+ * Format:
+ * - Segment files {@code journal-<seq>.bin}, each starting with a magic number, the run id
+ *   and the money scale the amounts were written at
+ * - One fixed 52-byte record per change: uuid, version, balance, earned, spent + CRC32
+ * - Records carry the full account state, so replay is "last record wins" and idempotent
+ *
+ * Group commit: mutations only enqueue a snapshot. A writer thread drains the queue every
+ * {@code JournalSyncIntervalMs}, writes all pending records and issues a single fsync.
+ * Records leave the queue only once that fsync succeeded; a failed write is cut off the
+ * segment and its records are retried on the next drain.
+ *
+ * Truncation: autosave calls {@link #rotate()} before taking snapshots and
+ * {@link #deleteThrough(long)} once storage confirmed every row, so a segment is only
+ * removed when everything it describes is in the database.
+ */
+public class BalanceJournal {
+    private static final Path JOURNAL_PATH = Path.of("mods", "Ecotale_Ecotale", "journal");
+    private static final int MAGIC = 0x45434A32;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 52;
+    private static final int PAYLOAD_SIZE = 48;
+    private static final int BUFFER_RECORDS = 1024;
+
+    private final HytaleLogger logger = HytaleLogger.getLogger().getSubLogger("Ecotale-Journal");
+    private final ConcurrentLinkedQueue<BalanceSnapshot> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * BUFFER_RECORDS);
+    private final CRC32 crc = new CRC32();
+    private final long runId = System.currentTimeMillis();
+    private final long syncIntervalNanos;
+    private volatile boolean running = false;
+    private Thread writer;
+    private FileChannel channel;
+    private long segment;
+
+    /**
+     * @param syncIntervalMs Group-commit window; changes are fsynced at most this long after they happen
+     */
+    public BalanceJournal(int syncIntervalMs) {
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMs));
+    }
+
+    /**
+     * Read every segment left by earlier runs.
+     * A torn or corrupt record ends its segment; everything before it is kept.
+     * Segments written at another DecimalPlaces are rescaled to the current {@link Money#scale()}.
+     *
+     * @return Latest journaled state per account
+     */
+    public Map<UUID, BalanceSnapshot> replay() throws IOException {
+        HashMap<UUID, BalanceSnapshot> latest = new HashMap<>();
+        HashMap<UUID, Long> latestRun = new HashMap<>();
+        int records = 0;
+        for (long seq : this.listSegments()) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(this.segmentPath(seq)));
+            if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+                this.logger.at(Level.WARNING).log("Skipping journal segment %d: bad header", seq);
+                continue;
+            }
+            long run = data.getLong();
+            int scale = data.getInt();
+            if (scale < 0 || scale > Money.MAX_SCALE) {
+                this.logger.at(Level.WARNING).log("Skipping journal segment %d: unknown money scale %d", seq, scale);
+                continue;
+            }
+            if (scale != Money.scale()) {
+                this.logger.at(Level.INFO).log("Rescaling journal segment %d from %d to %d decimal places", seq, scale, Money.scale());
+            }
+            while (data.remaining() >= RECORD_SIZE) {
+                int start = data.position();
+                this.crc.reset();
+                this.crc.update(data.duplicate().limit(start + PAYLOAD_SIZE));
+                UUID uuid = new UUID(data.getLong(), data.getLong());
+                long version = data.getLong();
+                long balance = data.getLong();
+                long earned = data.getLong();
+                long spent = data.getLong();
+                if (data.getInt() != (int) this.crc.getValue()) {
+                    this.logger.at(Level.WARNING).log("Journal segment %d has a corrupt record at offset %d; ignoring the rest", seq, start);
+                    break;
+                }
+                ++records;
+                // Versions restart every run: later runs win, within a run the higher version wins
+                BalanceSnapshot current = latest.get(uuid);
+                long currentRun = latestRun.getOrDefault(uuid, Long.MIN_VALUE);
+                if (current == null || run > currentRun || (run == currentRun && version > current.version())) {
+                    latest.put(uuid, new BalanceSnapshot(uuid, version, rescale(balance, scale), rescale(earned, scale), rescale(spent, scale), "Journal replay", System.currentTimeMillis()));
+                    latestRun.put(uuid, run);
+                }
+            }
+        }
+        if (records > 0) {
+            this.logger.at(Level.INFO).log("Replayed %d journal records for %d accounts", records, latest.size());
+        }
+        return latest;
+    }
+
+    /**
+     * Open a fresh segment and start the group-commit writer.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(JOURNAL_PATH);
+        List<Long> existing = this.listSegments();
+        this.segment = existing.isEmpty() ? 1L : existing.get(existing.size() - 1) + 1L;
+        this.openSegment();
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "Ecotale-Journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue the current state of an account. Never blocks on I/O.
+     * Ignored while the journal is not open.
+     */
+    public void append(PlayerBalance balance) {
+        if (!this.running) {
+            return;
+        }
+        this.pending.add(balance.snapshot());
+    }
+
+    /**
+     * Write everything queued so far, seal the current segment and start a new one.
+     *
+     * @return Sequence number of the sealed segment, or -1 if nothing was sealed
+     */
+    public long rotate() {
+        this.writeLock.lock();
+        try {
+            if (this.channel == null || !this.channel.isOpen()) {
+                return -1L;
+            }
+            this.drain();
+            long sealed = this.segment;
+            this.channel.close();
+            ++this.segment;
+            this.openSegment();
+            return sealed;
+        } catch (IOException e) {
+            this.logger.at(Level.SEVERE).log("Failed to rotate journal: %s", e.getMessage());
+            return -1L;
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Delete sealed segments up to and including {@code seq}.
+     */
+    public void deleteThrough(long seq) {
+        try {
+            for (long existing : this.listSegments()) {
+                if (existing <= seq && existing != this.segment) {
+                    Files.deleteIfExists(this.segmentPath(existing));
+                }
+            }
+        } catch (IOException e) {
+            this.logger.at(Level.WARNING).log("Failed to truncate journal: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the writer and fsync anything still queued.
+     */
+    public void close() {
+        this.running = false;
+        if (this.writer != null) {
+            // unpark, not interrupt: interrupting a thread inside FileChannel I/O closes the channel
+            LockSupport.unpark(this.writer);
+            try {
+                this.writer.join(2000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.writeLock.lock();
+        try {
+            if (this.channel != null) {
+                this.drain();
+                this.channel.close();
+            }
+        } catch (IOException e) {
+            this.logger.at(Level.SEVERE).log("Failed to close journal: %s", e.getMessage());
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove every segment, including the current one. Only call after a full save and {@link #close()}.
+     */
+    public void deleteAll() {
+        this.deleteThrough(Long.MAX_VALUE);
+        try {
+            Files.deleteIfExists(this.segmentPath(this.segment));
+        } catch (IOException e) {
+            this.logger.at(Level.WARNING).log("Failed to delete journal segment: %s", e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        while (this.running) {
+            LockSupport.parkNanos(this.syncIntervalNanos);
+            if (this.pending.isEmpty()) continue;
+            this.writeLock.lock();
+            try {
+                this.drain();
+            } catch (IOException e) {
+                this.logger.at(Level.SEVERE).log("Journal write failed: %s", e.getMessage());
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write all queued records and fsync once. Caller holds the write lock.
+     * On failure the records go back on the queue and the partly written tail is truncated,
+     * so the next drain retries them instead of appending after a torn record.
+     */
+    private void drain() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        ArrayList<BalanceSnapshot> batch = new ArrayList<>();
+        long mark = this.channel.position();
+        try {
+            BalanceSnapshot snapshot;
+            while ((snapshot = this.pending.poll()) != null) {
+                batch.add(snapshot);
+                if (this.buffer.remaining() < RECORD_SIZE) {
+                    this.flushBuffer();
+                }
+                int start = this.buffer.position();
+                this.buffer.putLong(snapshot.uuid().getMostSignificantBits());
+                this.buffer.putLong(snapshot.uuid().getLeastSignificantBits());
+                this.buffer.putLong(snapshot.version());
+                this.buffer.putLong(snapshot.balanceMinor());
+                this.buffer.putLong(snapshot.totalEarnedMinor());
+                this.buffer.putLong(snapshot.totalSpentMinor());
+                this.crc.reset();
+                this.crc.update(this.buffer.duplicate().position(start).limit(start + PAYLOAD_SIZE));
+                this.buffer.putInt((int) this.crc.getValue());
+            }
+            this.flushBuffer();
+            this.channel.force(false);
+        } catch (IOException e) {
+            this.buffer.clear();
+            // Replay keeps the highest version per account, so re-queued records may land after newer ones
+            this.pending.addAll(batch);
+            this.logger.at(Level.WARNING).log("Keeping %d journal records queued for the next attempt", batch.size());
+            try {
+                this.channel.truncate(mark);
+                this.channel.position(mark);
+            } catch (IOException truncateError) {
+                this.logger.at(Level.WARNING).log("Failed to truncate journal segment %d: %s", this.segment, truncateError.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    private void openSegment() throws IOException {
+        this.channel = FileChannel.open(this.segmentPath(this.segment), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(this.runId).putInt(Money.scale()).flip();
+        while (header.hasRemaining()) {
+            this.channel.write(header);
+        }
+        this.channel.force(false);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        ArrayList<Long> result = new ArrayList<>();
+        if (!Files.isDirectory(JOURNAL_PATH)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(JOURNAL_PATH)) {
+            files.map(p -> p.getFileName().toString())
+                .filter(name -> name.startsWith("journal-") && name.endsWith(".bin"))
+                .forEach(name -> {
+                    try {
+                        result.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                    } catch (NumberFormatException ignored) {
+                        // not one of ours
+                    }
+                });
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Convert a journaled amount from the scale it was written at to the current one.
+     */
+    private static long rescale(long minor, int scale) {
+        return scale == Money.scale() ? minor : Money.fromBigDecimal(BigDecimal.valueOf(minor, scale));
+    }
+
+    private Path segmentPath(long seq) {
+        return JOURNAL_PATH.resolve(String.format("journal-%016d.bin", seq));
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecotale.economy;
+
+import java.util.UUID;
+
+/**
+ * Immutable point-in-time copy of an account, taken from a single balance cell so
+ * balance and totals always belong together. This is what autosave hands to storage;
+ * the live {@link PlayerBalance} is never serialized while it can still change.
+ *
+ * @param uuid                Account owner
+ * @param version             Account version the snapshot was taken at
+ * @param balanceMinor        Balance in minor units
+ * @param totalEarnedMinor    Lifetime credits in minor units
+ * @param totalSpentMinor     Lifetime debits in minor units
+ * @param lastTransaction     Description of the last change (JSON storage only)
+ * @param lastTransactionTime Time of the last change (JSON storage only)
+ */
+public record BalanceSnapshot(UUID uuid, long version, long balanceMinor, long totalEarnedMinor, long totalSpentMinor,
+                              String lastTransaction, long lastTransactionTime) {
+
+    /**
+     * Detached account object for providers that serialize {@link PlayerBalance} directly.
+     */
+    public PlayerBalance toPlayerBalance() {
+        PlayerBalance balance = PlayerBalance.restore(this.uuid, this.balanceMinor, this.totalEarnedMinor, this.totalSpentMinor);
+        balance.restoreLastTransaction(this.lastTransaction, this.lastTransactionTime);
+        return balance;
+    }
+}
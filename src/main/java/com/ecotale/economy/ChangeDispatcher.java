@@ -0,0 +1,205 @@
+package com.ecotale.economy;
+
+import com.ecotale.api.events.EcotaleEvents;
+import com.ecotale.api.events.TransactionEvent;
+import com.ecotale.hud.BalanceHud;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.Universe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Post-commit side effects of balance changes.
+ *
+ * Mutations publish a {@link Change} to a lock-free queue once the new balance is in
+ * place and return; a single consumer thread then does the slow part off the account
+ * locks:
+ * - HUD refresh and +/- notification, posted to the player's world thread
+ * - name resolution and transaction logging (one batched insert per drain)
+ * - {@link TransactionEvent} (not cancellable, so it can safely run later)
+ *
+ * Because there is one consumer and changes are published while the account stripe
+ * is still held, side effects for the same player are applied in commit order.
+ */
+class ChangeDispatcher {
+    private static final int MAX_DRAIN = 512;
+
+    private final HytaleLogger logger = HytaleLogger.getLogger().getSubLogger("Ecotale-Dispatch");
+    private final ConcurrentLinkedQueue<Change> queue = new ConcurrentLinkedQueue<>();
+    private final TransactionLogger transactionLogger;
+    private final Function<UUID, PlayerBalance> accounts;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+
+    /**
+     * @param transactionLogger Destination for transaction log entries
+     * @param accounts          Cached account lookup, used to show the latest balance on the HUD
+     */
+    ChangeDispatcher(TransactionLogger transactionLogger, Function<UUID, PlayerBalance> accounts) {
+        this.transactionLogger = transactionLogger;
+        this.accounts = accounts;
+        this.consumer = new Thread(this::run, "Ecotale-Dispatch");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Queue side effects for a committed change. Never blocks.
+     */
+    void publish(Change change) {
+        this.queue.add(change);
+        if (this.parked) {
+            LockSupport.unpark(this.consumer);
+        }
+    }
+
+    /**
+     * Stop the consumer and apply everything still queued on the calling thread.
+     */
+    void close() {
+        this.running = false;
+        LockSupport.unpark(this.consumer);
+        try {
+            this.consumer.join(2000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.drain();
+    }
+
+    int getQueued() {
+        return this.queue.size();
+    }
+
+    private void run() {
+        while (this.running) {
+            if (this.queue.isEmpty()) {
+                this.parked = true;
+                // Re-check after advertising that we are parked, so a publish in between is not missed
+                if (this.queue.isEmpty() && this.running) {
+                    LockSupport.park(this);
+                }
+                this.parked = false;
+                continue;
+            }
+            this.drain();
+        }
+    }
+
+    private synchronized void drain() {
+        ArrayList<Change> changes = new ArrayList<>();
+        Change change;
+        while (true) {
+            while (changes.size() < MAX_DRAIN && (change = this.queue.poll()) != null) {
+                changes.add(change);
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            this.apply(changes);
+            changes.clear();
+        }
+    }
+
+    private void apply(List<Change> changes) {
+        ArrayList<TransactionEntry> entries = new ArrayList<>(changes.size());
+        ArrayList<TransactionEvent> events = new ArrayList<>();
+        for (Change change : changes) {
+            try {
+                if (change.hud()) {
+                    this.refreshHud(change);
+                }
+                if (change.logType() == null) {
+                    continue;
+                }
+                String targetName = resolvePlayerName(change.target());
+                if (change.source() != null) {
+                    entries.add(TransactionEntry.transfer(change.source(), resolvePlayerName(change.source()), change.target(), targetName, change.amountMinor()));
+                } else {
+                    entries.add(TransactionEntry.single(change.logType(), change.target(), targetName, change.amountMinor()));
+                }
+                events.add(new TransactionEvent(eventType(change.logType()), change.source(), change.target(), Money.toDouble(change.amountMinor()), Money.toDouble(change.feeMinor()), change.reason() != null ? change.reason() : ""));
+            } catch (Exception e) {
+                this.logger.at(Level.WARNING).log("Failed to apply balance change for %s: %s", (Object) change.target(), (Object) e.getMessage());
+            }
+        }
+        try {
+            this.transactionLogger.logBatch(entries);
+        } catch (Exception e) {
+            this.logger.at(Level.WARNING).log("Failed to log %d transactions: %s", entries.size(), (Object) e.getMessage());
+        }
+        for (TransactionEvent event : events) {
+            EcotaleEvents.fire(event);
+        }
+    }
+
+    private void refreshHud(Change change) {
+        if (change.source() != null) {
+            this.refreshHud(change.source(), -change.amountMinor());
+        }
+        this.refreshHud(change.target(), change.deltaMinor());
+    }
+
+    private void refreshHud(UUID playerUuid, long deltaMinor) {
+        PlayerBalance balance = this.accounts.apply(playerUuid);
+        if (balance == null) {
+            return;
+        }
+        BalanceHud.updatePlayerHud(playerUuid, balance.getBalance(), Money.toDouble(deltaMinor));
+    }
+
+    private static TransactionEvent.Type eventType(TransactionType type) {
+        return switch (type) {
+            case PAY -> TransactionEvent.Type.PLAYER_TRANSFER;
+            case GIVE -> TransactionEvent.Type.ADMIN_GIVE;
+            case TAKE -> TransactionEvent.Type.ADMIN_TAKE;
+            case SET -> TransactionEvent.Type.ADMIN_SET;
+            case RESET -> TransactionEvent.Type.RESET;
+            default -> TransactionEvent.Type.API;
+        };
+    }
+
+    static String resolvePlayerName(UUID uuid) {
+        PlayerRef player = Universe.get().getPlayer(uuid);
+        if (player != null) {
+            return player.getUsername();
+        }
+        return uuid.toString().substring(0, 8) + "...";
+    }
+
+    /**
+     * A committed balance change.
+     *
+     * @param source      Paying account for transfers, null otherwise
+     * @param target      Changed account (recipient for transfers)
+     * @param amountMinor Amount to log (new balance for SET/RESET)
+     * @param feeMinor    Transfer fee, 0 otherwise
+     * @param deltaMinor  Change of the target balance, shown in the HUD notification
+     * @param logType     Transaction log type, or null to skip logging and the event
+     * @param reason      Reason given by the caller
+     * @param hud         False for log-only changes whose HUD update is published separately
+     */
+    record Change(UUID source, UUID target, long amountMinor, long feeMinor, long deltaMinor, TransactionType logType, String reason, boolean hud) {
+        static Change single(UUID player, long amountMinor, long deltaMinor, TransactionType logType, String reason) {
+            return new Change(null, player, amountMinor, 0L, deltaMinor, logType, reason, true);
+        }
+
+        /**
+         * Log entry and event only, no HUD update; used for the legs of a batch.
+         */
+        static Change logOnly(UUID player, long amountMinor, TransactionType logType, String reason) {
+            return new Change(null, player, amountMinor, 0L, 0L, logType, reason, false);
+        }
+
+        static Change transfer(UUID from, UUID to, long amountMinor, long feeMinor, String reason) {
+            return new Change(from, to, amountMinor, feeMinor, amountMinor, TransactionType.PAY, reason, true);
+        }
+    }
+}
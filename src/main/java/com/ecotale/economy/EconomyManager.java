@@ -4,40 +4,78 @@ import com.ecotale.Main;
 import com.ecotale.api.events.BalanceChangeEvent;
 import com.ecotale.api.events.EcotaleEvents;
 import com.ecotale.config.EcotaleConfig;
-import com.ecotale.hud.BalanceHud;
 import com.ecotale.storage.H2StorageProvider;
 import com.ecotale.storage.JsonStorageProvider;
 import com.ecotale.storage.MySQLStorageProvider;
 import com.ecotale.storage.StorageProvider;
+import com.ecotale.util.StripedLock;
 import com.hypixel.hytale.logger.HytaleLogger;
-import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
 
 import javax.annotation.Nonnull;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class EconomyManager {
-    private final ConcurrentHashMap<UUID, PlayerBalance> cache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, ReentrantLock> playerLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, PlayerBalance> cache;
+    private final ConcurrentHashMap<UUID, CompletableFuture<PlayerBalance>> pendingLoads = new ConcurrentHashMap<>();
+    private final StripedLock locks = new StripedLock();
+    private final boolean lockFreeBalances;
     private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> changedSinceSnapshot = ConcurrentHashMap.newKeySet();
     private final StorageProvider storage;
     private final TransactionLogger transactionLogger = TransactionLogger.getInstance();
-    private volatile List<Map.Entry<UUID, PlayerBalance>> cachedLeaderboard;
-    private volatile long lastLeaderboardRebuild = 0L;
-    private static final long LEADERBOARD_CACHE_MS = 2000L;
-    private static final int MAX_LEADERBOARD_CACHE_SIZE = 100;
-    private static final int UUID_PREVIEW_LENGTH = 8;
-    private volatile long lastLockCleanup = System.currentTimeMillis();
-    private static final long LOCK_CLEANUP_INTERVAL_MS = 1800000L;
-    private volatile boolean running = true;
-    private final Thread saveThread;
+    private final LeaderboardIndex leaderboard = new LeaderboardIndex();
+    private final EconomyStats stats = new EconomyStats(this.leaderboard);
+    private final AccountView accountView;
+    private final ChangeDispatcher dispatcher;
+    private final BalanceJournal journal;
+    private static final long FLUSH_TICK_MS = 500L;
+    private static final long MIN_FLUSH_GAP_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    private static final int MAX_BACKOFF = 8;
+    private static final int PRELOAD_CHUNK_SIZE = 1000;
+    private static final long EVICTION_TICK_SECONDS = 60L;
+    /** Min gap between storage totals refreshes; each one aggregates every stored account. */
+    private static final long TOTALS_REFRESH_NANOS = TimeUnit.MINUTES.toNanos(5L);
+    /** How long a storage miss is remembered before storage is asked again. */
+    private static final long MISSING_ACCOUNT_TTL_NANOS = TimeUnit.SECONDS.toNanos(30L);
+    /** Cap on rows a storage-backed leaderboard call returns in bounded cache mode. */
+    private static final int MAX_STORAGE_LEADERBOARD_ROWS = 1000;
+    /** Cap on remembered storage leaderboard page boundaries. */
+    private static final int MAX_LEADERBOARD_TOKENS = 1024;
+    private final ScheduledExecutorService saveScheduler;
+    private final AtomicLong dirtySince = new AtomicLong();
+    private final FlushStats flushStats = new FlushStats();
+    private volatile boolean flushRequested = false;
+    private volatile long lastFlushNanos = System.nanoTime();
+    private volatile int backoff = 1;
+    private final CompletableFuture<Void> preload = new CompletableFuture<>();
+    private final AtomicInteger preloaded = new AtomicInteger();
+    private volatile boolean closing = false;
+    private final boolean boundedCache;
+    private final int maxCachedAccounts;
+    private final Set<UUID> onlinePlayers = ConcurrentHashMap.newKeySet();
+    /** Balances of evicted accounts that the next daily snapshot still has to record. */
+    private final ConcurrentHashMap<UUID, Long> evictedSinceSnapshot = new ConcurrentHashMap<>();
+    private final AtomicLong evicted = new AtomicLong();
+    /** Accounts storage recently reported as missing, with the time the answer expires. */
+    private final ConcurrentHashMap<UUID, Long> knownMissing = new ConcurrentHashMap<>();
+    /** Storage leaderboard page tokens by the position they resume at (bounded cache mode). */
+    private final ConcurrentSkipListMap<Integer, String> leaderboardTokens = new ConcurrentSkipListMap<>();
+    private volatile long totalsRefreshedNanos;
     private final HytaleLogger logger = HytaleLogger.getLogger().getSubLogger("Ecotale");
 
     public EconomyManager(@Nonnull Object plugin) {
@@ -62,252 +100,840 @@ public class EconomyManager {
                 this.logger.at(Level.INFO).log("Using H2 storage provider");
             }
         }
+        this.lockFreeBalances = Main.CONFIG.get().isLockFreeBalances();
+        this.boundedCache = this.resolveBoundedCache();
+        this.maxCachedAccounts = Math.max(100, Main.CONFIG.get().getCacheMaxAccounts());
+        Money.configure(Main.CONFIG.get().getDecimalPlaces());
         this.storage.initialize().join();
-        this.bulkPreload();
-        this.saveThread = new Thread(this::autoSaveLoop, "Ecotale-AutoSave");
-        this.saveThread.setDaemon(true);
-        this.saveThread.start();
-        this.logger.at(Level.INFO).log("EconomyManager initialized with %s (%d players preloaded)", (Object) this.storage.getName(), this.cache.size());
+        // Sized for the stored accounts so the preload does not rehash as it fills
+        int expected = this.boundedCache ? Math.min(this.storage.getPlayerCount(), this.maxCachedAccounts) : this.storage.getPlayerCount();
+        this.cache = new ConcurrentHashMap<>(Math.max(16, expected));
+        this.accountView = new AccountView(this.cache);
+        this.dispatcher = new ChangeDispatcher(this.transactionLogger, this.cache::get);
+        this.journal = Main.CONFIG.get().isEnableJournal() ? new BalanceJournal(Main.CONFIG.get().getJournalSyncIntervalMs()) : null;
+        this.replayJournal();
+        this.startPreload();
+        this.saveScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Ecotale-AutoSave");
+            t.setDaemon(true);
+            return t;
+        });
+        this.saveScheduler.scheduleWithFixedDelay(this::flushTick, FLUSH_TICK_MS, FLUSH_TICK_MS, TimeUnit.MILLISECONDS);
+        if (this.boundedCache) {
+            this.totalsRefreshedNanos = System.nanoTime();
+            this.storage.queryTotalsAsync().thenAccept(this.stats::useStorageTotals);
+            this.saveScheduler.scheduleWithFixedDelay(this::evictionTick, EVICTION_TICK_SECONDS, EVICTION_TICK_SECONDS, TimeUnit.SECONDS);
+        }
+        this.logger.at(Level.INFO).log("EconomyManager initialized with %s (preloading %d players in the background)", (Object) this.storage.getName(), this.storage.getPlayerCount());
     }
 
-    private ReentrantLock getLock(UUID playerUuid) {
-        return this.playerLocks.computeIfAbsent(playerUuid, k -> new ReentrantLock());
+    public void ensureAccount(@Nonnull UUID playerUuid) {
+        this.ensureAccountAsync(playerUuid).join();
     }
 
-    public void ensureAccount(@Nonnull UUID playerUuid) {
-        this.cache.computeIfAbsent(playerUuid, uuid -> {
-            PlayerBalance balance = this.storage.loadPlayer((UUID) uuid).join();
-            this.dirtyPlayers.add((UUID) uuid);
+    /**
+     * Make sure an account is cached without blocking the caller.
+     * Newly loaded accounts are marked dirty so first-time players get persisted.
+     */
+    public CompletableFuture<PlayerBalance> ensureAccountAsync(@Nonnull UUID playerUuid) {
+        PlayerBalance cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            cached.markAccessed();
+            return CompletableFuture.completedFuture(cached);
+        }
+        return this.loadAccountAsync(playerUuid).thenApply(balance -> {
+            this.markDirty(playerUuid);
             return balance;
         });
     }
 
+    /**
+     * Load an account into the cache. Concurrent callers for the same UUID share a
+     * single storage round-trip; nothing is held while storage is working, so loads
+     * for unrelated players never wait on each other.
+     */
+    private CompletableFuture<PlayerBalance> loadAccountAsync(@Nonnull UUID playerUuid) {
+        PlayerBalance cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<PlayerBalance> load = new CompletableFuture<>();
+        CompletableFuture<PlayerBalance> inFlight = this.pendingLoads.putIfAbsent(playerUuid, load);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        // A load may have finished between the cache check and claiming the slot
+        cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            this.pendingLoads.remove(playerUuid, load);
+            load.complete(cached);
+            return load;
+        }
+        this.storage.loadPlayer(playerUuid).whenComplete((loaded, error) -> {
+            if (error != null || loaded == null) {
+                this.pendingLoads.remove(playerUuid, load);
+                this.logger.at(Level.WARNING).log("Failed to load account %s: %s", (Object) playerUuid, (Object) (error != null ? error.getMessage() : "no data"));
+                load.completeExceptionally(error != null ? error : new IllegalStateException("No account data for " + playerUuid));
+                return;
+            }
+            // Publish to the cache before releasing the slot so callers always see one or the other.
+            // Attach first: once it is in the cache it can be changed by other threads.
+            loaded.attach(this.stats);
+            PlayerBalance existing = this.cache.putIfAbsent(playerUuid, loaded);
+            if (existing != null) {
+                loaded.detach();
+            }
+            PlayerBalance account = existing != null ? existing : loaded;
+            this.knownMissing.remove(playerUuid);
+            this.onBalanceChanged(playerUuid, account);
+            this.pendingLoads.remove(playerUuid, load);
+            load.complete(account);
+        });
+        return load;
+    }
+
+    /**
+     * Cached account, loading (or creating) it and blocking on storage if needed. The
+     * locked mutators call this once before taking the stripe lock, so a storage round trip
+     * never holds up other accounts on the stripe; under the lock it then hits the cache.
+     */
     private PlayerBalance getOrLoadAccount(@Nonnull UUID playerUuid) {
-        return this.cache.computeIfAbsent(playerUuid, uuid -> this.storage.loadPlayer((UUID) uuid).join());
+        PlayerBalance cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            cached.markAccessed();
+            return cached;
+        }
+        try {
+            return this.loadAccountAsync(playerUuid).join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Run an operation once the account is cached. Cached accounts run inline;
+     * otherwise the operation runs after the load, off the storage thread.
+     */
+    private <T> CompletableFuture<T> withAccount(UUID playerUuid, Supplier<T> operation) {
+        if (this.cache.containsKey(playerUuid)) {
+            return CompletableFuture.completedFuture(operation.get());
+        }
+        return this.loadAccountAsync(playerUuid).thenApplyAsync(balance -> operation.get());
     }
 
     public double getBalance(@Nonnull UUID playerUuid) {
-        PlayerBalance balance = this.cache.get(playerUuid);
-        return balance != null ? balance.getBalance() : 0.0;
+        return Money.toDouble(this.getBalanceMinor(playerUuid));
     }
 
-    public PlayerBalance getPlayerBalance(@Nonnull UUID playerUuid) {
-        return this.cache.get(playerUuid);
+    /**
+     * Cached balance in minor units, 0 if the account is not cached. Never waits on storage,
+     * so it is safe on the world thread. While the cache is partial (bounded cache mode, or
+     * until the preload finishes) a stored account may not be cached; use
+     * {@link #getBalanceMinorAsync(UUID)} or {@link #getBalanceMinorBlocking(UUID)} for those.
+     */
+    public long getBalanceMinor(@Nonnull UUID playerUuid) {
+        PlayerBalance balance = this.getPlayerBalance(playerUuid);
+        return balance != null ? balance.getBalanceMinor() : 0L;
     }
 
-    public boolean hasBalance(@Nonnull UUID playerUuid, double amount) {
-        return this.getBalance(playerUuid) >= amount;
+    /**
+     * Balance in minor units, 0 if the account does not exist. An account that is not cached
+     * is loaded from storage, blocking the caller; never call it on the world thread.
+     */
+    public long getBalanceMinorBlocking(@Nonnull UUID playerUuid) {
+        PlayerBalance balance = this.findAccount(playerUuid);
+        return balance != null ? balance.getBalanceMinor() : 0L;
     }
 
-    public boolean deposit(@Nonnull UUID playerUuid, double amount, String reason) {
-        ReentrantLock lock = this.getLock(playerUuid);
-        lock.lock();
-        try {
-            double newBalance;
-            PlayerBalance balance = this.getOrLoadAccount(playerUuid);
-            if (balance == null) {
-                return false;
+    /**
+     * Balance in minor units without blocking on storage, 0 if the account does not exist.
+     */
+    public CompletableFuture<Long> getBalanceMinorAsync(@Nonnull UUID playerUuid) {
+        return this.findAccountAsync(playerUuid).thenApply(balance -> balance != null ? balance.getBalanceMinor() : 0L);
+    }
+
+    /**
+     * Cached account, or the stored one loaded into the cache if it may be missing from the
+     * cache (preload still running, or bounded cache). Null if the account does not exist.
+     */
+    private PlayerBalance findAccount(@Nonnull UUID playerUuid) {
+        PlayerBalance cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            cached.markAccessed();
+            return cached;
+        }
+        return this.findAccountAsync(playerUuid).join();
+    }
+
+    private CompletableFuture<PlayerBalance> findAccountAsync(@Nonnull UUID playerUuid) {
+        PlayerBalance cached = this.cache.get(playerUuid);
+        if (cached != null) {
+            cached.markAccessed();
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (!this.isCachePartial()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.existsInStorage(playerUuid).thenCompose(exists -> exists
+            ? this.loadAccountAsync(playerUuid).exceptionally(error -> null)
+            : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Ask storage whether an uncached account exists. Misses are remembered for
+     * {@link #MISSING_ACCOUNT_TTL_NANOS}, so repeated lookups of unknown UUIDs (plugins
+     * probing players who never joined) cost one round trip, not one per call. Loading or
+     * creating the account forgets the miss.
+     */
+    private CompletableFuture<Boolean> existsInStorage(@Nonnull UUID playerUuid) {
+        Long until = this.knownMissing.get(playerUuid);
+        if (until != null) {
+            if (until - System.nanoTime() > 0L) {
+                return CompletableFuture.completedFuture(false);
             }
-            double oldBalance = balance.getBalance();
-            BalanceChangeEvent event = EcotaleEvents.fire(new BalanceChangeEvent(playerUuid, oldBalance, newBalance = oldBalance + amount, BalanceChangeEvent.Cause.DEPOSIT, reason != null ? reason : "Deposit"));
-            if (event.isCancelled()) {
+            this.knownMissing.remove(playerUuid, until);
+        }
+        return this.storage.playerExists(playerUuid).handle((exists, error) -> {
+            if (error != null) {
+                // Treated as missing for this call only; the next lookup asks storage again
+                this.logger.at(Level.WARNING).log("Failed to look up account %s: %s", (Object) playerUuid, (Object) error.getMessage());
                 return false;
             }
-            if (balance.deposit(amount, reason)) {
-                this.dirtyPlayers.add(playerUuid);
-                BalanceHud.updatePlayerHud(playerUuid, balance.getBalance(), amount);
-                if (reason != null && !reason.startsWith("Transfer")) {
-                    TransactionType type = reason.startsWith("Admin") ? TransactionType.GIVE : TransactionType.EARN;
-                    this.transactionLogger.logAction(type, playerUuid, this.resolvePlayerName(playerUuid), amount);
-                }
-                return true;
+            if (!exists && !this.cache.containsKey(playerUuid)) {
+                this.knownMissing.put(playerUuid, System.nanoTime() + MISSING_ACCOUNT_TTL_NANOS);
             }
+            return exists;
+        });
+    }
+
+    /**
+     * @return true while accounts that exist in storage may be missing from the cache
+     */
+    private boolean isCachePartial() {
+        return this.boundedCache || !this.isPreloaded();
+    }
+
+    public PlayerBalance getPlayerBalance(@Nonnull UUID playerUuid) {
+        PlayerBalance balance = this.cache.get(playerUuid);
+        if (balance != null) {
+            balance.markAccessed();
+        }
+        return balance;
+    }
+
+    public boolean hasBalance(@Nonnull UUID playerUuid, double amount) {
+        return this.hasBalanceMinor(playerUuid, Money.toMinor(amount));
+    }
+
+    public boolean hasBalanceMinor(@Nonnull UUID playerUuid, long amount) {
+        return this.getBalanceMinor(playerUuid) >= amount;
+    }
+
+    public boolean deposit(@Nonnull UUID playerUuid, double amount, String reason) {
+        return this.depositMinor(playerUuid, Money.toMinor(amount), reason);
+    }
+
+    public boolean depositMinor(@Nonnull UUID playerUuid, long amount, String reason) {
+        if (this.lockFreeBalances) {
+            return this.applyDeposit(playerUuid, amount, reason);
+        }
+        if (amount <= 0L || this.getOrLoadAccount(playerUuid) == null) {
             return false;
+        }
+        ReentrantLock lock = this.locks.get(playerUuid);
+        lock.lock();
+        try {
+            return this.applyDeposit(playerUuid, amount, reason);
         } finally {
             lock.unlock();
         }
     }
 
+    private boolean applyDeposit(UUID playerUuid, long amount, String reason) {
+        if (amount <= 0L) {
+            return false;
+        }
+        PlayerBalance balance = this.getOrLoadAccount(playerUuid);
+        if (balance == null) {
+            return false;
+        }
+        long oldBalance = balance.getBalanceMinor();
+        long maxBalance = this.maxBalanceMinor();
+        if (amount > maxBalance - oldBalance) {
+            return false;
+        }
+        BalanceChangeEvent event = EcotaleEvents.fire(BalanceChangeEvent.ofMinor(playerUuid, oldBalance, oldBalance + amount, BalanceChangeEvent.Cause.DEPOSIT, reason != null ? reason : "Deposit"));
+        if (event.isCancelled()) {
+            return false;
+        }
+        PlayerBalance.Cell prev = balance.tryDeposit(amount, maxBalance, reason);
+        if (prev == null) {
+            return false;
+        }
+        this.markDirty(playerUuid);
+        this.onBalanceChanged(playerUuid, balance);
+        TransactionType type = reason == null || reason.startsWith("Transfer") ? null : reason.startsWith("Admin") ? TransactionType.GIVE : TransactionType.EARN;
+        this.dispatcher.publish(ChangeDispatcher.Change.single(playerUuid, amount, amount, type, reason));
+        return true;
+    }
+
+    /**
+     * Deposit without blocking on a storage load if the account is not cached yet.
+     */
+    public CompletableFuture<Boolean> depositAsync(@Nonnull UUID playerUuid, double amount, String reason) {
+        long minor = Money.toMinor(amount);
+        return this.withAccount(playerUuid, () -> this.depositMinor(playerUuid, minor, reason));
+    }
 
     public boolean withdraw(@Nonnull UUID playerUuid, double amount, String reason) {
-        ReentrantLock lock = this.getLock(playerUuid);
+        return this.withdrawMinor(playerUuid, Money.toMinor(amount), reason);
+    }
+
+    public boolean withdrawMinor(@Nonnull UUID playerUuid, long amount, String reason) {
+        if (this.lockFreeBalances) {
+            return this.applyWithdraw(playerUuid, amount, reason);
+        }
+        if (amount <= 0L || this.findAccount(playerUuid) == null) {
+            return false;
+        }
+        ReentrantLock lock = this.locks.get(playerUuid);
         lock.lock();
         try {
-            double newBalance;
-            PlayerBalance balance = this.cache.get(playerUuid);
-            if (balance == null) {
-                return false;
-            }
-            double oldBalance = balance.getBalance();
-            BalanceChangeEvent event = EcotaleEvents.fire(new BalanceChangeEvent(playerUuid, oldBalance, newBalance = oldBalance - amount, BalanceChangeEvent.Cause.WITHDRAW, reason != null ? reason : "Withdraw"));
-            if (event.isCancelled()) {
-                return false;
-            }
-            if (balance.withdraw(amount, reason)) {
-                this.dirtyPlayers.add(playerUuid);
-                BalanceHud.updatePlayerHud(playerUuid, balance.getBalance(), -amount);
-                if (reason != null && !reason.startsWith("Transfer")) {
-                    TransactionType type = reason.startsWith("Admin") ? TransactionType.TAKE : TransactionType.SPEND;
-                    this.transactionLogger.logAction(type, playerUuid, this.resolvePlayerName(playerUuid), amount);
-                }
-                return true;
-            }
-            return false;
+            return this.applyWithdraw(playerUuid, amount, reason);
         } finally {
             lock.unlock();
         }
     }
 
+    private boolean applyWithdraw(UUID playerUuid, long amount, String reason) {
+        if (amount <= 0L) {
+            return false;
+        }
+        PlayerBalance balance = this.findAccount(playerUuid);
+        if (balance == null) {
+            return false;
+        }
+        long oldBalance = balance.getBalanceMinor();
+        BalanceChangeEvent event = EcotaleEvents.fire(BalanceChangeEvent.ofMinor(playerUuid, oldBalance, oldBalance - amount, BalanceChangeEvent.Cause.WITHDRAW, reason != null ? reason : "Withdraw"));
+        if (event.isCancelled()) {
+            return false;
+        }
+        PlayerBalance.Cell prev = balance.tryWithdraw(amount, reason);
+        if (prev == null) {
+            return false;
+        }
+        this.markDirty(playerUuid);
+        this.onBalanceChanged(playerUuid, balance);
+        TransactionType type = reason == null || reason.startsWith("Transfer") ? null : reason.startsWith("Admin") ? TransactionType.TAKE : TransactionType.SPEND;
+        this.dispatcher.publish(ChangeDispatcher.Change.single(playerUuid, amount, -amount, type, reason));
+        return true;
+    }
+
+    /**
+     * Withdraw without blocking on a storage load if the account is not cached yet.
+     */
+    public CompletableFuture<Boolean> withdrawAsync(@Nonnull UUID playerUuid, double amount, String reason) {
+        long minor = Money.toMinor(amount);
+        return this.withAccount(playerUuid, () -> this.withdrawMinor(playerUuid, minor, reason));
+    }
+
     public void setBalance(@Nonnull UUID playerUuid, double amount, String reason) {
-        ReentrantLock lock = this.getLock(playerUuid);
+        this.setBalanceMinor(playerUuid, Money.toMinor(amount), reason);
+    }
+
+    /**
+     * Takes the stripe lock even with lock-free balances: transfers and batches refund by
+     * adding back, which must not land on top of a balance set in between.
+     */
+    public void setBalanceMinor(@Nonnull UUID playerUuid, long amount, String reason) {
+        if (this.getOrLoadAccount(playerUuid) == null) {
+            return;
+        }
+        ReentrantLock lock = this.locks.get(playerUuid);
         lock.lock();
         try {
-            PlayerBalance balance = this.getOrLoadAccount(playerUuid);
-            if (balance != null) {
-                double oldBalance = balance.getBalance();
-                BalanceChangeEvent event = EcotaleEvents.fire(new BalanceChangeEvent(playerUuid, oldBalance, amount, BalanceChangeEvent.Cause.ADMIN, reason != null ? reason : "Set balance"));
-                if (event.isCancelled()) {
-                    return;
-                }
-                balance.setBalance(amount, reason);
-                this.dirtyPlayers.add(playerUuid);
-                BalanceHud.updatePlayerHud(playerUuid, amount, amount - oldBalance);
-                TransactionType type = reason != null && reason.contains("reset") ? TransactionType.RESET : TransactionType.SET;
-                this.transactionLogger.logAction(type, playerUuid, this.resolvePlayerName(playerUuid), amount);
-            }
+            this.applySetBalance(playerUuid, amount, reason);
         } finally {
             lock.unlock();
         }
     }
 
+    private void applySetBalance(UUID playerUuid, long amount, String reason) {
+        PlayerBalance balance = this.getOrLoadAccount(playerUuid);
+        if (balance == null) {
+            return;
+        }
+        long oldBalance = balance.getBalanceMinor();
+        BalanceChangeEvent event = EcotaleEvents.fire(BalanceChangeEvent.ofMinor(playerUuid, oldBalance, amount, BalanceChangeEvent.Cause.ADMIN, reason != null ? reason : "Set balance"));
+        if (event.isCancelled()) {
+            return;
+        }
+        balance.setBalanceMinor(amount, reason);
+        this.markDirty(playerUuid);
+        this.onBalanceChanged(playerUuid, balance);
+        TransactionType type = reason != null && reason.contains("reset") ? TransactionType.RESET : TransactionType.SET;
+        this.dispatcher.publish(ChangeDispatcher.Change.single(playerUuid, amount, Math.max(0L, amount) - oldBalance, type, reason));
+    }
+
     public TransferResult transfer(@Nonnull UUID from, @Nonnull UUID to, double amount, String reason) {
+        return this.transferMinor(from, to, Money.toMinor(amount), reason);
+    }
+
+    public TransferResult transferMinor(@Nonnull UUID from, @Nonnull UUID to, long amount, String reason) {
         if (from.equals(to)) {
             return TransferResult.SELF_TRANSFER;
         }
-        if (amount <= 0.0) {
+        if (amount <= 0L) {
+            return TransferResult.INVALID_AMOUNT;
+        }
+        long fee = Math.round(amount * Main.CONFIG.get().getTransferFee());
+        if (fee > Long.MAX_VALUE - amount) {
             return TransferResult.INVALID_AMOUNT;
         }
-        double fee = amount * Main.CONFIG.get().getTransferFee();
-        double total = amount + fee;
-        UUID first = from.compareTo(to) < 0 ? from : to;
-        UUID second = from.compareTo(to) < 0 ? to : from;
-        ReentrantLock lock1 = this.getLock(first);
-        ReentrantLock lock2 = this.getLock(second);
-        lock1.lock();
+        long total = amount + fee;
+        if (this.getOrLoadAccount(from) == null || this.getOrLoadAccount(to) == null) {
+            return TransferResult.INSUFFICIENT_FUNDS;
+        }
+        this.locks.lockBoth(from, to);
         try {
-            PlayerBalance toBalance;
-            PlayerBalance fromBalance;
-            block13:
-            {
-                block12:
-                {
-                    lock2.lock();
-                    try {
-                        fromBalance = this.getOrLoadAccount(from);
-                        toBalance = this.getOrLoadAccount(to);
-                        if (fromBalance != null && fromBalance.hasBalance(total)) break block12;
-                        TransferResult transferResult = TransferResult.INSUFFICIENT_FUNDS;
-                        lock2.unlock();
-                        return transferResult;
-                    } catch (Throwable throwable) {
-                        lock2.unlock();
-                        throw throwable;
+            PlayerBalance fromBalance = this.getOrLoadAccount(from);
+            PlayerBalance toBalance = this.getOrLoadAccount(to);
+            if (fromBalance == null || toBalance == null || !fromBalance.hasBalanceMinor(total)) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            long maxBalance = this.maxBalanceMinor();
+            if (amount > maxBalance - toBalance.getBalanceMinor()) {
+                return TransferResult.RECIPIENT_MAX_BALANCE;
+            }
+            // Both legs are CAS-checked: in lock-free mode single-account deposits/withdrawals
+            // can still run concurrently with us even though we hold both stripes. Balance sets
+            // always take the stripe, so the refund below cannot undo one.
+            PlayerBalance.Cell fromPrev = fromBalance.tryWithdraw(total, "Transfer to " + to + ": " + reason);
+            if (fromPrev == null) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            PlayerBalance.Cell toPrev = toBalance.tryDeposit(amount, maxBalance, "Transfer from " + from + ": " + reason);
+            if (toPrev == null) {
+                fromBalance.refundInternal(total);
+                return TransferResult.RECIPIENT_MAX_BALANCE;
+            }
+            this.markDirty(from);
+            this.markDirty(to);
+            this.onBalanceChanged(from, fromBalance);
+            this.onBalanceChanged(to, toBalance);
+            this.dispatcher.publish(ChangeDispatcher.Change.transfer(from, to, amount, fee, reason));
+            return TransferResult.SUCCESS;
+        } finally {
+            this.locks.unlockBoth(from, to);
+        }
+    }
+
+    /**
+     * Apply several deposits/withdrawals as one all-or-nothing unit.
+     *
+     * All involved stripes are locked once, in stripe order, and the batch runs in three
+     * phases. First every check: legs are validated in order per account (no intermediate
+     * balance may leave [0, maxBalance]) and one BalanceChangeEvent is fired per account with
+     * its net change; every account gets its event even after one was cancelled, so the
+     * outcome does not depend on listener order. Only when nothing objected is the whole batch
+     * applied, and only then are the log entries (one batched insert) and the per-account HUD
+     * updates published.
+     */
+    public BatchResult applyBatch(@Nonnull List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return BatchResult.INVALID_AMOUNT;
+        }
+        // Net effect per account, in first-seen order
+        LinkedHashMap<UUID, long[]> legs = new LinkedHashMap<>();
+        for (Operation op : operations) {
+            if (op.amountMinor() <= 0L) {
+                return BatchResult.INVALID_AMOUNT;
+            }
+            long[] sums = legs.computeIfAbsent(op.player(), k -> new long[2]);
+            int side = op.deposit() ? 0 : 1;
+            if (op.amountMinor() > Long.MAX_VALUE - sums[side]) {
+                return op.deposit() ? BatchResult.MAX_BALANCE : BatchResult.INSUFFICIENT_FUNDS;
+            }
+            sums[side] += op.amountMinor();
+        }
+        for (UUID uuid : legs.keySet()) {
+            if (this.getOrLoadAccount(uuid) == null) {
+                return BatchResult.ACCOUNT_NOT_FOUND;
+            }
+        }
+        int[] stripes = this.locks.lockAll(legs.keySet());
+        try {
+            long maxBalance = this.maxBalanceMinor();
+            Map<UUID, PlayerBalance> accounts = new HashMap<>();
+            Map<UUID, Long> running = new HashMap<>();
+            for (UUID uuid : legs.keySet()) {
+                PlayerBalance balance = this.getOrLoadAccount(uuid);
+                if (balance == null) {
+                    return BatchResult.ACCOUNT_NOT_FOUND;
+                }
+                accounts.put(uuid, balance);
+                running.put(uuid, balance.getBalanceMinor());
+            }
+            // Every check runs before anything is applied
+            for (Operation op : operations) {
+                long current = running.get(op.player());
+                if (op.deposit() ? op.amountMinor() > maxBalance - current : op.amountMinor() > current) {
+                    return op.deposit() ? BatchResult.MAX_BALANCE : BatchResult.INSUFFICIENT_FUNDS;
+                }
+                running.put(op.player(), op.deposit() ? current + op.amountMinor() : current - op.amountMinor());
+            }
+            boolean cancelled = false;
+            for (Map.Entry<UUID, long[]> entry : legs.entrySet()) {
+                UUID uuid = entry.getKey();
+                long oldBalance = accounts.get(uuid).getBalanceMinor();
+                long net = entry.getValue()[0] - entry.getValue()[1];
+                BalanceChangeEvent.Cause cause = net >= 0L ? BalanceChangeEvent.Cause.DEPOSIT : BalanceChangeEvent.Cause.WITHDRAW;
+                BalanceChangeEvent event = EcotaleEvents.fire(BalanceChangeEvent.ofMinor(uuid, oldBalance, oldBalance + net, cause, "Batch (" + operations.size() + " operations)"));
+                cancelled |= event.isCancelled();
+            }
+            if (cancelled) {
+                return BatchResult.CANCELLED;
+            }
+            // Each account is swapped by CAS; in lock-free mode single operations can still
+            // interleave, so roll back the accounts already applied if a later one is rejected.
+            Map<UUID, PlayerBalance.Cell> applied = new LinkedHashMap<>();
+            for (Map.Entry<UUID, long[]> entry : legs.entrySet()) {
+                long[] sums = entry.getValue();
+                PlayerBalance.Cell prev = accounts.get(entry.getKey()).tryApply(sums[0], sums[1], maxBalance, "Batch");
+                if (prev == null) {
+                    for (UUID done : applied.keySet()) {
+                        long[] undo = legs.get(done);
+                        accounts.get(done).revertApply(undo[0], undo[1]);
                     }
+                    return sums[1] > sums[0] ? BatchResult.INSUFFICIENT_FUNDS : BatchResult.MAX_BALANCE;
                 }
-                double maxBalance = (Main.CONFIG.get()).getMaxBalance();
-                if (toBalance == null || !(toBalance.getBalance() + amount > maxBalance)) break block13;
-                TransferResult transferResult = TransferResult.RECIPIENT_MAX_BALANCE;
-                lock2.unlock();
-                return transferResult;
+                applied.put(entry.getKey(), prev);
+            }
+            // One log entry per leg (no HUD), then one HUD update per account with its net change
+            for (Operation op : operations) {
+                String reason = op.reason() != null ? op.reason() : "";
+                TransactionType type = op.deposit()
+                    ? (reason.startsWith("Admin") ? TransactionType.GIVE : TransactionType.EARN)
+                    : (reason.startsWith("Admin") ? TransactionType.TAKE : TransactionType.SPEND);
+                this.dispatcher.publish(ChangeDispatcher.Change.logOnly(op.player(), op.amountMinor(), type, op.reason()));
             }
-            fromBalance.withdrawInternal(total, "Transfer to " + to + ": " + reason);
-            toBalance.depositInternal(amount, "Transfer from " + from + ": " + reason);
-            this.dirtyPlayers.add(from);
-            this.dirtyPlayers.add(to);
+            for (UUID uuid : applied.keySet()) {
+                long[] sums = legs.get(uuid);
+                this.markDirty(uuid);
+                this.onBalanceChanged(uuid, accounts.get(uuid));
+                this.dispatcher.publish(ChangeDispatcher.Change.single(uuid, 0L, sums[0] - sums[1], null, null));
+            }
+            return BatchResult.SUCCESS;
+        } finally {
+            this.locks.unlockAll(stripes);
+        }
+    }
 
-            this.transactionLogger.logTransfer(from, this.resolvePlayerName(from), to, this.resolvePlayerName(to), amount);
-            TransferResult transferResult = TransferResult.SUCCESS;
+    private long maxBalanceMinor() {
+        return Money.toMinor(Main.CONFIG.get().getMaxBalance());
+    }
 
-            BalanceHud.updatePlayerHud(to, toBalance.getBalance(), amount);
-            BalanceHud.updatePlayerHud(from, fromBalance.getBalance(), -amount);
+    /**
+     * Exact sum of all cached balances in minor units. O(1), kept up to date by every mutation.
+     */
+    public long getTotalCirculatingMinor() {
+        return this.stats.getTotalSupplyMinor();
+    }
 
-            lock2.unlock();
-            return transferResult;
-        } finally {
-            lock1.unlock();
-        }
+    /**
+     * Running totals (supply, accounts, earned/spent, min/max) without copying the cache.
+     */
+    public EconomyStats getEconomyStats() {
+        return this.stats;
     }
 
+    /**
+     * Copy of every cached account (only the recently used ones in bounded cache mode).
+     * O(n) per call; prefer {@link #getAccounts()}.
+     */
     public Map<UUID, PlayerBalance> getAllBalances() {
         return new HashMap<>(this.cache);
     }
 
+    /**
+     * Read-only, zero-copy view of the cached accounts. In bounded cache mode that is only
+     * the recently used accounts, not every stored one.
+     */
+    public AccountView getAccounts() {
+        return this.accountView;
+    }
+
+    /**
+     * Whether the account is cached. Never waits on storage; see
+     * {@link #containsAccountBlocking(UUID)} for accounts that may only be stored.
+     */
+    public boolean containsAccount(@Nonnull UUID playerUuid) {
+        return this.cache.containsKey(playerUuid);
+    }
+
+    /**
+     * Whether the account exists. While the cache is partial an uncached account is looked up
+     * in storage, blocking the caller; never call it on the world thread.
+     */
+    public boolean containsAccountBlocking(@Nonnull UUID playerUuid) {
+        if (this.cache.containsKey(playerUuid)) {
+            return true;
+        }
+        // Not every account is cached yet, or ever in bounded mode
+        return this.isCachePartial() && this.existsInStorage(playerUuid).join();
+    }
+
     public int getCachedPlayerCount() {
         return this.cache.size();
     }
 
     public void markDirty(@Nonnull UUID playerUuid) {
         this.dirtyPlayers.add(playerUuid);
+        this.changedSinceSnapshot.add(playerUuid);
+        // Age of the dirty set is measured from its oldest unsaved change
+        this.dirtySince.compareAndSet(0L, System.nanoTime());
+    }
+
+    /**
+     * Daily balance snapshot: hands storage the accounts changed since the previous one,
+     * so the work follows daily activity rather than the number of accounts. Accounts are
+     * removed from the changed set before they are copied, and re-added if the write fails.
+     *
+     * Each account is taken under its stripe lock, the lock eviction holds: an account is
+     * either still cached here or already parked in {@code evictedSinceSnapshot}.
+     */
+    public CompletableFuture<Integer> snapshotDailyBalances(@Nonnull LocalDate day) {
+        ArrayList<BalanceSnapshot> changed = new ArrayList<BalanceSnapshot>();
+        Iterator<UUID> it = this.changedSinceSnapshot.iterator();
+        while (it.hasNext()) {
+            UUID uuid = it.next();
+            Long parked;
+            PlayerBalance balance;
+            ReentrantLock lock = this.locks.get(uuid);
+            lock.lock();
+            try {
+                it.remove();
+                parked = this.evictedSinceSnapshot.remove(uuid);
+                balance = this.cache.get(uuid);
+            } finally {
+                lock.unlock();
+            }
+            if (balance != null) {
+                changed.add(balance.snapshot());
+            } else if (parked != null) {
+                changed.add(new BalanceSnapshot(uuid, 0L, parked, 0L, 0L, null, 0L));
+            }
+        }
+        return this.storage.writeDailySnapshot(day, changed).whenComplete((rows, error) -> {
+            if (error != null) {
+                for (BalanceSnapshot snapshot : changed) {
+                    ReentrantLock lock = this.locks.get(snapshot.uuid());
+                    lock.lock();
+                    try {
+                        if (!this.cache.containsKey(snapshot.uuid())) {
+                            this.evictedSinceSnapshot.putIfAbsent(snapshot.uuid(), snapshot.balanceMinor());
+                        }
+                        this.changedSinceSnapshot.add(snapshot.uuid());
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                this.logger.at(Level.WARNING).log("Daily balance snapshot failed, %d accounts kept for the next one: %s", changed.size(), error.getMessage());
+            } else {
+                this.logger.at(Level.INFO).log("Daily balance snapshot for %s: %d rows", (Object) day, rows);
+            }
+        });
     }
 
     public void forceSave() {
         this.saveDirtyPlayers();
     }
 
-    private void autoSaveLoop() {
-        while (this.running) {
-            try {
-                LockSupport.parkNanos((long) Main.CONFIG.get().getAutoSaveInterval() * 1000L);
-                if (!this.dirtyPlayers.isEmpty()) {
-                    this.saveDirtyPlayers();
-                }
-                if (System.currentTimeMillis() - this.lastLockCleanup <= LOCK_CLEANUP_INTERVAL_MS) continue;
-                this.cleanupStaleLocks();
-                this.lastLockCleanup = System.currentTimeMillis();
-            } catch (Exception e) {
-                break;
+    /**
+     * Ask the autosave thread to flush on its next tick without waiting for it.
+     */
+    public void requestFlush() {
+        this.flushRequested = true;
+        this.saveScheduler.execute(this::flushTick);
+    }
+
+    public FlushStats getFlushStats() {
+        return this.flushStats;
+    }
+
+    /**
+     * Autosave policy, evaluated every {@link #FLUSH_TICK_MS}. Flushes when:
+     * - the oldest unsaved change is older than AutoSaveInterval (times the current backoff)
+     * - the dirty set reached AutoSaveDirtyThreshold, at most once per second (times the backoff)
+     * - a flush was requested explicitly
+     */
+    private void flushTick() {
+        try {
+            if (this.dirtyPlayers.isEmpty()) {
+                this.flushRequested = false;
+                return;
+            }
+            EcotaleConfig config = Main.CONFIG.get();
+            long now = System.nanoTime();
+            long since = this.dirtySince.get();
+            long interval = TimeUnit.SECONDS.toNanos(Math.max(1, config.getAutoSaveInterval())) * this.backoff;
+            boolean due = this.flushRequested
+                || since != 0L && now - since >= interval
+                || this.dirtyPlayers.size() >= config.getAutoSaveDirtyThreshold() && now - this.lastFlushNanos >= MIN_FLUSH_GAP_NANOS * this.backoff;
+            if (due) {
+                this.flushRequested = false;
+                this.saveDirtyPlayers();
             }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            this.logger.at(Level.SEVERE).log("Auto-save tick failed: %s", (Object) e.getMessage());
         }
     }
 
-    private void saveDirtyPlayers() {
+    /**
+     * Write-behind flush. Each dirty account is removed from the dirty set before it is
+     * snapshotted, so a change racing with the flush re-marks it and is picked up next time.
+     * Accounts whose current version is already persisted are skipped, and only the rows
+     * storage reports as failed are re-queued.
+     * Flushes are serialized so an older snapshot can never overwrite a newer one.
+     */
+    private synchronized void saveDirtyPlayers() {
+        long since = this.dirtySince.get();
         if (this.dirtyPlayers.isEmpty()) {
+            this.resetDirtySince(since);
             return;
         }
-        HashSet<UUID> toSave = new HashSet<UUID>(this.dirtyPlayers);
-        this.dirtyPlayers.clear();
-        HashMap<UUID, PlayerBalance> dirty = new HashMap<UUID, PlayerBalance>();
-        for (UUID uuid : toSave) {
+        long start = System.nanoTime();
+        // Seal the journal first: every record in the sealed segments is covered by the snapshots below
+        long sealed = this.journal != null ? this.journal.rotate() : -1L;
+        ArrayList<BalanceSnapshot> snapshots = new ArrayList<BalanceSnapshot>();
+        Iterator<UUID> it = this.dirtyPlayers.iterator();
+        while (it.hasNext()) {
+            UUID uuid = it.next();
+            it.remove();
             PlayerBalance balance = this.cache.get(uuid);
-            if (balance == null) continue;
-            dirty.put(uuid, balance);
+            if (balance == null || !balance.hasUnpersistedChanges()) continue;
+            snapshots.add(balance.snapshot());
+        }
+        this.resetDirtySince(since);
+        int retried = this.persistSnapshots(snapshots, -1L);
+        if (retried == 0 && sealed >= 0L) {
+            this.journal.deleteThrough(sealed);
+        }
+        long duration = System.nanoTime() - start;
+        this.lastFlushNanos = System.nanoTime();
+        // Back off while storage is failing or slow, recover gradually once it is healthy again
+        if (retried > 0 || TimeUnit.NANOSECONDS.toMillis(duration) > Main.CONFIG.get().getAutoSaveSlowFlushMs()) {
+            this.backoff = Math.min(MAX_BACKOFF, this.backoff * 2);
+        } else {
+            this.backoff = Math.max(1, this.backoff / 2);
+        }
+        this.flushStats.record(snapshots.size(), retried, duration, this.backoff);
+        if (this.boundedCache && retried < snapshots.size()) {
+            this.refreshStorageTotals();
+        }
+    }
+
+    /**
+     * Clear the dirty-set age after a drain. Only clears the value the drain started from, and
+     * re-arms it if changes arrived meanwhile, so a racing markDirty is never left without an age
+     * and an empty set never keeps a stale one.
+     */
+    private void resetDirtySince(long since) {
+        if (this.dirtySince.compareAndSet(since, 0L) && !this.dirtyPlayers.isEmpty()) {
+            this.dirtySince.compareAndSet(0L, System.nanoTime());
         }
-        this.storage.saveAll(dirty).exceptionally(e -> {
+    }
+
+    /**
+     * Re-read the totals over every stored account (bounded cache mode) after a flush wrote
+     * balances, at most every {@link #TOTALS_REFRESH_NANOS}: the query aggregates the whole
+     * balances table, so it follows saves rather than running on a fixed timer.
+     */
+    private void refreshStorageTotals() {
+        long now = System.nanoTime();
+        if (now - this.totalsRefreshedNanos < TOTALS_REFRESH_NANOS) {
+            return;
+        }
+        this.totalsRefreshedNanos = now;
+        this.storage.queryTotalsAsync().thenAccept(this.stats::useStorageTotals);
+    }
+
+    /**
+     * @param timeoutMs Max time to wait for storage, or -1 to wait indefinitely
+     * @return Number of snapshots that failed and were re-queued
+     */
+    private int persistSnapshots(List<BalanceSnapshot> snapshots, long timeoutMs) {
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        Set<UUID> failed;
+        try {
+            CompletableFuture<Set<UUID>> future = this.storage.saveSnapshots(snapshots);
+            failed = timeoutMs < 0L ? future.join() : future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
             this.logger.at(Level.SEVERE).log("Auto-save failed: %s", e.getMessage());
-            this.dirtyPlayers.addAll(toSave);
-            return null;
-        });
+            failed = null;
+        }
+        int retried = 0;
+        for (BalanceSnapshot snapshot : snapshots) {
+            if (failed == null || failed.contains(snapshot.uuid())) {
+                this.markDirty(snapshot.uuid());
+                ++retried;
+                continue;
+            }
+            PlayerBalance balance = this.cache.get(snapshot.uuid());
+            if (balance != null) {
+                balance.markPersisted(snapshot.version());
+            }
+        }
+        if (retried > 0) {
+            this.logger.at(Level.WARNING).log("%d of %d balances failed to save and will be retried", retried, snapshots.size());
+        }
+        return retried;
     }
 
     public void shutdown() {
+        this.closing = true;
         this.logger.at(Level.INFO).log("EconomyManager shutdown starting... (%d dirty, %d cached)", this.dirtyPlayers.size(), this.cache.size());
-        this.running = false;
-        this.logger.at(Level.INFO).log("Interrupting auto-save thread...");
-        this.saveThread.interrupt();
-        if (!this.cache.isEmpty()) {
-            this.logger.at(Level.INFO).log("Saving %d player balances...", this.cache.size());
-            try {
+        this.logger.at(Level.INFO).log("Stopping auto-save scheduler...");
+        this.saveScheduler.shutdown();
+        this.dispatcher.close();
+        boolean saved = true;
+        ArrayList<BalanceSnapshot> pending = new ArrayList<BalanceSnapshot>();
+        for (PlayerBalance balance : this.cache.values()) {
+            if (balance.hasUnpersistedChanges()) {
+                pending.add(balance.snapshot());
+            }
+        }
+        if (!pending.isEmpty()) {
+            this.logger.at(Level.INFO).log("Saving %d changed player balances...", pending.size());
+            synchronized (this) {
                 if (this.storage instanceof H2StorageProvider h2) {
-                    h2.saveAllSync(this.cache);
-                    this.logger.at(Level.INFO).log("Player balances saved successfully (sync)");
+                    Set<UUID> failed = h2.saveSnapshotsSync(pending);
+                    saved = failed.isEmpty();
+                    if (failed.isEmpty()) {
+                        this.logger.at(Level.INFO).log("Player balances saved successfully (sync)");
+                    } else {
+                        this.logger.at(Level.SEVERE).log("%d player balances could not be saved", failed.size());
+                    }
                 } else {
-                    this.storage.saveAll(this.cache).get(10L, TimeUnit.SECONDS);
-                    this.logger.at(Level.INFO).log("Player balances saved successfully");
+                    int failed = this.persistSnapshots(pending, 10000L);
+                    saved = failed == 0;
+                    if (failed == 0) {
+                        this.logger.at(Level.INFO).log("Player balances saved successfully");
+                    } else {
+                        this.logger.at(Level.WARNING).log("%d player balances could not be saved - data may be lost", failed);
+                    }
                 }
-            } catch (TimeoutException e) {
-                this.logger.at(Level.WARNING).log("Save operation timed out after 10 seconds - data may be lost");
-            } catch (Exception e) {
-                this.logger.at(Level.SEVERE).log("Error saving player balances: %s", e.getMessage());
+            }
+        }
+        if (this.journal != null) {
+            this.journal.close();
+            if (saved) {
+                this.journal.deleteAll();
+            } else {
+                this.logger.at(Level.WARNING).log("Keeping balance journal for replay on next start");
             }
         }
         this.logger.at(Level.INFO).log("Shutting down storage provider...");
@@ -335,46 +961,382 @@ public class EconomyManager {
         return this.transactionLogger;
     }
 
-    private void bulkPreload() {
+    /**
+     * Load every stored account into the cache in the background. Storage streams the
+     * accounts in chunks that go straight into the cache, so setup does not wait for them and
+     * players can join meanwhile. Until {@link #isPreloaded()}, accounts missing from the cache
+     * are loaded on demand as usual.
+     *
+     * In bounded cache mode only accounts changed in the last CachePreloadActiveDays days are
+     * preloaded.
+     *
+     * The preload never replaces a cached account. An account that was loaded on demand or
+     * replayed from the journal is newer than the stored row.
+     */
+    private void startPreload() {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> load = this.boundedCache
+            ? this.storage.loadActiveChunked(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Main.CONFIG.get().getCachePreloadActiveDays()), PRELOAD_CHUNK_SIZE, this::preloadChunk)
+            : this.storage.loadAllChunked(PRELOAD_CHUNK_SIZE, this::preloadChunk);
+        load.whenComplete((total, error) -> {
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (error != null) {
+                this.logger.at(Level.WARNING).log("Preload stopped after %d accounts, the rest will load on demand: %s", this.preloaded.get(), (Object) error.getMessage());
+            } else {
+                this.logger.at(Level.INFO).log("Preloaded %d player balances in %d ms", this.preloaded.get(), ms);
+            }
+            if (!this.boundedCache) {
+                // Every account is cached from now on, misses are no longer looked up
+                this.knownMissing.clear();
+            }
+            this.preload.complete(null);
+        });
+    }
+
+    private void preloadChunk(List<PlayerBalance> chunk) {
+        if (this.closing) {
+            throw new CancellationException("Economy is shutting down");
+        }
+        int added = 0;
+        for (PlayerBalance balance : chunk) {
+            UUID uuid = balance.getPlayerUuid();
+            balance.attach(this.stats);
+            if (this.cache.putIfAbsent(uuid, balance) != null) {
+                balance.detach();
+                continue;
+            }
+            this.onBalanceChanged(uuid, balance);
+            ++added;
+        }
+        this.preloaded.addAndGet(added);
+    }
+
+    /**
+     * @return true once the preload has finished; before that the cache holds only part of the accounts
+     */
+    public boolean isPreloaded() {
+        return this.preload.isDone();
+    }
+
+    /**
+     * @return Completes when the preload has finished, successfully or not
+     */
+    public CompletableFuture<Void> getPreload() {
+        return this.preload;
+    }
+
+    /**
+     * @return Accounts put into the cache by the preload so far
+     */
+    public int getPreloadedCount() {
+        return this.preloaded.get();
+    }
+
+    /**
+     * Apply balances journaled after the last successful save of a previous run, then open
+     * a fresh segment. Replayed accounts are written to storage straight away.
+     */
+    private void replayJournal() {
+        if (this.journal == null) {
+            return;
+        }
+        Map<UUID, BalanceSnapshot> replayed = Map.of();
+        try {
+            replayed = this.journal.replay();
+        } catch (Exception e) {
+            this.logger.at(Level.SEVERE).log("Failed to read balance journal: %s", (Object) e.getMessage());
+        }
+        for (BalanceSnapshot snapshot : replayed.values()) {
+            PlayerBalance balance = snapshot.toPlayerBalance();
+            balance.markReplayed();
+            balance.attach(this.stats);
+            PlayerBalance previous = this.cache.put(snapshot.uuid(), balance);
+            if (previous != null) {
+                previous.detach();
+            }
+            this.markDirty(snapshot.uuid());
+            this.leaderboard.refresh(snapshot.uuid(), balance);
+        }
         try {
-            Map<UUID, PlayerBalance> all = this.storage.loadAll().join();
-            this.cache.putAll(all);
-            this.logger.at(Level.INFO).log("Bulk preloaded %d player balances", all.size());
+            this.journal.open();
         } catch (Exception e) {
-            this.logger.at(Level.WARNING).log("Bulk preload failed, will load on-demand: %s", (Object) e.getMessage());
+            this.logger.at(Level.SEVERE).log("Failed to open balance journal: %s", (Object) e.getMessage());
+        }
+        if (!replayed.isEmpty()) {
+            this.saveDirtyPlayers();
+        }
+    }
+
+    /**
+     * Single hook for every balance mutation; keeps derived indexes in step with the cache.
+     */
+    private void onBalanceChanged(UUID playerUuid, PlayerBalance balance) {
+        balance.markAccessed();
+        this.leaderboard.refresh(playerUuid, balance);
+        if (this.journal != null && balance.hasUnpersistedChanges()) {
+            this.journal.append(balance);
         }
     }
 
     public List<Map.Entry<UUID, PlayerBalance>> getLeaderboard(int limit) {
-        long now = System.currentTimeMillis();
-        if (this.cachedLeaderboard == null || now - this.lastLeaderboardRebuild > LEADERBOARD_CACHE_MS) {
-            this.cachedLeaderboard = this.cache.entrySet().stream().sorted((a, b) -> Double.compare(((PlayerBalance) b.getValue()).getBalance(), (a.getValue()).getBalance())).limit(MAX_LEADERBOARD_CACHE_SIZE).collect(Collectors.toList());
-            this.lastLeaderboardRebuild = now;
+        return this.getLeaderboard(0, limit);
+    }
+
+    /**
+     * Accounts at leaderboard positions [offset, offset + limit), highest balance first.
+     *
+     * In bounded cache mode the rows are read from storage, blocking the caller; accounts that
+     * are not cached come back as read-only copies of their stored row.
+     */
+    public List<Map.Entry<UUID, PlayerBalance>> getLeaderboard(int offset, int limit) {
+        if (this.boundedCache) {
+            List<PlayerBalance> rows = this.queryStoredLeaderboard(offset, limit).join();
+            List<Map.Entry<UUID, PlayerBalance>> result = new ArrayList<>(rows.size());
+            for (PlayerBalance row : rows) {
+                PlayerBalance cached = this.cache.get(row.getPlayerUuid());
+                result.add(Map.entry(row.getPlayerUuid(), cached != null ? cached : row));
+            }
+            return result;
+        }
+        List<LeaderboardIndex.Entry> page = this.leaderboard.page(offset, limit);
+        List<Map.Entry<UUID, PlayerBalance>> result = new ArrayList<>(page.size());
+        for (LeaderboardIndex.Entry entry : page) {
+            PlayerBalance balance = this.cache.get(entry.uuid());
+            if (balance != null) {
+                result.add(Map.entry(entry.uuid(), balance));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Leaderboard positions [offset, offset + limit), highest balance first.
+     * Blocks on storage in bounded cache mode; see {@link #getLeaderboardPageAsync(int, int)}.
+     */
+    public List<LeaderboardIndex.Entry> getLeaderboardPage(int offset, int limit) {
+        return this.getLeaderboardPageAsync(offset, limit).join();
+    }
+
+    /**
+     * Leaderboard positions [offset, offset + limit), highest balance first.
+     *
+     * In bounded cache mode the page is read from storage, as of the last save, and holds
+     * at most 1000 rows. Otherwise it is answered from memory and already complete.
+     */
+    public CompletableFuture<List<LeaderboardIndex.Entry>> getLeaderboardPageAsync(int offset, int limit) {
+        if (!this.boundedCache) {
+            return CompletableFuture.completedFuture(this.leaderboard.page(offset, limit));
+        }
+        return this.queryStoredLeaderboard(offset, limit).thenApply(rows -> {
+            List<LeaderboardIndex.Entry> page = new ArrayList<>(rows.size());
+            for (PlayerBalance row : rows) {
+                page.add(new LeaderboardIndex.Entry(row.getPlayerUuid(), row.getBalanceMinor()));
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Stored leaderboard rows [offset, offset + limit), at most 1000. Storage pages by key
+     * ({@code balance, uuid}), never by OFFSET: the read resumes from the closest page
+     * boundary seen so far at or before the offset, so paging forward costs one index range
+     * scan per page. Boundaries are remembered as positions; a page read after balances moved
+     * may overlap or skip a row at its edges, as with any keyset page token.
+     */
+    private CompletableFuture<List<PlayerBalance>> queryStoredLeaderboard(int offset, int limit) {
+        Map.Entry<Integer, String> start = offset > 0 ? this.leaderboardTokens.floorEntry(offset) : null;
+        int position = start != null ? start.getKey() : 0;
+        String token = start != null ? start.getValue() : null;
+        return this.readStoredLeaderboard(position, token, offset, Math.min(limit, MAX_STORAGE_LEADERBOARD_ROWS));
+    }
+
+    private CompletableFuture<List<PlayerBalance>> readStoredLeaderboard(int position, String token, int offset, int rows) {
+        // Rows before the offset are stepped over in keyset chunks, not read with OFFSET
+        int skip = offset - position;
+        int size = skip > 0 ? Math.min(skip, MAX_STORAGE_LEADERBOARD_ROWS) : rows;
+        return this.storage.getTopBalancesPage(token, size).thenCompose(page -> {
+            int next = position + page.items().size();
+            if (page.nextToken() != null) {
+                if (this.leaderboardTokens.size() >= MAX_LEADERBOARD_TOKENS) {
+                    this.leaderboardTokens.clear();
+                }
+                this.leaderboardTokens.put(next, page.nextToken());
+            }
+            if (skip <= 0) {
+                return CompletableFuture.completedFuture(page.items());
+            }
+            if (page.nextToken() == null) {
+                return CompletableFuture.completedFuture(List.<PlayerBalance>of());
+            }
+            return this.readStoredLeaderboard(next, page.nextToken(), offset, rows);
+        });
+    }
+
+    /**
+     * 1-based leaderboard position of a cached account, or -1 if it is not cached.
+     * Blocks on storage in bounded cache mode; see {@link #rankOfAsync(UUID)}.
+     */
+    public int rankOf(@Nonnull UUID playerUuid) {
+        return this.rankOfAsync(playerUuid).join();
+    }
+
+    public CompletableFuture<Integer> rankOfAsync(@Nonnull UUID playerUuid) {
+        if (!this.boundedCache) {
+            return CompletableFuture.completedFuture(this.leaderboard.rankOf(playerUuid));
+        }
+        PlayerBalance balance = this.cache.get(playerUuid);
+        if (balance == null) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        return this.countAboveMinorAsync(balance.getBalanceMinor()).thenApply(above -> above + 1);
+    }
+
+    /**
+     * Number of accounts with a balance strictly greater than the amount; in bounded cache
+     * mode counted in storage, blocking the caller (see {@link #countAboveMinorAsync(long)}).
+     */
+    public int countAbove(double amount) {
+        return this.countAboveMinor(Money.toMinor(amount));
+    }
+
+    public int countAboveMinor(long amount) {
+        return this.countAboveMinorAsync(amount).join();
+    }
+
+    public CompletableFuture<Integer> countAboveAsync(double amount) {
+        return this.countAboveMinorAsync(Money.toMinor(amount));
+    }
+
+    /**
+     * Number of accounts with a balance strictly greater than the amount. Counted in storage
+     * in bounded cache mode, otherwise answered from memory and already complete.
+     */
+    public CompletableFuture<Integer> countAboveMinorAsync(long amount) {
+        if (this.boundedCache) {
+            return this.storage.countPlayersWithBalanceGreaterMinorAsync(amount);
+        }
+        return CompletableFuture.completedFuture(this.leaderboard.countAbove(amount));
+    }
+
+    /**
+     * Number of accounts on the leaderboard: the cached ones, or every stored one in bounded
+     * cache mode.
+     */
+    public int totalAccounts() {
+        return this.boundedCache ? this.storage.getPlayerCount() : this.leaderboard.size();
+    }
+
+    /**
+     * Bounded cache mode, if configured and supported by the storage provider.
+     */
+    private boolean resolveBoundedCache() {
+        if (!"bounded".equalsIgnoreCase(Main.CONFIG.get().getCacheMode())) {
+            return false;
+        }
+        if (this.storage instanceof JsonStorageProvider || this.lockFreeBalances) {
+            this.logger.at(Level.WARNING).log("CacheMode Bounded needs SQL storage and locked balances, keeping every account cached");
+            return false;
+        }
+        return true;
+    }
+
+    private void evictionTick() {
+        try {
+            long now = System.nanoTime();
+            this.knownMissing.values().removeIf(until -> until - now <= 0L);
+            this.evictIdle();
+        } catch (Exception e) {
+            this.logger.at(Level.WARNING).log("Cache eviction failed: %s", (Object) e.getMessage());
         }
-        return this.cachedLeaderboard.stream().limit(limit).collect(Collectors.toList());
     }
 
-    private void cleanupStaleLocks() {
-        Set onlinePlayers = Universe.get().getPlayers().stream().map(PlayerRef::getUuid).collect(Collectors.toSet());
+    /**
+     * Evict idle accounts once the cache holds more than CacheMaxAccounts, oldest access
+     * first, down to 90% of the limit. Only saved accounts of offline players are evicted;
+     * a later access loads them again from storage.
+     */
+    private void evictIdle() {
+        int excess = this.cache.size() - this.maxCachedAccounts;
+        if (excess <= 0) {
+            return;
+        }
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(Main.CONFIG.get().getCacheIdleMinutes());
+        List<PlayerBalance> idle = new ArrayList<>();
+        for (PlayerBalance balance : this.cache.values()) {
+            if (balance.getLastAccess() < idleBefore && this.isEvictable(balance.getPlayerUuid(), balance)) {
+                idle.add(balance);
+            }
+        }
+        idle.sort(Comparator.comparingLong(PlayerBalance::getLastAccess));
+        int target = Math.min(idle.size(), excess + this.maxCachedAccounts / 10);
         int removed = 0;
-        for (UUID uuid : new HashSet<>(this.playerLocks.keySet())) {
-            ReentrantLock lock;
-            if (onlinePlayers.contains(uuid) || (lock = this.playerLocks.get(uuid)) == null || lock.isLocked())
-                continue;
-            this.playerLocks.remove(uuid);
-            ++removed;
+        for (int i = 0; i < target; ++i) {
+            if (this.tryEvict(idle.get(i), idleBefore)) {
+                ++removed;
+            }
         }
         if (removed > 0) {
-            this.logger.at(Level.FINE).log("Cleaned up %d stale player locks", removed);
+            this.evicted.addAndGet(removed);
+            this.logger.at(Level.FINE).log("Evicted %d idle accounts (%d cached)", removed, this.cache.size());
+        }
+    }
+
+    private boolean isEvictable(UUID uuid, PlayerBalance balance) {
+        return !this.onlinePlayers.contains(uuid) && !balance.hasUnpersistedChanges() && !this.dirtyPlayers.contains(uuid) && !this.pendingLoads.containsKey(uuid);
+    }
+
+    /**
+     * Remove one account under its stripe lock, so no mutation holds it meanwhile.
+     * Skipped if the stripe is busy or the account was used since it was picked.
+     */
+    private boolean tryEvict(PlayerBalance balance, long idleBefore) {
+        UUID uuid = balance.getPlayerUuid();
+        ReentrantLock lock = this.locks.get(uuid);
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (balance.getLastAccess() >= idleBefore || !this.isEvictable(uuid, balance) || !this.cache.remove(uuid, balance)) {
+                return false;
+            }
+            this.leaderboard.remove(uuid);
+            balance.detach();
+            if (this.changedSinceSnapshot.contains(uuid)) {
+                this.evictedSinceSnapshot.put(uuid, balance.getBalanceMinor());
+            }
+            return true;
+        } finally {
+            lock.unlock();
         }
     }
 
-    private String resolvePlayerName(UUID uuid) {
-        PlayerRef player = Universe.get().getPlayer(uuid);
-        if (player != null) {
-            return player.getUsername();
+    /**
+     * Track whether a player is online; online players are never evicted.
+     */
+    public void setOnline(@Nonnull UUID playerUuid, boolean online) {
+        if (online) {
+            this.onlinePlayers.add(playerUuid);
+        } else {
+            this.onlinePlayers.remove(playerUuid);
         }
-        return uuid.toString().substring(0, 8) + "...";
+    }
+
+    /**
+     * @return true if only recently used accounts are cached (CacheMode Bounded)
+     */
+    public boolean isBoundedCache() {
+        return this.boundedCache;
+    }
+
+    public int getMaxCachedAccounts() {
+        return this.maxCachedAccounts;
+    }
+
+    /**
+     * @return Accounts evicted from the bounded cache since startup
+     */
+    public long getEvictedCount() {
+        return this.evicted.get();
     }
 
     public static enum TransferResult {
@@ -385,5 +1347,41 @@ public class EconomyManager {
         RECIPIENT_MAX_BALANCE;
 
     }
+
+    public static enum BatchResult {
+        SUCCESS,
+        INVALID_AMOUNT,
+        INSUFFICIENT_FUNDS,
+        MAX_BALANCE,
+        ACCOUNT_NOT_FOUND,
+        CANCELLED;
+
+    }
+
+    /**
+     * One leg of an {@link #applyBatch(List)} call.
+     *
+     * @param player      Account to change
+     * @param amountMinor Positive amount in minor units
+     * @param deposit     True to credit, false to debit
+     * @param reason      Reason for the transaction log
+     */
+    public record Operation(@Nonnull UUID player, long amountMinor, boolean deposit, String reason) {
+        public static Operation deposit(@Nonnull UUID player, double amount, String reason) {
+            return new Operation(player, Money.toMinor(amount), true, reason);
+        }
+
+        public static Operation withdraw(@Nonnull UUID player, double amount, String reason) {
+            return new Operation(player, Money.toMinor(amount), false, reason);
+        }
+
+        public static Operation depositMinor(@Nonnull UUID player, long amount, String reason) {
+            return new Operation(player, amount, true, reason);
+        }
+
+        public static Operation withdrawMinor(@Nonnull UUID player, long amount, String reason) {
+            return new Operation(player, amount, false, reason);
+        }
+    }
 }
 
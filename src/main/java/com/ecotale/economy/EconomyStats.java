@@ -0,0 +1,135 @@
+package com.ecotale.economy;
+
+import com.ecotale.storage.StorageTotals;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running economy-wide totals over all cached accounts.
+ *
+ * Every committed balance change reports its delta here (see {@link PlayerBalance}),
+ * and accounts add/remove their full state when they enter/leave the cache. Reads are
+ * O(1) and never copy the cache; min/max come from the leaderboard index in O(log n)
+ * and percentiles/Gini from the {@link WealthDistribution} histogram.
+ *
+ * Striped {@link LongAdder}s keep concurrent mutations from contending on one counter.
+ * Totals read while changes are in flight may be momentarily between two states.
+ *
+ * With a bounded cache the cached accounts are only part of the economy. The totals, count
+ * and min/max then come from {@link StorageTotals} that the economy manager refreshes from the
+ * database. They are as of the last autosave. The distribution still covers the cached
+ * accounts only.
+ */
+public class EconomyStats {
+    private final LongAdder supply = new LongAdder();
+    private final LongAdder earned = new LongAdder();
+    private final LongAdder spent = new LongAdder();
+    private final LongAdder accounts = new LongAdder();
+    private final WealthDistribution distribution = new WealthDistribution();
+    private final LeaderboardIndex leaderboard;
+    private volatile StorageTotals storageTotals;
+
+    EconomyStats(LeaderboardIndex leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    void change(long oldBalance, long newBalance, long totalEarned, long totalSpent) {
+        this.add(newBalance - oldBalance, totalEarned, totalSpent);
+        this.distribution.move(oldBalance, newBalance);
+    }
+
+    private void add(long balance, long totalEarned, long totalSpent) {
+        if (balance != 0L) {
+            this.supply.add(balance);
+        }
+        if (totalEarned != 0L) {
+            this.earned.add(totalEarned);
+        }
+        if (totalSpent != 0L) {
+            this.spent.add(totalSpent);
+        }
+    }
+
+    void addAccount(long balance, long totalEarned, long totalSpent) {
+        this.accounts.increment();
+        this.add(balance, totalEarned, totalSpent);
+        this.distribution.add(balance);
+    }
+
+    void removeAccount(long balance, long totalEarned, long totalSpent) {
+        this.accounts.decrement();
+        this.add(-balance, -totalEarned, -totalSpent);
+        this.distribution.remove(balance);
+    }
+
+    /**
+     * Answer totals from storage from now on (bounded cache mode).
+     */
+    void useStorageTotals(StorageTotals totals) {
+        if (totals != null) {
+            this.storageTotals = totals;
+        }
+    }
+
+    /**
+     * Sum of all cached balances in minor units.
+     */
+    public long getTotalSupplyMinor() {
+        StorageTotals totals = this.storageTotals;
+        return totals != null ? totals.supplyMinor() : this.supply.sum();
+    }
+
+    public double getTotalSupply() {
+        return Money.toDouble(this.getTotalSupplyMinor());
+    }
+
+    public int getAccountCount() {
+        StorageTotals totals = this.storageTotals;
+        return totals != null ? (int)totals.accounts() : this.accounts.intValue();
+    }
+
+    public double getAverageBalance() {
+        int count = this.getAccountCount();
+        return count > 0 ? Money.toDouble(this.getTotalSupplyMinor()) / count : 0.0;
+    }
+
+    /**
+     * Lifetime credits of all cached accounts.
+     */
+    public double getTotalEarned() {
+        StorageTotals totals = this.storageTotals;
+        return Money.toDouble(totals != null ? totals.earnedMinor() : this.earned.sum());
+    }
+
+    /**
+     * Lifetime debits of all cached accounts.
+     */
+    public double getTotalSpent() {
+        StorageTotals totals = this.storageTotals;
+        return Money.toDouble(totals != null ? totals.spentMinor() : this.spent.sum());
+    }
+
+    /**
+     * Percentiles, Gini coefficient and balance brackets over all cached accounts.
+     */
+    public WealthDistribution getDistribution() {
+        return this.distribution;
+    }
+
+    public double getMaxBalance() {
+        StorageTotals totals = this.storageTotals;
+        if (totals != null) {
+            return Money.toDouble(totals.maxMinor());
+        }
+        LeaderboardIndex.Entry top = this.leaderboard.first();
+        return top != null ? top.balance() : 0.0;
+    }
+
+    public double getMinBalance() {
+        StorageTotals totals = this.storageTotals;
+        if (totals != null) {
+            return Money.toDouble(totals.minMinor());
+        }
+        LeaderboardIndex.Entry bottom = this.leaderboard.last();
+        return bottom != null ? bottom.balance() : 0.0;
+    }
+}
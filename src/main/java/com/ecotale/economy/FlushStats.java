@@ -0,0 +1,77 @@
+package com.ecotale.economy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running statistics for autosave flushes, shown by /eco metrics.
+ *
+ * Durations are kept as an exponential moving average so a single slow flush
+ * is visible without dominating the number for the rest of the session.
+ */
+public class FlushStats {
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private long flushes;
+    private long rowsWritten;
+    private long rowsFailed;
+    private long lastDurationNanos;
+    private long maxDurationNanos;
+    private double avgDurationNanos;
+    private int lastSize;
+    private long lastFlushAt;
+    private int backoff = 1;
+
+    synchronized void record(int size, int failed, long durationNanos, int backoff) {
+        ++this.flushes;
+        this.rowsWritten += size - failed;
+        this.rowsFailed += failed;
+        this.lastDurationNanos = durationNanos;
+        this.maxDurationNanos = Math.max(this.maxDurationNanos, durationNanos);
+        this.avgDurationNanos = this.flushes == 1L ? durationNanos : this.avgDurationNanos + EWMA_WEIGHT * (durationNanos - this.avgDurationNanos);
+        this.lastSize = size;
+        this.lastFlushAt = System.currentTimeMillis();
+        this.backoff = backoff;
+    }
+
+    public synchronized long getFlushes() {
+        return this.flushes;
+    }
+
+    public synchronized long getRowsWritten() {
+        return this.rowsWritten;
+    }
+
+    public synchronized long getRowsFailed() {
+        return this.rowsFailed;
+    }
+
+    public synchronized long getLastDurationMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastDurationNanos);
+    }
+
+    public synchronized long getMaxDurationMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxDurationNanos);
+    }
+
+    public synchronized double getAvgDurationMs() {
+        return this.avgDurationNanos / 1_000_000.0;
+    }
+
+    public synchronized int getLastSize() {
+        return this.lastSize;
+    }
+
+    /**
+     * @return Wall-clock time of the last flush, or 0 if none ran yet
+     */
+    public synchronized long getLastFlushAt() {
+        return this.lastFlushAt;
+    }
+
+    /**
+     * @return Current multiplier applied to the autosave interval (1 = no backoff)
+     */
+    public synchronized int getBackoff() {
+        return this.backoff;
+    }
+}
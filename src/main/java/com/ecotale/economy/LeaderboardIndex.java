@@ -0,0 +1,351 @@
+package com.ecotale.economy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Order-statistic index over all cached accounts, ordered by balance (highest first)
+ * then UUID so every account has a unique position.
+ *
+ * Backed by a size-augmented treap, so top-N, page-at-offset and rank lookups are
+ * O(log n + k) instead of a full sort of the cache.
+ *
+ * Writers never take the index lock: {@link #refresh(UUID, PlayerBalance)} only marks the
+ * account stale in a concurrent map, so balance mutations on different accounts do not
+ * serialize on the index. Every read first re-keys the stale accounts under the lock,
+ * taking each one out of the map before reading its balance; a mutation racing with that
+ * marks it again, so the index always catches up with the final value.
+ */
+public class LeaderboardIndex {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, Long> indexed = new HashMap<>();
+    /** Accounts changed since the last read, re-keyed by the next read. */
+    private final ConcurrentHashMap<UUID, PlayerBalance> stale = new ConcurrentHashMap<>();
+    private Node root;
+
+    /**
+     * Mark an account for re-indexing with its current balance. Lock-free; the next read
+     * applies it.
+     */
+    public void refresh(UUID uuid, PlayerBalance balance) {
+        this.stale.put(uuid, balance);
+    }
+
+    /**
+     * Re-key every stale account. Caller holds the lock.
+     */
+    private void applyStale() {
+        if (this.stale.isEmpty()) {
+            return;
+        }
+        for (UUID uuid : this.stale.keySet()) {
+            PlayerBalance balance = this.stale.remove(uuid);
+            if (balance == null) {
+                continue;
+            }
+            long current = balance.getBalanceMinor();
+            Long previous = this.indexed.put(uuid, current);
+            if (previous != null) {
+                if (previous == current) {
+                    continue;
+                }
+                this.root = remove(this.root, previous, uuid);
+            }
+            this.root = insert(this.root, new Node(current, uuid));
+        }
+    }
+
+    /**
+     * Drop an account from the index.
+     */
+    public void remove(UUID uuid) {
+        this.lock.lock();
+        try {
+            this.stale.remove(uuid);
+            Long previous = this.indexed.remove(uuid);
+            if (previous != null) {
+                this.root = remove(this.root, previous, uuid);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Highest balances first.
+     */
+    public List<Entry> top(int limit) {
+        return this.page(0, limit);
+    }
+
+    /**
+     * Entries at positions [offset, offset + limit) in leaderboard order.
+     */
+    public List<Entry> page(int offset, int limit) {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            List<Entry> out = new ArrayList<>(Math.max(0, Math.min(limit, size(this.root) - offset)));
+            collect(this.root, Math.max(0, offset), limit, out);
+            return out;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 1-based leaderboard position of an account, or -1 if it is not indexed.
+     */
+    public int rankOf(UUID uuid) {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            Long balance = this.indexed.get(uuid);
+            if (balance == null) {
+                return -1;
+            }
+            int before = 0;
+            Node node = this.root;
+            while (node != null) {
+                int cmp = compare(balance, uuid, node);
+                if (cmp == 0) {
+                    return before + size(node.left) + 1;
+                }
+                if (cmp < 0) {
+                    node = node.left;
+                } else {
+                    before += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+            return -1;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Number of accounts with a balance strictly greater than the given amount.
+     */
+    public int countAbove(long balanceMinor) {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            int count = 0;
+            Node node = this.root;
+            while (node != null) {
+                if (node.balance > balanceMinor) {
+                    count += size(node.left) + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return count;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Highest indexed balance, or null if the index is empty.
+     */
+    public Entry first() {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            Node node = this.root;
+            while (node != null && node.left != null) {
+                node = node.left;
+            }
+            return node == null ? null : new Entry(node.uuid, node.balance);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Lowest indexed balance, or null if the index is empty.
+     */
+    public Entry last() {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            Node node = this.root;
+            while (node != null && node.right != null) {
+                node = node.right;
+            }
+            return node == null ? null : new Entry(node.uuid, node.balance);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Number of indexed accounts.
+     */
+    public int size() {
+        this.lock.lock();
+        try {
+            this.applyStale();
+            return size(this.root);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.stale.clear();
+            this.indexed.clear();
+            this.root = null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // ========== Treap internals ==========
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Leaderboard order: balance descending, then UUID ascending.
+     */
+    private static int compare(long balance, UUID uuid, Node node) {
+        int cmp = Long.compare(node.balance, balance);
+        return cmp != 0 ? cmp : uuid.compareTo(node.uuid);
+    }
+
+    private static Node insert(Node node, Node fresh) {
+        if (node == null) {
+            return fresh;
+        }
+        if (fresh.priority > node.priority) {
+            Node[] parts = split(node, fresh.balance, fresh.uuid);
+            fresh.left = parts[0];
+            fresh.right = parts[1];
+            fresh.update();
+            return fresh;
+        }
+        if (compare(fresh.balance, fresh.uuid, node) < 0) {
+            node.left = insert(node.left, fresh);
+        } else {
+            node.right = insert(node.right, fresh);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node remove(Node node, long balance, UUID uuid) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(balance, uuid, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, balance, uuid);
+        } else {
+            node.right = remove(node.right, balance, uuid);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Split into nodes ordered before the key and nodes ordered after it.
+     */
+    private static Node[] split(Node node, long balance, UUID uuid) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(balance, uuid, node) < 0) {
+            Node[] parts = split(node.left, balance, uuid);
+            node.left = parts[1];
+            node.update();
+            parts[1] = node;
+            return parts;
+        }
+        Node[] parts = split(node.right, balance, uuid);
+        node.right = parts[0];
+        node.update();
+        parts[0] = node;
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static void collect(Node node, int skip, int limit, List<Entry> out) {
+        while (node != null && out.size() < limit) {
+            int leftSize = size(node.left);
+            if (skip < leftSize) {
+                collect(node.left, skip, limit, out);
+                skip = 0;
+            } else {
+                skip -= leftSize;
+            }
+            if (out.size() >= limit) {
+                return;
+            }
+            if (skip == 0) {
+                out.add(new Entry(node.uuid, node.balance));
+            } else {
+                --skip;
+            }
+            node = node.right;
+        }
+    }
+
+    private static final class Node {
+        final long balance;
+        final UUID uuid;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long balance, UUID uuid) {
+            this.balance = balance;
+            this.uuid = uuid;
+        }
+
+        void update() {
+            this.size = 1 + LeaderboardIndex.size(this.left) + LeaderboardIndex.size(this.right);
+        }
+    }
+
+    /**
+     * A leaderboard position: account and the balance it is indexed at.
+     */
+    public record Entry(UUID uuid, long balanceMinor) {
+        public double balance() {
+            return Money.toDouble(this.balanceMinor);
+        }
+    }
+}
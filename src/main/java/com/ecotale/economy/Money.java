@@ -0,0 +1,89 @@
+package com.ecotale.economy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money helpers.
+ *
+ * All balances, totals and transaction amounts are held as {@code long} minor units
+ * (e.g. cents when DecimalPlaces is 2). Arithmetic on minor units is exact and
+ * allocation-free; conversion to {@code double} or {@link BigDecimal} only happens
+ * at the API, GUI and Vault edges.
+ *
+ * The scale is fixed once at startup from {@code DecimalPlaces} (clamped to 0..6).
+ * Changing DecimalPlaces later only affects display formatting until the next restart,
+ * when SQL providers rescale stored values to the new scale.
+ */
+public final class Money {
+
+    public static final int MAX_SCALE = 6;
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private static volatile int scale = 2;
+    private static volatile long factor = 100L;
+
+    private Money() {}
+
+    /**
+     * Fix the minor-unit scale. Called once by EconomyManager before storage is initialized.
+     */
+    public static void configure(int decimalPlaces) {
+        int clamped = Math.max(0, Math.min(MAX_SCALE, decimalPlaces));
+        scale = clamped;
+        factor = POW10[clamped];
+    }
+
+    /**
+     * Number of decimal places represented by one minor unit.
+     */
+    public static int scale() {
+        return scale;
+    }
+
+    /**
+     * Minor units per major unit (10^scale).
+     */
+    public static long factor() {
+        return factor;
+    }
+
+    /**
+     * Convert a major-unit amount to minor units, rounding to the nearest unit.
+     */
+    public static long toMinor(double amount) {
+        return Math.round(amount * factor);
+    }
+
+    /**
+     * Convert minor units to a major-unit double (for display and legacy API callers).
+     */
+    public static double toDouble(long minor) {
+        return (double) minor / factor;
+    }
+
+    /**
+     * Exact BigDecimal view of minor units; no floating-point round trip.
+     */
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, scale);
+    }
+
+    /**
+     * Convert a BigDecimal amount to minor units (half-even), saturating on overflow.
+     */
+    public static long fromBigDecimal(BigDecimal amount) {
+        BigDecimal scaled = amount.movePointRight(scale).setScale(0, RoundingMode.HALF_EVEN);
+        if (scaled.unscaledValue().bitLength() > 63) {
+            return scaled.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return scaled.longValue();
+    }
+
+    /**
+     * Multiplier between two scales, used when migrating stored values.
+     */
+    public static long pow10(int exponent) {
+        return POW10[exponent];
+    }
+}
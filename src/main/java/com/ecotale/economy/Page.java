@@ -0,0 +1,24 @@
+package com.ecotale.economy;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query.
+ *
+ * The token is opaque to callers: pass {@link #nextToken()} back to the same query to
+ * get the following page. It encodes the sort key of the last row, so fetching page N
+ * costs the same as page 1 no matter how deep it is.
+ *
+ * @param items     Rows of this page, in query order
+ * @param nextToken Token for the following page, null on the last page
+ */
+public record Page<T>(List<T> items, String nextToken) {
+
+    public static <T> Page<T> empty() {
+        return new Page<T>(List.of(), null);
+    }
+
+    public boolean hasNext() {
+        return this.nextToken != null;
+    }
+}
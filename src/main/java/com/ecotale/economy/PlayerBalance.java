@@ -6,39 +6,66 @@ import com.hypixel.hytale.codec.Codec;
 import com.hypixel.hytale.codec.KeyedCodec;
 import com.hypixel.hytale.codec.builder.BuilderCodec;
 import com.hypixel.hytale.codec.codecs.array.ArrayCodec;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.UUID;
 
 public class PlayerBalance {
-    
+
     public static final BuilderCodec<PlayerBalance> CODEC = BuilderCodec.builder(PlayerBalance.class, PlayerBalance::new)
         .append(new KeyedCodec<>("Uuid", Codec.STRING),
-            (p, v, extraInfo) -> p.playerUuid = UUID.fromString(v), 
+            (p, v, extraInfo) -> p.playerUuid = UUID.fromString(v),
             (p, extraInfo) -> p.playerUuid.toString()).add()
         .append(new KeyedCodec<>("Balance", Codec.DOUBLE),
-            (p, v, extraInfo) -> p.balance = v, 
-            (p, extraInfo) -> p.balance).add()
+            (p, v, extraInfo) -> p.cell = new Cell(Money.toMinor(v), p.cell.totalEarned, p.cell.totalSpent, p.cell.version),
+            (p, extraInfo) -> Money.toDouble(p.cell.balance)).add()
         .append(new KeyedCodec<>("TotalEarned", Codec.DOUBLE),
-            (p, v, extraInfo) -> p.totalEarned = v, 
-            (p, extraInfo) -> p.totalEarned).add()
+            (p, v, extraInfo) -> p.cell = new Cell(p.cell.balance, Money.toMinor(v), p.cell.totalSpent, p.cell.version),
+            (p, extraInfo) -> Money.toDouble(p.cell.totalEarned)).add()
         .append(new KeyedCodec<>("TotalSpent", Codec.DOUBLE),
-            (p, v, extraInfo) -> p.totalSpent = v, 
-            (p, extraInfo) -> p.totalSpent).add()
+            (p, v, extraInfo) -> p.cell = new Cell(p.cell.balance, p.cell.totalEarned, Money.toMinor(v), p.cell.version),
+            (p, extraInfo) -> Money.toDouble(p.cell.totalSpent)).add()
         .append(new KeyedCodec<>("LastTransaction", Codec.STRING),
-            (p, v, extraInfo) -> p.lastTransaction = v, 
+            (p, v, extraInfo) -> p.lastTransaction = v,
             (p, extraInfo) -> p.lastTransaction).add()
         .append(new KeyedCodec<>("LastTransactionTime", Codec.LONG),
-            (p, v, extraInfo) -> p.lastTransactionTime = v, 
+            (p, v, extraInfo) -> p.lastTransactionTime = v,
             (p, extraInfo) -> p.lastTransactionTime).add()
         .build();
-    
+
     public static final ArrayCodec<PlayerBalance> ARRAY_CODEC = new ArrayCodec<>(CODEC, PlayerBalance[]::new, PlayerBalance::new);
-    
+
+    private static final VarHandle CELL;
+
+    static {
+        try {
+            CELL = MethodHandles.lookup().findVarHandle(PlayerBalance.class, "cell", Cell.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private UUID playerUuid;
-    private double balance = 0.0;
-    private double totalEarned = 0.0;
-    private double totalSpent = 0.0;
-    private String lastTransaction = "";
-    private long lastTransactionTime = 0L;
+    /**
+     * Balance and running totals, replaced as a unit by compare-and-set so
+     * readers always see a consistent, up-to-date triple without locking.
+     */
+    private volatile Cell cell = Cell.EMPTY;
+    /**
+     * Version of the last snapshot known to be in storage. Accounts read from storage
+     * start at version 0 and are therefore clean until their first change.
+     */
+    private volatile long persistedVersion = 0L;
+    /**
+     * Aggregates this account reports into while it is cached by the economy manager.
+     */
+    private volatile EconomyStats stats;
+    private volatile String lastTransaction = "";
+    private volatile long lastTransactionTime = 0L;
+    /**
+     * Last time the economy manager handed this account out or changed it, for idle eviction.
+     */
+    private volatile long lastAccess = System.currentTimeMillis();
 
     public PlayerBalance() {
     }
@@ -47,66 +74,262 @@ public class PlayerBalance {
         this.playerUuid = playerUuid;
     }
 
+    /**
+     * Rebuild an account from stored minor-unit columns.
+     */
+    public static PlayerBalance restore(UUID playerUuid, long balanceMinor, long totalEarnedMinor, long totalSpentMinor) {
+        PlayerBalance pb = new PlayerBalance(playerUuid);
+        pb.cell = new Cell(balanceMinor, totalEarnedMinor, totalSpentMinor, 0L);
+        return pb;
+    }
+
     public boolean deposit(double amount, String reason) {
-        if (amount <= 0.0) {
+        long minor = Money.toMinor(amount);
+        if (minor <= 0L) {
             return false;
         }
-        double maxBalance = ((EcotaleConfig)Main.CONFIG.get()).getMaxBalance();
-        if (this.balance + amount > maxBalance) {
-            return false;
-        }
-        this.balance += amount;
-        this.totalEarned += amount;
-        this.lastTransaction = "+" + amount + " (" + reason + ")";
-        this.lastTransactionTime = System.currentTimeMillis();
-        return true;
+        long maxBalance = Money.toMinor(((EcotaleConfig)Main.CONFIG.get()).getMaxBalance());
+        return this.tryDeposit(minor, maxBalance, reason) != null;
     }
 
     public boolean withdraw(double amount, String reason) {
-        if (amount <= 0.0 || this.balance < amount) {
+        long minor = Money.toMinor(amount);
+        if (minor <= 0L) {
             return false;
         }
-        this.balance -= amount;
-        this.totalSpent += amount;
-        this.lastTransaction = "-" + amount + " (" + reason + ")";
-        this.lastTransactionTime = System.currentTimeMillis();
-        return true;
+        return this.tryWithdraw(minor, reason) != null;
     }
 
     public void setBalance(double amount, String reason) {
-        this.balance = Math.max(0.0, amount);
-        this.lastTransaction = "Set to " + amount + " (" + reason + ")";
-        this.lastTransactionTime = System.currentTimeMillis();
+        this.setBalanceMinor(Money.toMinor(amount), reason);
     }
 
-    void depositInternal(double amount, String reason) {
-        this.balance += amount;
-        this.totalEarned += amount;
-        this.lastTransaction = "+" + amount + " (" + reason + ")";
-        this.lastTransactionTime = System.currentTimeMillis();
+    public void setBalanceMinor(long amount, String reason) {
+        this.applySet(amount, reason);
+    }
+
+    /**
+     * @return the cell before the update
+     */
+    Cell applySet(long amount, String reason) {
+        Cell prev = this.swapBalance(Math.max(0L, amount));
+        this.touch("Set to " + Money.toDouble(amount) + " (" + reason + ")");
+        return prev;
     }
 
-    void withdrawInternal(double amount, String reason) {
-        this.balance -= amount;
-        this.totalSpent += amount;
-        this.lastTransaction = "-" + amount + " (" + reason + ")";
+    /**
+     * Add to the balance unless it would exceed {@code maxBalance}.
+     * The bound is checked inside the CAS loop, so concurrent deposits can never overshoot it.
+     *
+     * @return the cell before the update, or null if the deposit was rejected
+     */
+    Cell tryDeposit(long amount, long maxBalance, String reason) {
+        Cell prev;
+        do {
+            prev = this.cell;
+            // Compared by difference: balance + amount can overflow for saturated amounts
+            if (amount > maxBalance - prev.balance) {
+                return null;
+            }
+        } while (!CELL.compareAndSet(this, prev, new Cell(prev.balance + amount, prev.totalEarned + amount, prev.totalSpent, prev.version + 1)));
+        this.report(prev.balance, prev.balance + amount, amount, 0L);
+        this.touch("+" + Money.toDouble(amount) + " (" + reason + ")");
+        return prev;
+    }
+
+    /**
+     * Subtract from the balance unless funds are insufficient.
+     * The funds check is done inside the CAS loop, so the balance can never go negative.
+     *
+     * @return the cell before the update, or null if the withdrawal was rejected
+     */
+    Cell tryWithdraw(long amount, String reason) {
+        Cell prev;
+        do {
+            prev = this.cell;
+            if (prev.balance < amount) {
+                return null;
+            }
+        } while (!CELL.compareAndSet(this, prev, new Cell(prev.balance - amount, prev.totalEarned, prev.totalSpent + amount, prev.version + 1)));
+        this.report(prev.balance, prev.balance - amount, 0L, amount);
+        this.touch("-" + Money.toDouble(amount) + " (" + reason + ")");
+        return prev;
+    }
+
+    /**
+     * Undo a successful {@link #tryWithdraw} whose paired leg failed.
+     */
+    void refundInternal(long amount) {
+        Cell prev;
+        do {
+            prev = this.cell;
+        } while (!CELL.compareAndSet(this, prev, new Cell(prev.balance + amount, prev.totalEarned, prev.totalSpent - amount, prev.version + 1)));
+        this.report(prev.balance, prev.balance + amount, 0L, -amount);
+    }
+
+    /**
+     * Apply the net effect of several legs at once: {@code earned} is credited and
+     * {@code spent} debited in a single swap, so the totals stay exact.
+     * Rejected if the resulting balance would fall outside [0, maxBalance].
+     *
+     * @return the cell before the update, or null if the change was rejected
+     */
+    Cell tryApply(long earned, long spent, long maxBalance, String reason) {
+        Cell prev;
+        long next;
+        do {
+            prev = this.cell;
+            try {
+                next = Math.subtractExact(Math.addExact(prev.balance, earned), spent);
+            }
+            catch (ArithmeticException e) {
+                return null;
+            }
+            if (next < 0L || next > maxBalance) {
+                return null;
+            }
+        } while (!CELL.compareAndSet(this, prev, new Cell(next, prev.totalEarned + earned, prev.totalSpent + spent, prev.version + 1)));
+        this.report(prev.balance, next, earned, spent);
+        this.touch("Batch " + Money.toDouble(earned - spent) + " (" + reason + ")");
+        return prev;
+    }
+
+    /**
+     * Undo a successful {@link #tryApply} when another account in the batch was rejected.
+     */
+    void revertApply(long earned, long spent) {
+        Cell prev;
+        do {
+            prev = this.cell;
+        } while (!CELL.compareAndSet(this, prev, new Cell(prev.balance - earned + spent, prev.totalEarned - earned, prev.totalSpent - spent, prev.version + 1)));
+        this.report(prev.balance, prev.balance - earned + spent, -earned, -spent);
+    }
+
+    /**
+     * @return the cell before the update
+     */
+    Cell swapBalance(long amount) {
+        Cell prev;
+        do {
+            prev = this.cell;
+        } while (!CELL.compareAndSet(this, prev, new Cell(amount, prev.totalEarned, prev.totalSpent, prev.version + 1)));
+        this.report(prev.balance, amount, 0L, 0L);
+        return prev;
+    }
+
+    void markAccessed() {
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    long getLastAccess() {
+        return this.lastAccess;
+    }
+
+    void restoreLastTransaction(String description, long time) {
+        this.lastTransaction = description;
+        this.lastTransactionTime = time;
+    }
+
+    /**
+     * Start reporting changes to the given aggregates, adding the current state to them.
+     */
+    void attach(EconomyStats target) {
+        this.stats = target;
+        Cell current = this.cell;
+        target.addAccount(current.balance, current.totalEarned, current.totalSpent);
+    }
+
+    /**
+     * Stop reporting and take the current state back out of the aggregates.
+     */
+    void detach() {
+        EconomyStats target = this.stats;
+        if (target == null) {
+            return;
+        }
+        this.stats = null;
+        Cell current = this.cell;
+        target.removeAccount(current.balance, current.totalEarned, current.totalSpent);
+    }
+
+    private void report(long oldBalance, long newBalance, long earned, long spent) {
+        EconomyStats target = this.stats;
+        if (target != null) {
+            target.change(oldBalance, newBalance, earned, spent);
+        }
+    }
+
+    private void touch(String description) {
+        this.lastTransaction = description;
         this.lastTransactionTime = System.currentTimeMillis();
     }
 
+    /**
+     * Immutable, internally consistent copy of the account for persistence.
+     */
+    public BalanceSnapshot snapshot() {
+        Cell current = this.cell;
+        return new BalanceSnapshot(this.playerUuid, current.version, current.balance, current.totalEarned, current.totalSpent, this.lastTransaction, this.lastTransactionTime);
+    }
+
+    public long getVersion() {
+        return this.cell.version;
+    }
+
+    public long getPersistedVersion() {
+        return this.persistedVersion;
+    }
+
+    /**
+     * @return true if there are changes newer than the last persisted snapshot
+     */
+    public boolean hasUnpersistedChanges() {
+        return this.cell.version > this.persistedVersion;
+    }
+
+    /**
+     * Record that a snapshot was written. Never moves backwards, so a slow
+     * older save cannot mark newer changes as persisted.
+     */
+    public synchronized void markPersisted(long version) {
+        if (version > this.persistedVersion) {
+            this.persistedVersion = version;
+        }
+    }
+
+    /**
+     * Flag an account rebuilt from the journal as newer than storage so the next autosave writes it.
+     */
+    void markReplayed() {
+        this.persistedVersion = -1L;
+    }
+
     public UUID getPlayerUuid() {
         return this.playerUuid;
     }
 
     public double getBalance() {
-        return this.balance;
+        return Money.toDouble(this.cell.balance);
+    }
+
+    public long getBalanceMinor() {
+        return this.cell.balance;
     }
 
     public double getTotalEarned() {
-        return this.totalEarned;
+        return Money.toDouble(this.cell.totalEarned);
+    }
+
+    public long getTotalEarnedMinor() {
+        return this.cell.totalEarned;
     }
 
     public double getTotalSpent() {
-        return this.totalSpent;
+        return Money.toDouble(this.cell.totalSpent);
+    }
+
+    public long getTotalSpentMinor() {
+        return this.cell.totalSpent;
     }
 
     public String getLastTransaction() {
@@ -118,7 +341,17 @@ public class PlayerBalance {
     }
 
     public boolean hasBalance(double amount) {
-        return this.balance >= amount;
+        return this.cell.balance >= Money.toMinor(amount);
     }
-}
 
+    public boolean hasBalanceMinor(long amount) {
+        return this.cell.balance >= amount;
+    }
+
+    /**
+     * @param version Incremented on every change; compared against the persisted version by autosave
+     */
+    record Cell(long balance, long totalEarned, long totalSpent, long version) {
+        static final Cell EMPTY = new Cell(0L, 0L, 0L, 0L);
+    }
+}
@@ -6,17 +6,28 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 
-public record TransactionEntry(Instant timestamp, String formattedTime, TransactionType type, UUID sourcePlayer, UUID targetPlayer, double amount, String playerName) {
+public record TransactionEntry(Instant timestamp, String formattedTime, TransactionType type, UUID sourcePlayer, UUID targetPlayer, long amountMinor, String playerName) {
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
 
-    public static TransactionEntry single(TransactionType type, UUID player, String playerName, double amount) {
+    public static TransactionEntry single(TransactionType type, UUID player, String playerName, long amountMinor) {
         Instant now = Instant.now();
-        return new TransactionEntry(now, TIME_FORMATTER.format(now), type, player, null, amount, playerName);
+        return new TransactionEntry(now, TIME_FORMATTER.format(now), type, player, null, amountMinor, playerName);
     }
 
-    public static TransactionEntry transfer(UUID from, String fromName, UUID to, String toName, double amount) {
+    public static TransactionEntry transfer(UUID from, String fromName, UUID to, String toName, long amountMinor) {
         Instant now = Instant.now();
-        return new TransactionEntry(now, TIME_FORMATTER.format(now), TransactionType.PAY, from, to, amount, fromName + " \u2192 " + toName);
+        return new TransactionEntry(now, TIME_FORMATTER.format(now), TransactionType.PAY, from, to, amountMinor, fromName + " \u2192 " + toName);
+    }
+
+    /**
+     * Amount in currency units.
+     *
+     * @deprecated Kept for callers written before amounts were stored in minor units;
+     *             use {@link #amountMinor()}.
+     */
+    @Deprecated
+    public double amount() {
+        return Money.toDouble(this.amountMinor);
     }
 
     public String toDisplayString() {
@@ -25,12 +36,12 @@ public record TransactionEntry(Instant timestamp, String formattedTime, Transact
 
     private String formatAmount() {
         if (this.type == TransactionType.TAKE || this.type == TransactionType.SPEND) {
-            return String.format("-$%.0f", this.amount);
+            return String.format("-$%.0f", Money.toDouble(this.amountMinor));
         }
         if (this.type == TransactionType.SET || this.type == TransactionType.RESET) {
-            return String.format("=$%.0f", this.amount);
+            return String.format("=$%.0f", Money.toDouble(this.amountMinor));
         }
-        return String.format("+$%.0f", this.amount);
+        return String.format("+$%.0f", Money.toDouble(this.amountMinor));
     }
 
     public boolean involvesPlayer(UUID playerUuid) {
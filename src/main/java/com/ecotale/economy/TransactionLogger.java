@@ -2,6 +2,8 @@ package com.ecotale.economy;
 
 import com.ecotale.storage.H2StorageProvider;
 import com.ecotale.storage.MySQLStorageProvider;
+import com.ecotale.storage.TransactionArchiver;
+import com.ecotale.storage.TransactionLogWriter;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,18 +49,66 @@ public class TransactionLogger {
         this.mysqlStorage = storage;
     }
 
-    public void logAction(TransactionType type, UUID player, String playerName, double amount) {
-        this.log(TransactionEntry.single(type, player, playerName, amount));
+    /**
+     * @return Batch writer of the SQL storage, or null if the log is kept in memory only
+     */
+    public TransactionLogWriter getLogWriter() {
+        if (this.h2Storage != null) {
+            return this.h2Storage.getTransactionLog();
+        }
+        if (this.mysqlStorage != null) {
+            return this.mysqlStorage.getTransactionLog();
+        }
+        return null;
+    }
+
+    /**
+     * @return Archive scheduler of the SQL storage, or null if archiving is off
+     */
+    public TransactionArchiver getArchiver() {
+        if (this.h2Storage != null) {
+            return this.h2Storage.getArchiver();
+        }
+        if (this.mysqlStorage != null) {
+            return this.mysqlStorage.getArchiver();
+        }
+        return null;
     }
 
-    public void logTransfer(UUID from, String fromName, UUID to, String toName, double amount) {
-        this.log(TransactionEntry.transfer(from, fromName, to, toName, amount));
+    public void logAction(TransactionType type, UUID player, String playerName, long amountMinor) {
+        this.log(TransactionEntry.single(type, player, playerName, amountMinor));
     }
 
-    private void log(TransactionEntry entry) {
+    public void logTransfer(UUID from, String fromName, UUID to, String toName, long amountMinor) {
+        this.log(TransactionEntry.transfer(from, fromName, to, toName, amountMinor));
+    }
+
+    /**
+     * Log several entries at once; SQL providers queue them for their batch writer.
+     */
+    public void logBatch(List<TransactionEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (TransactionEntry entry : entries) {
+            this.remember(entry);
+        }
+        if (this.h2Storage != null) {
+            this.h2Storage.logTransactions(entries);
+        }
+        if (this.mysqlStorage != null) {
+            this.mysqlStorage.logTransactions(entries);
+        }
+    }
+
+    private void remember(TransactionEntry entry) {
         int idx = this.writeIndex.getAndIncrement() % this.bufferSize;
         this.buffer[idx] = entry;
         this.totalWrites.incrementAndGet();
+    }
+
+    private void log(TransactionEntry entry) {
+        this.remember(entry);
         if (this.h2Storage != null) {
             this.h2Storage.logTransaction(entry);
         }
@@ -1,22 +1,49 @@
 package com.ecotale.economy;
 
 public enum TransactionType {
-    GIVE("Admin give"),
-    TAKE("Admin take"),
-    SET("Admin set"),
-    RESET("Admin reset"),
-    PAY("Player transfer"),
-    EARN("Earnings"),
-    SPEND("Spending");
+    GIVE(1, "Admin give"),
+    TAKE(2, "Admin take"),
+    SET(3, "Admin set"),
+    RESET(4, "Admin reset"),
+    PAY(5, "Player transfer"),
+    EARN(6, "Earnings"),
+    SPEND(7, "Spending");
 
+    private static final TransactionType[] BY_CODE;
+    private final int code;
     private final String displayName;
 
-    private TransactionType(String displayName) {
+    private TransactionType(int code, String displayName) {
+        this.code = code;
         this.displayName = displayName;
     }
 
     public String getDisplayName() {
         return this.displayName;
     }
-}
 
+    /**
+     * Stable numeric code stored in the SQL transaction log. Never reuse or renumber.
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    public static TransactionType fromCode(int code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown transaction type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    static {
+        int max = 0;
+        for (TransactionType type : values()) {
+            max = Math.max(max, type.code);
+        }
+        BY_CODE = new TransactionType[max + 1];
+        for (TransactionType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.ecotale.economy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streaming histogram of account balances for distribution statistics.
+ *
+ * Balances (minor units) are counted in log-linear buckets: values below 16 get
+ * one bucket each, above that every power of two is split into 8 sub-buckets, so
+ * a bucket never spans more than 12.5% of its lower bound. Every balance change
+ * moves one account from its old bucket to its new one, so the histogram doubles
+ * as a quantile sketch. Percentiles, Gini and brackets are read by walking the
+ * fixed ~490 buckets: constant time in the number of accounts, no sorting.
+ *
+ * Each bucket also keeps the exact sum of its balances, which makes the Gini
+ * coefficient exact up to inequality inside a bucket.
+ */
+public class WealthDistribution {
+    private static final int LINEAR = 16;
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(BUCKETS);
+
+    void add(long balance) {
+        int bucket = bucketOf(balance);
+        this.counts.incrementAndGet(bucket);
+        this.sums.addAndGet(bucket, balance);
+    }
+
+    void remove(long balance) {
+        int bucket = bucketOf(balance);
+        this.counts.decrementAndGet(bucket);
+        this.sums.addAndGet(bucket, -balance);
+    }
+
+    void move(long from, long to) {
+        if (bucketOf(from) == bucketOf(to)) {
+            this.sums.addAndGet(bucketOf(to), to - from);
+            return;
+        }
+        this.remove(from);
+        this.add(to);
+    }
+
+    /**
+     * Balance at the given quantile, interpolated inside its bucket.
+     *
+     * @param q Quantile in [0, 1], e.g. 0.5 for the median
+     * @return Balance in minor units, 0 if there are no accounts
+     */
+    public long quantileMinor(double q) {
+        long[] snapshot = this.snapshotCounts();
+        long total = 0L;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        double rank = Math.max(0.0, Math.min(1.0, q)) * (total - 1);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; ++i) {
+            long c = snapshot[i];
+            if (c <= 0L) continue;
+            if (seen + c > rank) {
+                long lower = lowerBound(i);
+                long width = upperBound(i) - lower - 1L;
+                double within = c == 1L ? 0.5 : (rank - seen) / (c - 1);
+                return lower + Math.round(width * within);
+            }
+            seen += c;
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+
+    public double quantile(double q) {
+        return Money.toDouble(this.quantileMinor(q));
+    }
+
+    public double getMedian() {
+        return this.quantile(0.5);
+    }
+
+    public double getP90() {
+        return this.quantile(0.9);
+    }
+
+    public double getP99() {
+        return this.quantile(0.99);
+    }
+
+    /**
+     * Gini coefficient of all balances: 0 = perfectly equal, 1 = one account holds everything.
+     * Computed from the Lorenz curve over buckets, treating balances inside a bucket as equal.
+     */
+    public double getGini() {
+        long population = 0L;
+        long wealth = 0L;
+        long[] counts = new long[BUCKETS];
+        long[] sums = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = Math.max(0L, this.counts.get(i));
+            sums[i] = Math.max(0L, this.sums.get(i));
+            population += counts[i];
+            wealth += sums[i];
+        }
+        if (population == 0L || wealth == 0L) {
+            return 0.0;
+        }
+        double area = 0.0;
+        double cumulativeShare = 0.0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            if (counts[i] == 0L) continue;
+            double populationShare = (double) counts[i] / population;
+            double nextShare = cumulativeShare + (double) sums[i] / wealth;
+            area += populationShare * (cumulativeShare + nextShare);
+            cumulativeShare = nextShare;
+        }
+        return Math.max(0.0, Math.min(1.0, 1.0 - area));
+    }
+
+    /**
+     * Account counts per power-of-ten bracket of whole currency units:
+     * [0, 1), [1, 10), [10, 100), ... up to the highest non-empty bracket.
+     * Buckets straddling a bracket edge are assigned by their midpoint.
+     */
+    public List<Bracket> getBrackets() {
+        long[] snapshot = this.snapshotCounts();
+        ArrayList<Bracket> brackets = new ArrayList<>();
+        long factor = Money.factor();
+        long upper = factor;
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; ++i) {
+            long mid = lowerBound(i) + (upperBound(i) - lowerBound(i)) / 2L;
+            while (mid >= upper) {
+                brackets.add(new Bracket(Money.toDouble(upper == factor ? 0L : upper / 10L), Money.toDouble(upper), count));
+                count = 0L;
+                if (upper > Long.MAX_VALUE / 10L) {
+                    upper = Long.MAX_VALUE;
+                    break;
+                }
+                upper *= 10L;
+            }
+            count += snapshot[i];
+        }
+        brackets.add(new Bracket(Money.toDouble(upper == factor ? 0L : upper / 10L), Money.toDouble(upper), count));
+        // Drop empty brackets at the top
+        while (brackets.size() > 1 && brackets.get(brackets.size() - 1).count() == 0L) {
+            brackets.remove(brackets.size() - 1);
+        }
+        return brackets;
+    }
+
+    private long[] snapshotCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot[i] = Math.max(0L, this.counts.get(i));
+        }
+        return snapshot;
+    }
+
+    static int bucketOf(long balance) {
+        if (balance < LINEAR) {
+            return (int) Math.max(0L, balance);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(balance);
+        int sub = (int) (balance >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exp - 4) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exp = 4 + (bucket - LINEAR) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    /**
+     * Exclusive upper bound of a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket + 1L;
+        }
+        int exp = 4 + (bucket - LINEAR) / SUB_BUCKETS;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long upper = (long) (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS);
+        return upper <= 0L ? Long.MAX_VALUE : upper;
+    }
+
+    /**
+     * Number of accounts with a balance in [min, max) whole currency units.
+     */
+    public record Bracket(double min, double max, long count) {
+    }
+}
@@ -1,10 +1,13 @@
 package com.ecotale.gui;
 
 import com.ecotale.Main;
+import com.ecotale.economy.EconomyStats;
 import com.ecotale.economy.PlayerBalance;
 import com.ecotale.economy.TransactionEntry;
 import com.ecotale.economy.TransactionLogger;
+import com.ecotale.economy.WealthDistribution;
 import com.ecotale.storage.H2StorageProvider;
+import com.ecotale.storage.PlayerFilterTooBroadException;
 import com.hypixel.hytale.codec.Codec;
 import com.hypixel.hytale.codec.KeyedCodec;
 import com.hypixel.hytale.codec.builder.BuilderCodec;
@@ -27,6 +30,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +63,8 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
     private String logFilter = "";
     private int currentPage = 0;
     private int logPage = 0;  // Separate pagination for LOG tab
+    // Keyset token that loads each log page after the first; reset when the filter changes
+    private final Map<Integer, String> logPageTokens = new ConcurrentHashMap<>();
 
     // Selection state
     private String selectedPlayerUuid = null;
@@ -173,6 +180,10 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
                 EventData.of("Action", "PrevPage"), false);
         events.addEventBinding(CustomUIEventBindingType.Activating, "#NextPageButton",
                 EventData.of("Action", "NextPage"), false);
+        events.addEventBinding(CustomUIEventBindingType.Activating, "#LogPrevButton",
+                EventData.of("Action", "LogPrev"), false);
+        events.addEventBinding(CustomUIEventBindingType.Activating, "#LogNextButton",
+                EventData.of("Action", "LogNext"), false);
 
         // Build current tab content
         buildDashboard(cmd);
@@ -239,7 +250,13 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
 
         // Handle log filter
         if (data.logFilter != null) {
-            this.logFilter = data.logFilter.trim().toLowerCase();
+            String newFilter = data.logFilter.trim().toLowerCase();
+            if (!newFilter.equals(this.logFilter)) {
+                // Tokens belong to the old filter's result set
+                this.logPage = 0;
+                this.logPageTokens.clear();
+            }
+            this.logFilter = newFilter;
             refreshUI(ref, store);
             return;
         }
@@ -388,6 +405,21 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
                     refreshUI(ref, store);
                     return;
                 }
+                case "LogPrev" -> {
+                    if (logPage > 0) {
+                        logPage--;
+                    }
+                    refreshUI(ref, store);
+                    return;
+                }
+                case "LogNext" -> {
+                    // Only reachable once the current page has handed out its token
+                    if (logPageTokens.containsKey(logPage + 1)) {
+                        logPage++;
+                    }
+                    refreshUI(ref, store);
+                    return;
+                }
                 // Config actions
                 case "ReloadConfig" -> {
                     Main.CONFIG.load();
@@ -453,19 +485,32 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
     }
 
     private void buildDashboard(@NonNullDecl UICommandBuilder cmd) {
-        var allBalances = Main.getInstance().getEconomyManager().getAllBalances();
+        EconomyStats stats = Main.getInstance().getEconomyManager().getEconomyStats();
 
-        double totalCirculating = allBalances.values().stream()
-                .mapToDouble(PlayerBalance::getBalance)
-                .sum();
-
-        int playerCount = allBalances.size();
-        double average = playerCount > 0 ? totalCirculating / playerCount : 0;
+        double totalCirculating = stats.getTotalSupply();
+        int playerCount = stats.getAccountCount();
+        double average = stats.getAverageBalance();
 
         cmd.set("#TotalCirculating.Text", Main.CONFIG.get().format(totalCirculating));
         cmd.set("#TotalPlayers.Text", String.valueOf(playerCount));
         cmd.set("#AverageBalance.Text", Main.CONFIG.get().format(average));
 
+        // Wealth distribution (histogram-backed, no sorting)
+        WealthDistribution distribution = stats.getDistribution();
+        cmd.set("#DistMedian.Text", Main.CONFIG.get().formatShort(distribution.getMedian()));
+        cmd.set("#DistP90.Text", Main.CONFIG.get().formatShort(distribution.getP90()));
+        cmd.set("#DistP99.Text", Main.CONFIG.get().formatShort(distribution.getP99()));
+        cmd.set("#DistGini.Text", String.format("%.2f", distribution.getGini()));
+        StringBuilder brackets = new StringBuilder();
+        for (WealthDistribution.Bracket bracket : distribution.getBrackets()) {
+            if (bracket.count() == 0L) continue;
+            if (brackets.length() > 0) {
+                brackets.append("  |  ");
+            }
+            brackets.append(Main.CONFIG.get().formatShort(bracket.min())).append("+: ").append(bracket.count());
+        }
+        cmd.set("#DistBrackets.Text", brackets.toString());
+
         // Config info
         cmd.set("#ConfigMaxBalance.Text", Main.CONFIG.get().formatShort(Main.CONFIG.get().getMaxBalance()));
         cmd.set("#ConfigTransferFee.Text", String.format("%.1f%%", Main.CONFIG.get().getTransferFee() * 100));
@@ -492,20 +537,21 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
     private void buildPlayersTab(@NonNullDecl UICommandBuilder cmd, @NonNullDecl UIEventBuilder events) {
         cmd.clear("#PlayerList");
 
-        var allBalances = Main.getInstance().getEconomyManager().getAllBalances();
+        var economy = Main.getInstance().getEconomyManager();
 
-        // Filter and sort
-        List<Map.Entry<UUID, PlayerBalance>> filtered = allBalances.entrySet().stream()
-                .filter(e -> {
-                    if (searchQuery.isEmpty()) return true;
-                    String playerName = getPlayerName(e.getKey());
-                    return playerName.toLowerCase().contains(searchQuery);
-                })
-                .sorted((a, b) -> Double.compare(b.getValue().getBalance(), a.getValue().getBalance()))
-                .collect(Collectors.toList());
+        // Leaderboard is already in balance order; only a name search needs a full pass
+        List<Map.Entry<UUID, PlayerBalance>> filtered = null;
+        int totalFiltered;
+        if (searchQuery.isEmpty()) {
+            totalFiltered = economy.totalAccounts();
+        } else {
+            filtered = economy.getLeaderboard(Integer.MAX_VALUE).stream()
+                    .filter(e -> getPlayerName(e.getKey()).toLowerCase().contains(searchQuery))
+                    .collect(Collectors.toList());
+            totalFiltered = filtered.size();
+        }
 
         // Calculate pagination
-        int totalFiltered = filtered.size();
         int totalPages = Math.max(1, (int) Math.ceil((double) totalFiltered / PAGE_SIZE));
 
         // Clamp currentPage to valid range
@@ -523,9 +569,11 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
         cmd.set("#PageInfo.Text", "Page " + (currentPage + 1) + " of " + totalPages);
 
         // Render current page entries
+        List<Map.Entry<UUID, PlayerBalance>> pageEntries = filtered != null
+                ? filtered.subList(startIndex, endIndex)
+                : economy.getLeaderboard(startIndex, PAGE_SIZE);
         int displayIndex = 0;
-        for (int i = startIndex; i < endIndex; i++) {
-            var entry = filtered.get(i);
+        for (var entry : pageEntries) {
             UUID uuid = entry.getKey();
             PlayerBalance balance = entry.getValue();
             String playerName = getPlayerName(uuid);
@@ -577,13 +625,7 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
     private void buildTopTab(@NonNullDecl UICommandBuilder cmd) {
         cmd.clear("#TopList");
 
-        var allBalances = Main.getInstance().getEconomyManager().getAllBalances();
-
-        // Sort by balance descending, take top 10
-        List<Map.Entry<UUID, PlayerBalance>> top10 = allBalances.entrySet().stream()
-                .sorted((a, b) -> Double.compare(b.getValue().getBalance(), a.getValue().getBalance()))
-                .limit(10)
-                .collect(Collectors.toList());
+        List<Map.Entry<UUID, PlayerBalance>> top10 = Main.getInstance().getEconomyManager().getLeaderboard(10);
 
         int rank = 1;
         for (var entry : top10) {
@@ -612,38 +654,49 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
         // LOG tab only works with H2 storage
         if (h2Storage == null) {
             cmd.appendInline("#LogList", "Label { Text: \"Transaction log requires H2 storage provider.\"; Style: (FontSize: 14, TextColor: #888888); Padding: (Top: 20); }");
+            cmd.set("#LogPrevButton.Visible", false);
+            cmd.set("#LogNextButton.Visible", false);
             return;
         }
 
         // Show loading state
         cmd.set("#LogCountInfo.Text", "Loading...");
+        cmd.set("#LogPrevButton.Visible", logPage > 0);
+        cmd.set("#LogNextButton.Visible", false);
 
         // Query H2 asynchronously to avoid blocking main thread
         String filter = logFilter.isEmpty() ? null : logFilter;
-        int offset = logPage * LOG_SIZE;
+        int page = logPage;
+        String token = logPageTokens.get(page);
 
         // Combine both queries into one async operation
         // IMPORTANT: Use thenCombineAsync to run callback on ForkJoinPool, NOT on H2 executor
         // Otherwise the callback blocks the H2 executor and causes deadlock on shutdown
         h2Storage.countTransactionsAsync(filter).thenCombineAsync(
-                h2Storage.queryTransactionsAsync(filter, LOG_SIZE, offset),
-                (totalCount, entries) -> {
+                h2Storage.queryTransactionsPageAsync(filter, token, LOG_SIZE),
+                (totalCount, result) -> {
+                    List<TransactionEntry> entries = result.items();
+                    if (result.hasNext()) {
+                        logPageTokens.put(page + 1, result.nextToken());
+                    }
+
                     // Build UI update on the result
                     UICommandBuilder asyncCmd = new UICommandBuilder();
                     asyncCmd.clear("#LogList");
+                    asyncCmd.set("#LogNextButton.Visible", result.hasNext());
 
                     // Calculate total pages
                     int totalPages = Math.max(1, (int) Math.ceil((double) totalCount / LOG_SIZE));
 
                     // Update count and page info
                     int showing = entries.size();
-                    int startIdx = logPage * LOG_SIZE + 1;
+                    int startIdx = page * LOG_SIZE + 1;
                     int endIdx = startIdx + showing - 1;
                     if (totalCount == 0) {
                         asyncCmd.set("#LogCountInfo.Text", "No transactions");
                     } else {
                         asyncCmd.set("#LogCountInfo.Text",
-                                String.format("Showing %d-%d of %d (Page %d/%d)", startIdx, endIdx, totalCount, logPage + 1, totalPages));
+                                String.format("Showing %d-%d of %d (Page %d/%d)", startIdx, endIdx, totalCount, page + 1, totalPages));
                     }
 
                     if (entries.isEmpty()) {
@@ -666,7 +719,20 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
                     this.sendUpdate(asyncCmd, new UIEventBuilder(), false);
                     return null;
                 }
-        );
+        ).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            UICommandBuilder errorCmd = new UICommandBuilder();
+            errorCmd.clear("#LogList");
+            errorCmd.set("#LogNextButton.Visible", false);
+            errorCmd.set("#LogCountInfo.Text", "");
+            String message = cause instanceof PlayerFilterTooBroadException tooBroad
+                    ? "More than " + tooBroad.getMaxPlayers() + " players match '" + filter + "', type more of the name"
+                    : "Failed to load transactions";
+            errorCmd.appendInline("#LogList",
+                    "Label { Text: \"" + message.replace("\"", "'") + "\"; Style: (FontSize: 12, TextColor: #888888); Anchor: (Top: 20); }");
+            this.sendUpdate(errorCmd, new UIEventBuilder(), false);
+            return null;
+        });
     }
 
     private void buildConfigTab(@NonNullDecl UICommandBuilder cmd) {
@@ -727,6 +793,7 @@ public class EcoAdminGui extends InteractiveCustomUIPage<EcoAdminGui.AdminGuiDat
         cmd.set("#LblTotalCirculating.Text", t("gui.dashboard.total_circulating", "Total Circulating"));
         cmd.set("#LblPlayersWithBalance.Text", t("gui.dashboard.total_players", "Players with Balance"));
         cmd.set("#LblAverageBalance.Text", t("gui.dashboard.avg_balance", "Average Balance"));
+        cmd.set("#LblDistribution.Text", t("gui.dashboard.distribution", "Wealth Distribution"));
         cmd.set("#LblCurrentConfig.Text", t("gui.dashboard.current_config", "Current Configuration"));
         cmd.set("#LblRecentActivity.Text", t("gui.dashboard.recent_activity", "Recent Activity"));
 
@@ -23,7 +23,9 @@ package com.ecotale.gui;
 
 import com.ecotale.Main;
 import com.ecotale.config.EcotaleConfig;
-import com.ecotale.economy.PlayerBalance;
+import com.ecotale.economy.EconomyManager;
+import com.ecotale.economy.LeaderboardIndex;
+import com.ecotale.economy.Page;
 import com.ecotale.economy.TopBalanceEntry;
 import com.ecotale.storage.H2StorageProvider;
 import com.hypixel.hytale.codec.Codec;
@@ -40,12 +42,12 @@ import com.hypixel.hytale.server.core.ui.builder.UIEventBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
 public class TopBalanceGui
@@ -56,6 +58,8 @@ extends InteractiveCustomUIPage<TopBalanceGui.TopBalanceData> {
     private final PlayerRef playerRef;
     private int currentPage = 0;
     private Mode mode = Mode.ALL_TIME;
+    /** Keyset token that loads each page after the first, filled in as pages are fetched. */
+    private final Map<Integer, String> pageTokens = new ConcurrentHashMap<Integer, String>();
 
     public TopBalanceGui(@NonNullDecl PlayerRef playerRef) {
         super(playerRef, CustomPageLifetime.CanDismiss, TopBalanceData.CODEC);
@@ -95,22 +99,27 @@ extends InteractiveCustomUIPage<TopBalanceGui.TopBalanceData> {
                     break;
                 }
                 case "Next": {
+                    // Database pages are reachable only through the token of the page before
+                    if (Main.getInstance().getEconomyManager().getH2Storage() != null && !this.pageTokens.containsKey(this.currentPage + 1)) break;
                     ++this.currentPage;
                     break;
                 }
                 case "TabAllTime": {
                     this.mode = Mode.ALL_TIME;
                     this.currentPage = 0;
+                    this.pageTokens.clear();
                     break;
                 }
                 case "TabWeekly": {
                     this.mode = Mode.WEEKLY;
                     this.currentPage = 0;
+                    this.pageTokens.clear();
                     break;
                 }
                 case "TabMonthly": {
                     this.mode = Mode.MONTHLY;
                     this.currentPage = 0;
+                    this.pageTokens.clear();
                 }
             }
         }
@@ -129,51 +138,62 @@ extends InteractiveCustomUIPage<TopBalanceGui.TopBalanceData> {
     }
 
     private void loadPage(@NonNullDecl Ref<EntityStore> ref, @NonNullDecl Store<EntityStore> store, double myBalance) {
-        H2StorageProvider h2 = Main.getInstance().getEconomyManager().getH2Storage();
+        EconomyManager economy = Main.getInstance().getEconomyManager();
+        H2StorageProvider h2 = economy.getH2Storage();
         int offset = this.currentPage * 10;
         if (h2 != null) {
-            CachedPage cached = this.getCachedEntries(offset);
-            if (!cached.entries.isEmpty()) {
-                this.updateList(cached.entries, cached.totalCount, myBalance, CompletableFuture.completedFuture(null));
+            // The in-memory preview is only complete when every account is cached
+            if (!economy.isBoundedCache()) {
+                CachedPage cached = this.toCachedPage(economy.getLeaderboardPage(offset, 10));
+                if (!cached.entries.isEmpty()) {
+                    this.updateList(cached.entries, cached.totalCount, myBalance, this.myRank(myBalance), cached.entries.size() >= 10);
+                }
             }
-            CompletableFuture<List<TopBalanceEntry>> listFuture = switch (this.mode.ordinal()) {
+            int page = this.currentPage;
+            String token = this.pageTokens.get(page);
+            CompletableFuture<Page<TopBalanceEntry>> pageFuture = switch (this.mode.ordinal()) {
                 default -> throw new MatchException(null, null);
-                case 0 -> this.invokeTopQuery(h2, 10, offset);
-                case 1 -> this.invokeTopPeriodQuery(h2, 10, offset, 7);
-                case 2 -> this.invokeTopPeriodQuery(h2, 10, offset, 30);
+                case 0 -> h2.queryTopBalancesPageAsync(token, 10);
+                case 1 -> h2.queryTopBalancesPeriodPageAsync(token, 10, 7);
+                case 2 -> h2.queryTopBalancesPeriodPageAsync(token, 10, 30);
             };
-            CompletableFuture<Integer> countFuture = this.invokeCountPlayers(h2);
-            CompletableFuture<Integer> rankFuture = this.invokeCountRank(h2, myBalance);
-            listFuture.thenCombineAsync(countFuture, (entries, total) -> {
-                if (entries == null || entries.isEmpty()) {
-                    return null;
+            pageFuture.thenAcceptAsync(result -> {
+                if (result.nextToken() != null) {
+                    this.pageTokens.put(page + 1, result.nextToken());
+                }
+                if (result.items().isEmpty()) {
+                    return;
                 }
-                this.updateList(entries, total, myBalance, rankFuture);
-                return null;
+                this.updateList(result.items(), economy.totalAccounts(), myBalance, this.myRank(myBalance), result.hasNext());
             });
             return;
         }
-        CachedPage cached = this.getCachedEntries(offset);
-        this.updateList(cached.entries, cached.totalCount, myBalance, CompletableFuture.completedFuture(null));
+        // Read from storage in bounded cache mode, so never wait for it here
+        economy.getLeaderboardPageAsync(offset, 10).thenAcceptAsync(page -> {
+            CachedPage cached = this.toCachedPage(page);
+            this.updateList(cached.entries, cached.totalCount, myBalance, this.myRank(myBalance), cached.entries.size() >= 10);
+        });
     }
 
-    private CachedPage getCachedEntries(int offset) {
-        Map<UUID, PlayerBalance> allBalances = Main.getInstance().getEconomyManager().getAllBalances();
-        List sorted = allBalances.entrySet().stream().sorted((a, b) -> Double.compare(((PlayerBalance)b.getValue()).getBalance(), ((PlayerBalance)a.getValue()).getBalance())).toList();
-        int start = Math.min(offset, sorted.size());
-        int end = Math.min(offset + 10, sorted.size());
+    /**
+     * Accounts strictly richer than the viewer: from the in-memory leaderboard, or counted
+     * in storage in bounded cache mode.
+     */
+    private CompletableFuture<Integer> myRank(double myBalance) {
+        return Main.getInstance().getEconomyManager().countAboveAsync(myBalance);
+    }
+
+    private CachedPage toCachedPage(List<LeaderboardIndex.Entry> page) {
+        EconomyManager economy = Main.getInstance().getEconomyManager();
         ArrayList<TopBalanceEntry> entries = new ArrayList<TopBalanceEntry>();
-        for (int i = start; i < end; ++i) {
-            Map.Entry entry = (Map.Entry)sorted.get(i);
-            UUID uuid = (UUID)entry.getKey();
-            PlayerBalance balance = (PlayerBalance)entry.getValue();
-            String name = this.resolveName(uuid, null);
-            entries.add(new TopBalanceEntry(uuid, name, balance.getBalance(), 0.0));
+        for (LeaderboardIndex.Entry entry : page) {
+            String name = this.resolveName(entry.uuid(), null);
+            entries.add(new TopBalanceEntry(entry.uuid(), name, entry.balance(), 0.0));
         }
-        return new CachedPage(entries, sorted.size());
+        return new CachedPage(entries, economy.totalAccounts());
     }
 
-    private void updateList(List<TopBalanceEntry> entries, int totalCount, double myBalance, CompletableFuture<Integer> rankFuture) {
+    private void updateList(List<TopBalanceEntry> entries, int totalCount, double myBalance, CompletableFuture<Integer> rankFuture, boolean hasNext) {
         UICommandBuilder cmd = new UICommandBuilder();
         cmd.clear("#TopList");
         if (entries.isEmpty()) {
@@ -200,7 +220,7 @@ extends InteractiveCustomUIPage<TopBalanceGui.TopBalanceData> {
             cmd.set("#CountLabel.Text", "");
         }
         cmd.set("#PrevButton.Visible", this.currentPage > 0);
-        cmd.set("#NextButton.Visible", entries.size() >= 10);
+        cmd.set("#NextButton.Visible", hasNext);
         rankFuture.thenAcceptAsync(rank -> {
             UICommandBuilder rankCmd = new UICommandBuilder();
             if (rank != null) {
@@ -233,65 +253,6 @@ extends InteractiveCustomUIPage<TopBalanceGui.TopBalanceData> {
         return uuid.toString().substring(0, 8) + "...";
     }
 
-    private CompletableFuture<List<TopBalanceEntry>> invokeTopQuery(H2StorageProvider h2, int limit, int offset) {
-        try {
-            Method method = h2.getClass().getMethod("queryTopBalancesAsync", Integer.TYPE, Integer.TYPE);
-            Object result = method.invoke((Object)h2, limit, offset);
-            if (result instanceof CompletableFuture) {
-                CompletableFuture future = (CompletableFuture)result;
-                return future;
-            }
-        }
-        catch (Exception exception) {
-            // empty catch block
-        }
-        return CompletableFuture.completedFuture(new ArrayList());
-    }
-
-    private CompletableFuture<List<TopBalanceEntry>> invokeTopPeriodQuery(H2StorageProvider h2, int limit, int offset, int daysAgo) {
-        try {
-            Method method = h2.getClass().getMethod("queryTopBalancesPeriodAsync", Integer.TYPE, Integer.TYPE, Integer.TYPE);
-            Object result = method.invoke((Object)h2, limit, offset, daysAgo);
-            if (result instanceof CompletableFuture) {
-                CompletableFuture future = (CompletableFuture)result;
-                return future;
-            }
-        }
-        catch (Exception exception) {
-            // empty catch block
-        }
-        return CompletableFuture.completedFuture(new ArrayList());
-    }
-
-    private CompletableFuture<Integer> invokeCountPlayers(H2StorageProvider h2) {
-        try {
-            Method method = h2.getClass().getMethod("countPlayersAsync", new Class[0]);
-            Object result = method.invoke((Object)h2, new Object[0]);
-            if (result instanceof CompletableFuture) {
-                CompletableFuture future = (CompletableFuture)result;
-                return future;
-            }
-        }
-        catch (Exception exception) {
-            // empty catch block
-        }
-        return CompletableFuture.completedFuture(0);
-    }
-
-    private CompletableFuture<Integer> invokeCountRank(H2StorageProvider h2, double balance) {
-        try {
-            Method method = h2.getClass().getMethod("countPlayersWithBalanceGreaterAsync", Double.TYPE);
-            Object result = method.invoke(h2, balance);
-            if (result instanceof CompletableFuture future) {
-                return future;
-            }
-        }
-        catch (Exception exception) {
-            // empty catch block
-        }
-        return CompletableFuture.completedFuture(null);
-    }
-
     public static class TopBalanceData {
         private static final String KEY_ACTION = "Action";
         public String action;
@@ -8,13 +8,18 @@ import com.hypixel.hytale.server.core.entity.entities.player.hud.CustomUIHud;
 import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.util.NotificationUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BalanceHud extends CustomUIHud {
+    private static final Map<UUID, BalanceHud> HUDS = new ConcurrentHashMap<>();
+
     public BalanceHud(PlayerRef playerRef) {
         super(playerRef);
     }
@@ -28,7 +33,10 @@ public class BalanceHud extends CustomUIHud {
         builder.append("Pages/Ecotale_BalanceHud.ui");
 
         var config = com.ecotale.Main.CONFIG.get();
-        double balance = com.ecotale.Main.getInstance().getEconomyManager().getBalance(getPlayerRef().getUuid());
+        // Cache only: build runs on the world thread. An account still loading shows 0 until
+        // the join handler refreshes the HUD with the loaded balance.
+        var account = com.ecotale.Main.getInstance().getEconomyManager().getPlayerBalance(getPlayerRef().getUuid());
+        double balance = account != null ? account.getBalance() : 0.0;
 
         String symbol = config.getCurrencySymbol();
         String prefix = com.ecotale.util.TranslationHelper.t(getPlayerRef(), "hud.prefix", config.getHudPrefix());
@@ -43,24 +51,73 @@ public class BalanceHud extends CustomUIHud {
         builder.set("#BalanceAmount.Text", amount);
     }
 
-    public static void updatePlayerHud(UUID playerUuid, double newBalance, Double diff) {
-        var playerRef = Universe.get().getPlayer(playerUuid);
-        if (playerRef == null || playerRef.getWorldUuid() == null)
+    /**
+     * Create the HUD for a player joining a world and remember it, so balance updates
+     * can reuse it instead of allocating a new one each time.
+     */
+    public static BalanceHud register(PlayerRef playerRef) {
+        BalanceHud hud = new BalanceHud(playerRef);
+        HUDS.put(playerRef.getUuid(), hud);
+        return hud;
+    }
+
+    public static void unregister(UUID playerUuid) {
+        HUDS.remove(playerUuid);
+    }
+
+    /**
+     * Refresh a player's HUD after a balance change. Safe from any thread: the rebuild is
+     * posted to the player's world thread, through the {@link HudUpdateCoalescer} when it
+     * is running, so bursts collapse into one update.
+     *
+     * @param newBalance Not used; the rebuilt HUD reads the current balance. Kept for API callers.
+     * @param diff       Change shown in the toast
+     */
+    public static void updatePlayerHud(UUID playerUuid, double newBalance, double diff) {
+        HudUpdateCoalescer coalescer = HudUpdateCoalescer.getInstance();
+        if (coalescer != null && coalescer.record(playerUuid, diff)) {
             return;
+        }
+        World world = worldOf(playerUuid);
+        if (world != null) {
+            world.execute(() -> applyUpdate(world, playerUuid, diff, 1));
+        }
+    }
 
-        BalanceHud hud = new BalanceHud(Universe.get().getPlayer(playerUuid));
+    /**
+     * @return The world the player is in, or null if they are not in one
+     */
+    static World worldOf(UUID playerUuid) {
+        PlayerRef playerRef = Universe.get().getPlayer(playerUuid);
+        if (playerRef == null || playerRef.getWorldUuid() == null) {
+            return null;
+        }
+        return Universe.get().getWorld(playerRef.getWorldUuid());
+    }
 
-        var world = Universe.get().getWorld(playerRef.getWorldUuid());
-        assert world != null;
+    /**
+     * Rebuild the HUD and show a single toast for {@code count} merged changes.
+     * Must run on the world thread of {@code world}; does nothing if the player has left it.
+     */
+    static void applyUpdate(World world, UUID playerUuid, double diff, int count) {
+        var playerRef = Universe.get().getPlayer(playerUuid);
+        if (playerRef == null)
+            return;
+
+        BalanceHud hud = HUDS.get(playerUuid);
+        if (hud == null || hud.getPlayerRef() != playerRef) {
+            hud = register(playerRef);
+        }
 
         var ref = world.getEntityStore().getRefFromUUID(playerUuid);
         if (ref != null && ref.isValid()) {
             var player = world.getEntityStore().getStore().getComponent(ref, Player.getComponentType());
             MultipleHUD.getInstance().setCustomHud(player, playerRef, "ecotale", hud);
 
-            if (diff != null && diff != 0) {
-                NotificationUtil.sendNotification(playerRef.getPacketHandler(), Message.raw((diff >= 0 ? "+" : "-") + " " + EcotaleAPI.format(diff)).color(diff < 0 ? Color.RED : Color.GREEN));
+            if (diff != 0) {
+                String suffix = count > 1 ? " (x" + count + ")" : "";
+                NotificationUtil.sendNotification(playerRef.getPacketHandler(), Message.raw((diff >= 0 ? "+" : "-") + " " + EcotaleAPI.format(diff) + suffix).color(diff < 0 ? Color.RED : Color.GREEN));
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package com.ecotale.hud;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Collapses bursts of HUD updates into one per player per window.
+ *
+ * Each change only adds to the pending delta; the rebuild reads the current balance. Every
+ * {@code HudUpdateWindowMs} the pending entries are flushed: one HUD rebuild on the
+ * player's existing HUD and one merged toast, e.g. "+ $1,250 (x20)". The flush runs on a
+ * virtual thread and only groups the entries by world; each world gets one task on its
+ * own thread that applies its players' updates.
+ */
+public class HudUpdateCoalescer {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-Hud");
+    private static HudUpdateCoalescer instance;
+
+    private final ConcurrentHashMap<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param windowMs Flush interval; 0 or less disables coalescing
+     */
+    public HudUpdateCoalescer(int windowMs) {
+        if (windowMs > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("Ecotale-HudCoalescer").factory()
+            );
+            this.scheduler.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+        instance = this;
+    }
+
+    public static HudUpdateCoalescer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queue an update for the next flush.
+     *
+     * @return false if coalescing is disabled and the caller should update directly
+     */
+    boolean record(UUID playerUuid, double diff) {
+        if (this.scheduler == null) {
+            return false;
+        }
+        // Zero deltas still rebuild the HUD but are not counted in the toast's "(xN)"
+        int counted = diff != 0 ? 1 : 0;
+        this.pending.compute(playerUuid, (uuid, current) -> current == null
+            ? new Pending(diff, counted)
+            : new Pending(current.diff + diff, current.count + counted));
+        return true;
+    }
+
+    /**
+     * Take the pending updates and post them to the world threads, one task per world.
+     * Nothing here touches the entity store: that happens in the posted tasks.
+     */
+    private void flush() {
+        HashMap<World, List<Map.Entry<UUID, Pending>>> byWorld = new HashMap<>();
+        Iterator<Map.Entry<UUID, Pending>> it = this.pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Pending> entry = it.next();
+            // remove(key, value) so an update recorded meanwhile stays queued for the next window
+            if (!this.pending.remove(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            World world = BalanceHud.worldOf(entry.getKey());
+            if (world != null) {
+                byWorld.computeIfAbsent(world, w -> new ArrayList<>()).add(entry);
+            }
+        }
+        byWorld.forEach((world, updates) -> world.execute(() -> {
+            for (Map.Entry<UUID, Pending> update : updates) {
+                try {
+                    BalanceHud.applyUpdate(world, update.getKey(), update.getValue().diff, update.getValue().count);
+                } catch (Exception e) {
+                    LOGGER.at(Level.WARNING).log("HUD update failed for %s: %s", (Object) update.getKey(), (Object) e.getMessage());
+                }
+            }
+        }));
+    }
+
+    /**
+     * Forget a player that left; nothing is shown for their pending changes.
+     */
+    public void discard(UUID playerUuid) {
+        this.pending.remove(playerUuid);
+    }
+
+    public void shutdown() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+        }
+        this.pending.clear();
+        instance = null;
+    }
+
+    /**
+     * @param diff  Sum of all deltas in the window
+     * @param count Number of merged non-zero changes
+     */
+    private record Pending(double diff, int count) {
+    }
+}
@@ -2,6 +2,7 @@ package com.ecotale.lib.vaultunlocked;
 
 import com.ecotale.Main;
 import com.ecotale.api.EcotaleAPI;
+import com.ecotale.economy.Money;
 import net.milkbowl.vault2.economy.AccountPermission;
 import net.milkbowl.vault2.economy.Economy;
 import net.milkbowl.vault2.economy.EconomyResponse;
@@ -210,7 +211,7 @@ public class EcotaleUnlocked implements Economy {
     @Override
     public boolean hasAccount(@NotNull final UUID accountID) {
 
-        return plugin.getEconomyManager().getAllBalances().containsKey(accountID);
+        return plugin.getEconomyManager().containsAccount(accountID);
     }
 
     @Override
@@ -262,7 +263,7 @@ public class EcotaleUnlocked implements Economy {
     @Override
     public BigDecimal getBalance(@NotNull final String pluginName, @NotNull final UUID accountID) {
 
-        return new BigDecimal(EcotaleAPI.getBalance(accountID));
+        return Money.toBigDecimal(EcotaleAPI.getBalanceMinor(accountID));
     }
 
     /**
@@ -290,7 +291,7 @@ public class EcotaleUnlocked implements Economy {
     @Override
     public boolean has(@NotNull final String pluginName, @NotNull final UUID accountID, @NotNull final BigDecimal amount) {
 
-        return EcotaleAPI.hasBalance(accountID, amount.doubleValue());
+        return EcotaleAPI.hasBalanceMinor(accountID, Money.fromBigDecimal(amount));
     }
 
     @Override
@@ -310,7 +311,7 @@ public class EcotaleUnlocked implements Economy {
     @Override
     public @NotNull EconomyResponse withdraw(@NotNull final String pluginName, @NotNull final UUID accountID, @NotNull final BigDecimal amount) {
 
-        final boolean withdrawResult = EcotaleAPI.withdraw(accountID, amount.doubleValue(), "VaultUnlocked withdraw from plugin " + pluginName);
+        final boolean withdrawResult = EcotaleAPI.withdrawMinor(accountID, Money.fromBigDecimal(amount), "VaultUnlocked withdraw from plugin " + pluginName);
         final EconomyResponse.ResponseType status = (withdrawResult)? EconomyResponse.ResponseType.SUCCESS : EconomyResponse.ResponseType.FAILURE;
 
         return new EconomyResponse(amount, getBalance(pluginName, accountID), status, "Withdrawal result: " + status.name());
@@ -336,7 +337,7 @@ public class EcotaleUnlocked implements Economy {
     @Override
     public EconomyResponse deposit(@NotNull final String pluginName, @NotNull final UUID accountID, @NotNull final BigDecimal amount) {
 
-        final boolean depositResult = EcotaleAPI.deposit(accountID, amount.doubleValue(), "VaultUnlocked deposit from plugin " + pluginName);
+        final boolean depositResult = EcotaleAPI.depositMinor(accountID, Money.fromBigDecimal(amount), "VaultUnlocked deposit from plugin " + pluginName);
         final EconomyResponse.ResponseType status = (depositResult)? EconomyResponse.ResponseType.SUCCESS : EconomyResponse.ResponseType.FAILURE;
 
         return new EconomyResponse(amount, getBalance(pluginName, accountID), status, "Deposit result: " + status.name());
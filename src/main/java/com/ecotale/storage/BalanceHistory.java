@@ -0,0 +1,111 @@
+package com.ecotale.storage;
+
+import com.ecotale.economy.BalanceSnapshot;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Delta store for the daily balance snapshots behind the trend leaderboards.
+ *
+ * A row {@code (snap_day, uuid, balance)} means the account held that balance from
+ * {@code snap_day} until its next row. Each daily run only writes the accounts that
+ * changed since the previous run, so the cost follows daily activity instead of the
+ * number of accounts. The balance "as of day D" is the row with the latest
+ * {@code snap_day <= D}, found through the {@code (uuid, snap_day)} index (see {@link #asOfDay}).
+ *
+ * The changed set is kept in memory by the economy manager and is lost on restart. The
+ * first run after startup therefore also copies every account whose {@code updated_at} is
+ * newer than the previous run. On a fresh table that is every account, which gives the
+ * baseline. Rows written by the older full daily copies remain valid as-of rows.
+ */
+final class BalanceHistory {
+    private static final String LAST_RUN_KEY = "snapshot_last_run";
+
+    private final String snapshotsTable;
+    private final String balancesTable;
+    private final String metaTable;
+    private final boolean mysql;
+    private volatile boolean caughtUp = false;
+
+    /**
+     * @param snapshotsTable Fully prefixed balance_snapshots table
+     * @param balancesTable  Fully prefixed balances table
+     * @param metaTable      Fully prefixed meta table, holds the time of the last run
+     * @param mysql          True for MySQL SQL dialect, false for H2
+     */
+    BalanceHistory(String snapshotsTable, String balancesTable, String metaTable, boolean mysql) {
+        this.snapshotsTable = snapshotsTable;
+        this.balancesTable = balancesTable;
+        this.metaTable = metaTable;
+        this.mysql = mysql;
+    }
+
+    /**
+     * SQL expression for the day of the account's snapshot in effect on {@code day},
+     * for an outer query that aliases the balances table as {@code b}.
+     *
+     * @param day SQL expression or parameter marker for the day
+     */
+    static String asOfDay(String snapshotsTable, String day) {
+        return "(SELECT MAX(x.snap_day) FROM " + snapshotsTable + " x WHERE x.uuid = b.uuid AND x.snap_day <= " + day + ")";
+    }
+
+    /**
+     * Record the given accounts under {@code day}, in one transaction.
+     *
+     * @param changed Accounts changed since the last run, as held in memory
+     * @return Rows written
+     */
+    int write(Connection connection, LocalDate day, Collection<BalanceSnapshot> changed) throws SQLException {
+        long runStart = System.currentTimeMillis();
+        SchemaMeta meta = new SchemaMeta(connection, this.metaTable);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int rows = 0;
+            if (!this.caughtUp) {
+                String lastRun = meta.get(LAST_RUN_KEY);
+                try (PreparedStatement ps = connection.prepareStatement(this.upsertSql("SELECT ?, uuid, balance FROM " + this.balancesTable + " WHERE updated_at >= ?"));){
+                    ps.setDate(1, Date.valueOf(day));
+                    ps.setLong(2, lastRun != null ? Long.parseLong(lastRun.trim()) : 0L);
+                    rows += ps.executeUpdate();
+                }
+            }
+            // After the catch-up, so the live in-memory balances win
+            if (!changed.isEmpty()) {
+                try (PreparedStatement ps = connection.prepareStatement(this.upsertSql("VALUES (?, ?, ?)"));){
+                    for (BalanceSnapshot snapshot : changed) {
+                        ps.setDate(1, Date.valueOf(day));
+                        UuidCodec.bind(ps, 2, snapshot.uuid());
+                        ps.setLong(3, snapshot.balanceMinor());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    rows += changed.size();
+                }
+            }
+            meta.set(LAST_RUN_KEY, Long.toString(runStart));
+            connection.commit();
+            this.caughtUp = true;
+            return rows;
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String upsertSql(String source) {
+        if (this.mysql) {
+            return "INSERT INTO " + this.snapshotsTable + " (snap_day, uuid, balance) " + source + " ON DUPLICATE KEY UPDATE balance = VALUES(balance)";
+        }
+        return "MERGE INTO " + this.snapshotsTable + " (snap_day, uuid, balance) KEY(snap_day, uuid) " + source;
+    }
+}
@@ -0,0 +1,184 @@
+package com.ecotale.storage;
+
+import com.ecotale.economy.TransactionType;
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Schema version 2: binary keys and numeric columns.
+ *
+ * - UUID columns are BINARY(16) instead of VARCHAR(36) (see {@link UuidCodec})
+ * - {@code balances.updated_at} is BIGINT epoch millis
+ * - The transaction type is a SMALLINT {@code type_code} ({@link TransactionType#getCode()})
+ *
+ * Version-1 tables are migrated once at startup. Each table is copied into a
+ * {@code <table>_v2} table with a single INSERT ... SELECT that converts the columns
+ * in the database. The row counts are compared and then the tables are swapped. The old
+ * table is kept as {@code <table>_v1} until an admin drops it. A crash mid-migration leaves
+ * the v1 table in place and the copy is redone on the next start. The version is stored in
+ * the meta table once every table is converted.
+ *
+ * On H2 the swap is two renames that commit separately. A crash between them leaves
+ * {@code <table>_v1} and {@code <table>_v2} but no {@code <table>};
+ * {@link #recoverInterruptedSwaps} finishes such a swap before the provider creates its tables.
+ */
+final class CompactSchema {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-Schema");
+    static final int VERSION = 2;
+    private static final String VERSION_KEY = "schema_version";
+
+    private final Connection connection;
+    private final SchemaMeta meta;
+    private final boolean mysql;
+
+    /**
+     * @param connection Open connection used for all schema work
+     * @param metaTable  Fully prefixed name of the meta table
+     * @param mysql      True for MySQL SQL dialect, false for H2
+     */
+    CompactSchema(Connection connection, String metaTable, boolean mysql) {
+        this.connection = connection;
+        this.meta = new SchemaMeta(connection, metaTable);
+        this.mysql = mysql;
+    }
+
+    /**
+     * Migrate every listed table that still has a VARCHAR key column.
+     * Safe to call on every startup; does nothing once the schema is at {@link #VERSION}.
+     */
+    void ensureCompact(List<TableMigration> tables) throws SQLException {
+        this.meta.ensureTable();
+        String stored = this.meta.get(VERSION_KEY);
+        if (stored != null && Integer.parseInt(stored.trim()) >= VERSION) {
+            return;
+        }
+        for (TableMigration table : tables) {
+            if (this.isLegacy(table)) {
+                this.migrate(table);
+            }
+        }
+        this.meta.set(VERSION_KEY, Integer.toString(VERSION));
+    }
+
+    /**
+     * Finish or undo table swaps a crash interrupted. Must run before any
+     * {@code CREATE TABLE IF NOT EXISTS}, which would otherwise create an empty table in
+     * place of the missing one.
+     *
+     * A table missing next to its {@code _v2} copy was renamed to {@code _v1} after the copy
+     * was verified, so the copy is put in place. A table missing next to only {@code _v1}
+     * gets the v1 table back and is migrated again.
+     *
+     * @param tables Fully prefixed table names
+     */
+    void recoverInterruptedSwaps(List<String> tables) throws SQLException {
+        for (String name : tables) {
+            String legacy = name + "_v1";
+            if (SchemaMeta.hasTable(this.connection, name) || !SchemaMeta.hasTable(this.connection, legacy)) continue;
+            String copy = name + "_v2";
+            try (Statement stmt = this.connection.createStatement();){
+                if (SchemaMeta.hasTable(this.connection, copy)) {
+                    stmt.execute(this.renameSql(copy, name));
+                    LOGGER.at(Level.WARNING).log("Finished interrupted schema migration of %s", (Object)name);
+                } else {
+                    stmt.execute(this.renameSql(legacy, name));
+                    LOGGER.at(Level.WARNING).log("Restored %s from %s after an interrupted schema migration", (Object)name, (Object)legacy);
+                }
+            }
+        }
+    }
+
+    private String renameSql(String from, String to) {
+        return this.mysql ? "RENAME TABLE %s TO %s".formatted(from, to) : "ALTER TABLE %s RENAME TO %s".formatted(from, to);
+    }
+
+    private boolean isLegacy(TableMigration table) throws SQLException {
+        int type = SchemaMeta.columnType(this.connection, table.table(), table.probeColumn());
+        return type == Types.VARCHAR || type == Types.CHAR || type == Types.NVARCHAR || type == Types.LONGVARCHAR;
+    }
+
+    private void migrate(TableMigration table) throws SQLException {
+        String name = table.table();
+        String copy = name + "_v2";
+        String legacy = name + "_v1";
+        long start = System.nanoTime();
+        try (Statement stmt = this.connection.createStatement();){
+            stmt.execute("DROP TABLE IF EXISTS " + copy);
+            stmt.execute(table.createSql().formatted(copy));
+            long copied = stmt.executeUpdate("INSERT INTO %s (%s) SELECT %s FROM %s".formatted(copy, table.columns(), table.select(), name));
+            long expected = this.count(stmt, name);
+            if (copied != expected) {
+                stmt.execute("DROP TABLE IF EXISTS " + copy);
+                throw new SQLException("Schema migration of %s copied %d of %d rows".formatted(name, copied, expected));
+            }
+            stmt.execute("DROP TABLE IF EXISTS " + legacy);
+            if (this.mysql) {
+                stmt.execute("RENAME TABLE %s TO %s, %s TO %s".formatted(name, legacy, copy, name));
+            } else {
+                // H2 index names are global to the schema; free them for the new table
+                for (String index : table.legacyIndexes()) {
+                    stmt.execute("DROP INDEX IF EXISTS " + index);
+                }
+                stmt.execute(this.renameSql(name, legacy));
+                stmt.execute(this.renameSql(copy, name));
+            }
+            LOGGER.at(Level.INFO).log("Migrated %s to schema v%d (%d rows, %d ms); old table kept as %s", (Object)name, VERSION, copied, (System.nanoTime() - start) / 1000000L, (Object)legacy);
+        }
+    }
+
+    private long count(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table);){
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /**
+     * SQL expression converting a VARCHAR(36) UUID column to BINARY(16).
+     */
+    String uuidToBinary(String column) {
+        return this.mysql
+            ? "UNHEX(REPLACE(%s, '-', ''))".formatted(column)
+            : "CAST(CAST(%s AS UUID) AS BINARY(16))".formatted(column);
+    }
+
+    /**
+     * SQL expression converting a TIMESTAMP column to epoch millis, 0 for NULL.
+     */
+    String timestampToEpochMillis(String column) {
+        return this.mysql
+            ? "COALESCE(CAST(UNIX_TIMESTAMP(%s) AS SIGNED) * 1000, 0)".formatted(column)
+            : "COALESCE(CAST(EXTRACT(EPOCH FROM %s) AS BIGINT) * 1000, 0)".formatted(column);
+    }
+
+    /**
+     * SQL expression converting a transaction type name to its {@link TransactionType#getCode()}.
+     * Names this version does not know become {@link TransactionType#SET}, so every migrated
+     * row stays readable.
+     */
+    String typeNameToCode(String column) {
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        for (TransactionType type : TransactionType.values()) {
+            sql.append(" WHEN '").append(type.name()).append("' THEN ").append(type.getCode());
+        }
+        return sql.append(" ELSE ").append(TransactionType.SET.getCode()).append(" END").toString();
+    }
+
+    /**
+     * One table to bring to schema v2.
+     *
+     * @param table         Fully prefixed table name
+     * @param probeColumn   UUID column whose type tells whether the table is still v1
+     * @param createSql     CREATE TABLE statement for the v2 layout, with %s for the table name
+     * @param columns       Target column list of the copy
+     * @param select        Select list converting the v1 columns, in the order of {@code columns}
+     * @param legacyIndexes H2 index names owned by the v1 table
+     */
+    record TableMigration(String table, String probeColumn, String createSql, String columns, String select, List<String> legacyIndexes) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.ecotale.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Minimal JDBC connection pool shared by the SQL providers.
+ *
+ * - At most {@code size} connections are handed out at once; callers wait up to
+ *   {@code borrowTimeoutMs} for a free one
+ * - Idle connections are reused most-recently-used first; one that sat idle for more
+ *   than a second is validated on borrow, dead ones are closed and replaced transparently
+ * - Connections are opened lazily through the {@link ConnectionFactory}; after a failed
+ *   open, further attempts fail fast until an exponential backoff (250 ms .. 30 s) expires,
+ *   so an unreachable server is not hammered by every caller
+ *
+ * Usage: {@code try (ConnectionPool.Lease lease = pool.borrow()) { lease.connection()... }}
+ */
+final class ConnectionPool {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-Pool");
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    private static final long MIN_RECONNECT_BACKOFF_MS = 250L;
+    private static final long MAX_RECONNECT_BACKOFF_MS = 30000L;
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final int size;
+    private final long borrowTimeoutMs;
+    private final int validationTimeoutSeconds;
+    private volatile boolean closed = false;
+    private int openFailures = 0;
+    private long retryAtNanos = 0L;
+
+    /**
+     * @param name                     Pool name for log messages
+     * @param factory                  Opens a new physical connection
+     * @param size                     Max connections handed out at once
+     * @param borrowTimeoutMs          Max wait for a free connection
+     * @param validationTimeoutSeconds Timeout for {@link Connection#isValid(int)} on borrow
+     */
+    ConnectionPool(String name, ConnectionFactory factory, int size, long borrowTimeoutMs, int validationTimeoutSeconds) {
+        this.name = name;
+        this.factory = factory;
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * Open one connection up front so configuration errors surface at startup.
+     */
+    void warmUp() throws SQLException {
+        try (Lease lease = this.borrow();) {
+            lease.connection();
+        }
+    }
+
+    Lease borrow() throws SQLException {
+        if (this.closed) {
+            throw new SQLException(this.name + " pool is closed");
+        }
+        try {
+            if (!this.permits.tryAcquire(this.borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException(this.name + " pool exhausted (" + this.size + " connections busy)");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a " + this.name + " connection", e);
+        }
+        try {
+            Idle candidate;
+            while ((candidate = this.idle.pollFirst()) != null) {
+                if (this.isUsable(candidate)) {
+                    return new Lease(candidate.connection());
+                }
+                LOGGER.at(Level.FINE).log("Discarding dead %s connection", (Object)this.name);
+                closeQuietly(candidate.connection());
+            }
+            return new Lease(this.open());
+        }
+        catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized Connection open() throws SQLException {
+        long now = System.nanoTime();
+        if (this.openFailures > 0 && now - this.retryAtNanos < 0L) {
+            throw new SQLTransientConnectionException(this.name + " is unreachable, next reconnect attempt in "
+                + TimeUnit.NANOSECONDS.toMillis(this.retryAtNanos - now) + " ms", "08001");
+        }
+        try {
+            Connection connection = this.factory.open();
+            if (this.openFailures > 0) {
+                LOGGER.at(Level.INFO).log("%s reconnected after %d failed attempts", (Object)this.name, this.openFailures);
+            }
+            this.openFailures = 0;
+            return connection;
+        }
+        catch (SQLException e) {
+            ++this.openFailures;
+            long backoffMs = Math.min(MAX_RECONNECT_BACKOFF_MS, MIN_RECONNECT_BACKOFF_MS << Math.min(this.openFailures - 1, 7));
+            this.retryAtNanos = now + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            LOGGER.at(Level.WARNING).log("%s connection failed (attempt %d, retry in %d ms): %s", (Object)this.name, this.openFailures, backoffMs, (Object)e.getMessage());
+            throw e;
+        }
+    }
+
+    private boolean isUsable(Idle candidate) {
+        Connection connection = candidate.connection();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            // A connection returned moments ago is almost certainly fine; skip the round trip
+            return System.nanoTime() - candidate.releasedNanos() < VALIDATE_AFTER_IDLE_NANOS
+                || connection.isValid(this.validationTimeoutSeconds);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (broken || this.closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            // Never hand out a connection with a half-finished transaction
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            this.idle.offerFirst(new Idle(connection, System.nanoTime()));
+        }
+        catch (SQLException e) {
+            closeQuietly(connection);
+        }
+        finally {
+            this.permits.release();
+        }
+    }
+
+    int getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return Connections currently handed out
+     */
+    int getActive() {
+        return this.size - this.permits.availablePermits();
+    }
+
+    int getIdle() {
+        return this.idle.size();
+    }
+
+    /**
+     * Close all idle connections; leased ones are closed when they are returned.
+     */
+    void close() {
+        this.closed = true;
+        Idle candidate;
+        while ((candidate = this.idle.pollFirst()) != null) {
+            closeQuietly(candidate.connection());
+        }
+    }
+
+    /**
+     * Whether the error means the connection itself is gone (network failure, server
+     * restart, wait_timeout) rather than a problem with the statement.
+     */
+    static boolean isConnectionError(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        }
+        catch (SQLException sQLException) {
+            // empty catch block
+        }
+    }
+
+    private record Idle(Connection connection, long releasedNanos) {
+    }
+
+    @FunctionalInterface
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * A borrowed connection; closing the lease returns it to the pool.
+     */
+    final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private boolean broken = false;
+        private boolean released = false;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return this.connection;
+        }
+
+        /**
+         * Close the connection instead of returning it, e.g. after a network error.
+         */
+        void markBroken() {
+            this.broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            ConnectionPool.this.release(this.connection, this.broken);
+        }
+    }
+}
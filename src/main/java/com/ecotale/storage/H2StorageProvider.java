@@ -2,6 +2,9 @@ package com.ecotale.storage;
 
 import com.ecotale.Main;
 import com.ecotale.config.EcotaleConfig;
+import com.ecotale.economy.BalanceSnapshot;
+import com.ecotale.economy.Money;
+import com.ecotale.economy.Page;
 import com.ecotale.economy.PlayerBalance;
 import com.ecotale.economy.TopBalanceEntry;
 import com.ecotale.economy.TransactionEntry;
@@ -9,6 +12,7 @@ import com.ecotale.economy.TransactionType;
 import com.ecotale.storage.StorageProvider;
 import com.hypixel.hytale.logger.HytaleLogger;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.Date;
@@ -20,15 +24,22 @@ import java.sql.Statement;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
 
@@ -37,14 +48,30 @@ implements StorageProvider {
     private static final String DB_NAME = "ecotale";
     private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-H2");
     private static final Path ECOTALE_PATH = Path.of("mods", "Ecotale_Ecotale");
+    private static final String BALANCES_DDL = "    CREATE TABLE IF NOT EXISTS %s (\n        uuid BINARY(16) PRIMARY KEY,\n        player_name VARCHAR(64),\n        name_lower VARCHAR(64) GENERATED ALWAYS AS (LOWER(player_name)),\n        balance BIGINT DEFAULT 0,\n        total_earned BIGINT DEFAULT 0,\n        total_spent BIGINT DEFAULT 0,\n        updated_at BIGINT DEFAULT 0\n    )\n";
+    private static final String TRANSACTIONS_DDL = "    CREATE TABLE IF NOT EXISTS %s (\n        id BIGINT AUTO_INCREMENT PRIMARY KEY,\n        timestamp BIGINT NOT NULL,\n        type_code SMALLINT NOT NULL,\n        source_uuid BINARY(16),\n        target_uuid BINARY(16),\n        player_name VARCHAR(64),\n        amount BIGINT\n    )\n";
+    private static final String SNAPSHOTS_DDL = "    CREATE TABLE IF NOT EXISTS %s (\n        snap_day DATE NOT NULL,\n        uuid BINARY(16) NOT NULL,\n        balance BIGINT DEFAULT 0,\n        PRIMARY KEY(snap_day, uuid)\n    )\n";
+    private static final String UPSERT_BALANCE_SQL = "    MERGE INTO balances (uuid, balance, total_earned, total_spent, updated_at)\n    KEY(uuid)\n    VALUES (?, ?, ?, ?, ?)\n";
+    /**
+     * Writer lane: every write runs here, in submission order, on {@link #connection}.
+     */
     private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
         Thread t = new Thread(r, "Ecotale-H2-IO");
         t.setDaemon(false);
         return t;
     });
+    /**
+     * Read lane: queries run on virtual threads with pooled connections, in parallel with writes.
+     */
+    private final ExecutorService readExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Ecotale-H2-Read-", 0).factory());
+    private ConnectionPool readPool;
+    private TransactionLogWriter transactionLog;
+    private TransactionArchiver archiver;
+    private final BalanceHistory balanceHistory = new BalanceHistory("balance_snapshots", "balances", "ecotale_meta", false);
+    private volatile boolean closing = false;
     private Connection connection;
     private String dbPath;
-    private int playerCount = 0;
+    private volatile int playerCount = 0;
 
     @Override
     public CompletableFuture<Void> initialize() {
@@ -62,8 +89,21 @@ implements StorageProvider {
                     LOGGER.at(Level.SEVERE).log("H2 Driver class not found: %s", (Object)e.getMessage());
                     throw new RuntimeException("H2 Driver not available", e);
                 }
-                this.connection = DriverManager.getConnection("jdbc:h2:" + this.dbPath + ";MODE=MySQL;AUTO_SERVER=FALSE;DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+                String url = "jdbc:h2:" + this.dbPath + ";MODE=MySQL;AUTO_SERVER=FALSE;DB_CLOSE_ON_EXIT=FALSE";
+                this.connection = DriverManager.getConnection(url, "sa", "");
                 this.createTables();
+                // Embedded H2 lets several connections in this JVM share the database (MVCC).
+                // Readers run lazily: without it embedded H2 materializes a whole result before the first row
+                String readUrl = url + ";LAZY_QUERY_EXECUTION=1";
+                this.readPool = new ConnectionPool("H2-read", () -> DriverManager.getConnection(readUrl, "sa", ""), ((EcotaleConfig)Main.CONFIG.get()).getH2ReadConnections(), 10000L, 2);
+                this.readPool.warmUp();
+                EcotaleConfig config = (EcotaleConfig)Main.CONFIG.get();
+                this.transactionLog = new TransactionLogWriter("H2", config.getTxLogQueueCapacity(), config.getTxLogBatchSize(), config.getTxLogFlushIntervalMs(),
+                    batch -> CompletableFuture.runAsync(() -> this.insertTransactionsSync(batch), this.executor).join());
+                if (config.getTxArchiveAfterDays() > 0) {
+                    this.archiver = new TransactionArchiver("H2", this::archiveTransactionsSync, config.getTxArchiveAfterDays(), config.getTxArchiveRetentionDays());
+                    this.archiver.start();
+                }
                 try (Statement stmt = this.connection.createStatement();
                      ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM balances");){
                     if (rs.next()) {
@@ -80,52 +120,85 @@ implements StorageProvider {
     }
 
     private void createTables() throws SQLException {
+        new CompactSchema(this.connection, "ecotale_meta", false).recoverInterruptedSwaps(List.of("balances", "transactions", "balance_snapshots"));
         try (Statement stmt = this.connection.createStatement();){
-            stmt.execute("    CREATE TABLE IF NOT EXISTS balances (\n        uuid VARCHAR(36) PRIMARY KEY,\n        player_name VARCHAR(64),\n        balance DOUBLE DEFAULT 0.0,\n        total_earned DOUBLE DEFAULT 0.0,\n        total_spent DOUBLE DEFAULT 0.0,\n        updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP\n    )\n");
+            stmt.execute(BALANCES_DDL.formatted("balances"));
             try {
                 stmt.execute("ALTER TABLE balances ADD COLUMN IF NOT EXISTS player_name VARCHAR(64)");
             }
             catch (SQLException sQLException) {
                 // empty catch block
             }
-            stmt.execute("    CREATE TABLE IF NOT EXISTS transactions (\n        id BIGINT AUTO_INCREMENT PRIMARY KEY,\n        timestamp BIGINT NOT NULL,\n        type VARCHAR(20) NOT NULL,\n        source_uuid VARCHAR(36),\n        target_uuid VARCHAR(36),\n        player_name VARCHAR(64),\n        amount DOUBLE,\n        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP\n    )\n");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tx_timestamp ON transactions(timestamp DESC)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tx_player ON transactions(player_name)");
-            stmt.execute("    CREATE TABLE IF NOT EXISTS balance_snapshots (\n        snap_day DATE NOT NULL,\n        uuid VARCHAR(36) NOT NULL,\n        balance DOUBLE DEFAULT 0.0,\n        PRIMARY KEY(snap_day, uuid)\n    )\n");
+            stmt.execute(TRANSACTIONS_DDL.formatted("transactions"));
+            stmt.execute(SNAPSHOTS_DDL.formatted("balance_snapshots"));
+            stmt.execute(TransactionArchive.ROLLUP_DDL.formatted("tx_rollup_hourly"));
+        }
+        new MoneySchema(this.connection, "ecotale_meta", false).ensureMinorUnits(List.of(
+            new MoneySchema.MoneyColumn("balances", "balance", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn("balances", "total_earned", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn("balances", "total_spent", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn("transactions", "amount", "BIGINT"),
+            new MoneySchema.MoneyColumn("balance_snapshots", "balance", "BIGINT DEFAULT 0")));
+        CompactSchema compact = new CompactSchema(this.connection, "ecotale_meta", false);
+        compact.ensureCompact(List.of(
+            new CompactSchema.TableMigration("balances", "uuid", BALANCES_DDL,
+                "uuid, player_name, balance, total_earned, total_spent, updated_at",
+                compact.uuidToBinary("uuid") + ", player_name, balance, total_earned, total_spent, " + compact.timestampToEpochMillis("updated_at"),
+                List.of()),
+            new CompactSchema.TableMigration("transactions", "source_uuid", TRANSACTIONS_DDL,
+                "id, timestamp, type_code, source_uuid, target_uuid, player_name, amount",
+                "id, timestamp, " + compact.typeNameToCode("type") + ", " + compact.uuidToBinary("source_uuid") + ", " + compact.uuidToBinary("target_uuid") + ", player_name, amount",
+                List.of("idx_tx_timestamp", "idx_tx_player")),
+            new CompactSchema.TableMigration("balance_snapshots", "uuid", SNAPSHOTS_DDL,
+                "snap_day, uuid, balance",
+                "snap_day, " + compact.uuidToBinary("uuid") + ", balance",
+                List.of("idx_snap_day"))));
+        try (Statement stmt = this.connection.createStatement();){
+            // Keyset pagination indexes; (timestamp, id) supersedes the old timestamp-only index
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_balance_uuid ON balances(balance DESC, uuid DESC)");
+            stmt.execute("DROP INDEX IF EXISTS idx_tx_timestamp");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tx_timestamp_id ON transactions(timestamp DESC, id DESC)");
+            // Player-scoped history: name prefix lookup, then per-UUID range scans
+            stmt.execute("ALTER TABLE balances ADD COLUMN IF NOT EXISTS name_lower VARCHAR(64) GENERATED ALWAYS AS (LOWER(player_name))");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_balance_name_lower ON balances(name_lower)");
+            stmt.execute("DROP INDEX IF EXISTS idx_tx_player");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tx_source ON transactions(source_uuid, timestamp DESC, id DESC)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tx_target ON transactions(target_uuid, timestamp DESC, id DESC)");
             stmt.execute("CREATE INDEX IF NOT EXISTS idx_snap_day ON balance_snapshots(snap_day)");
+            // As-of lookups for the delta snapshots
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_snap_uuid_day ON balance_snapshots(uuid, snap_day)");
         }
     }
 
     @Override
     public CompletableFuture<PlayerBalance> loadPlayer(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT balance, total_earned, total_spent FROM balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    UuidCodec.bind(ps, 1, playerUuid);
                     try (ResultSet rs = ps.executeQuery();){
                         if (rs.next()) {
-                            PlayerBalance pb = new PlayerBalance(playerUuid);
-                            pb.setBalance(rs.getDouble("balance"), "Loaded from DB");
-                            PlayerBalance playerBalance = pb;
-                            return playerBalance;
+                            return PlayerBalance.restore(playerUuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent"));
                         }
                     }
                 }
-                double startingBalance = ((EcotaleConfig)Main.CONFIG.get()).getStartingBalance();
-                PlayerBalance newBalance = new PlayerBalance(playerUuid);
-                newBalance.setBalance(startingBalance, "New account");
-                this.savePlayerSync(playerUuid, newBalance);
-                ++this.playerCount;
-                return newBalance;
+                return null;
             }
             catch (SQLException e) {
+                // Fail the load rather than hand out a starting-balance account that the next save would write over the real row
                 LOGGER.at(Level.SEVERE).log("Failed to load player %s: %s", (Object)playerUuid, (Object)e.getMessage());
-                PlayerBalance pb = new PlayerBalance(playerUuid);
-                pb.setBalance(((EcotaleConfig)Main.CONFIG.get()).getStartingBalance(), "Error fallback");
-                return pb;
+                throw new CompletionException(e);
             }
-        }, this.executor);
+        }, this.readExecutor).thenCompose(existing -> existing != null ? CompletableFuture.completedFuture(existing) : CompletableFuture.supplyAsync(() -> {
+            // New account: the insert goes through the writer lane
+            double startingBalance = ((EcotaleConfig)Main.CONFIG.get()).getStartingBalance();
+            PlayerBalance newBalance = new PlayerBalance(playerUuid);
+            newBalance.setBalance(startingBalance, "New account");
+            this.savePlayerSync(playerUuid, newBalance);
+            ++this.playerCount;
+            return newBalance;
+        }, this.executor));
     }
 
     @Override
@@ -135,12 +208,12 @@ implements StorageProvider {
 
     private void savePlayerSync(UUID playerUuid, PlayerBalance balance) {
         try {
-            String sql = "    MERGE INTO balances (uuid, balance, total_earned, total_spent, updated_at)\n    KEY(uuid)\n    VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)\n";
-            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                ps.setString(1, playerUuid.toString());
-                ps.setDouble(2, balance.getBalance());
-                ps.setDouble(3, balance.getTotalEarned());
-                ps.setDouble(4, balance.getTotalSpent());
+            try (PreparedStatement ps = this.connection.prepareStatement(UPSERT_BALANCE_SQL);){
+                UuidCodec.bind(ps, 1, playerUuid);
+                ps.setLong(2, balance.getBalanceMinor());
+                ps.setLong(3, balance.getTotalEarnedMinor());
+                ps.setLong(4, balance.getTotalSpentMinor());
+                ps.setLong(5, System.currentTimeMillis());
                 ps.executeUpdate();
             }
         }
@@ -157,14 +230,14 @@ implements StorageProvider {
                     String sql = "UPDATE balances SET player_name = ? WHERE uuid = ?";
                     try (PreparedStatement ps = this.connection.prepareStatement(sql);){
                         ps.setString(1, playerName);
-                        ps.setString(2, playerUuid.toString());
+                        UuidCodec.bind(ps, 2, playerUuid);
                         int updated = ps.executeUpdate();
                         if (updated != 0) break block14;
                         String insertSql = "    INSERT INTO balances (uuid, player_name, balance)\n    VALUES (?, ?, ?)\n";
                         try (PreparedStatement insertPs = this.connection.prepareStatement(insertSql);){
-                            insertPs.setString(1, playerUuid.toString());
+                            UuidCodec.bind(insertPs, 1, playerUuid);
                             insertPs.setString(2, playerName);
-                            insertPs.setDouble(3, ((EcotaleConfig)Main.CONFIG.get()).getStartingBalance());
+                            insertPs.setLong(3, Money.toMinor(((EcotaleConfig)Main.CONFIG.get()).getStartingBalance()));
                             insertPs.executeUpdate();
                         }
                     }
@@ -179,10 +252,10 @@ implements StorageProvider {
     @Override
     public CompletableFuture<String> getPlayerNameAsync(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT player_name FROM balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    UuidCodec.bind(ps, 1, playerUuid);
                     try (ResultSet rs = ps.executeQuery();){
                         if (!rs.next()) return null;
                         String string = rs.getString("player_name");
@@ -194,19 +267,18 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to get player name: %s", (Object)e.getMessage());
             }
             return null;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<UUID> getPlayerUuidByName(@Nonnull String playerName) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                String sql = "SELECT uuid FROM balances WHERE LOWER(player_name) = ? LIMIT 1";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = "SELECT uuid FROM balances WHERE name_lower = ? LIMIT 1";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
                     ps.setString(1, playerName.toLowerCase());
                     try (ResultSet rs = ps.executeQuery();){
                         if (!rs.next()) return null;
-                        UUID uUID = UUID.fromString(rs.getString("uuid"));
-                        return uUID;
+                        return UuidCodec.read(rs, "uuid");
                     }
                 }
             }
@@ -214,20 +286,19 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to get UUID by name: %s", (Object)e.getMessage());
             }
             return null;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public Map<UUID, String> getAllPlayerNamesSync() {
         HashMap<UUID, String> result = new HashMap<UUID, String>();
-        try {
+        try (ConnectionPool.Lease lease = this.readPool.borrow();){
             String sql = "SELECT uuid, player_name FROM balances WHERE player_name IS NOT NULL";
-            try (PreparedStatement ps = this.connection.prepareStatement(sql);
+            try (PreparedStatement ps = lease.connection().prepareStatement(sql);
                  ResultSet rs = ps.executeQuery();){
                 while (rs.next()) {
-                    String uuidStr = rs.getString("uuid");
                     String name = rs.getString("player_name");
                     if (name == null || name.isBlank()) continue;
-                    result.put(UUID.fromString(uuidStr), name);
+                    result.put(UuidCodec.read(rs, "uuid"), name);
                 }
             }
         }
@@ -238,18 +309,43 @@ implements StorageProvider {
     }
 
     public CompletableFuture<List<PlayerBalance>> getTopBalances(int limit) {
+        return this.getTopBalancesPage(null, limit).thenApply(Page::items);
+    }
+
+    /**
+     * Accounts in leaderboard order, {@code balance DESC, uuid DESC}, through the
+     * {@code idx_balance_uuid} index; see {@link #queryTopBalancesPageAsync(String, int)}.
+     *
+     * @param pageToken Token from the previous page, null for the first page
+     * @throws IllegalArgumentException If the token is not a leaderboard token
+     */
+    @Override
+    public CompletableFuture<Page<PlayerBalance>> getTopBalancesPage(String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.BALANCE);
         return CompletableFuture.supplyAsync(() -> {
             ArrayList<PlayerBalance> result = new ArrayList<PlayerBalance>();
-            try {
-                String sql = "SELECT uuid, balance, total_earned, total_spent FROM balances ORDER BY balance DESC LIMIT ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setInt(1, limit);
+            String nextToken = null;
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = after == null
+                    ? "SELECT uuid, balance, total_earned, total_spent FROM balances ORDER BY balance DESC, uuid DESC LIMIT ?"
+                    : "SELECT uuid, balance, total_earned, total_spent FROM balances WHERE balance <= ? AND (balance < ? OR uuid < ?) ORDER BY balance DESC, uuid DESC LIMIT ?";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    int paramIndex = 1;
+                    if (after != null) {
+                        ps.setLong(paramIndex++, after.primary());
+                        ps.setLong(paramIndex++, after.primary());
+                        UuidCodec.bind(ps, paramIndex++, after.uuid());
+                    }
+                    ps.setInt(paramIndex, limit + 1);
                     try (ResultSet rs = ps.executeQuery();){
                         while (rs.next()) {
-                            UUID uuid = UUID.fromString(rs.getString("uuid"));
-                            PlayerBalance pb = new PlayerBalance(uuid);
-                            pb.setBalance(rs.getDouble("balance"), "Top query");
-                            result.add(pb);
+                            if (result.size() == limit) {
+                                PlayerBalance last = result.get(limit - 1);
+                                nextToken = PageToken.encode(PageToken.BALANCE, last.getBalanceMinor(), 0L, last.getPlayerUuid());
+                                break;
+                            }
+                            UUID uuid = UuidCodec.read(rs, "uuid");
+                            result.add(PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent")));
                         }
                     }
                 }
@@ -257,22 +353,22 @@ implements StorageProvider {
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to query top balances: %s", (Object)e.getMessage());
             }
-            return result;
-        }, this.executor);
+            return new Page<PlayerBalance>(result, nextToken);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<List<TopBalanceEntry>> queryTopBalancesAsync(int limit, int offset) {
         return CompletableFuture.supplyAsync(() -> {
             ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
-            try {
-                String sql = "SELECT uuid, balance, player_name FROM balances ORDER BY balance DESC LIMIT ? OFFSET ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = "SELECT uuid, balance, player_name FROM balances ORDER BY balance DESC, uuid DESC LIMIT ? OFFSET ?";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
                     ps.setInt(1, limit);
                     ps.setInt(2, offset);
                     try (ResultSet rs = ps.executeQuery();){
                         while (rs.next()) {
-                            UUID uuid = UUID.fromString(rs.getString("uuid"));
-                            double balance = rs.getDouble("balance");
+                            UUID uuid = UuidCodec.read(rs, "uuid");
+                            double balance = Money.toDouble(rs.getLong("balance"));
                             String name = rs.getString("player_name");
                             result.add(new TopBalanceEntry(uuid, name, balance, 0.0));
                         }
@@ -283,24 +379,24 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to query top balances: %s", (Object)e.getMessage());
             }
             return result;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<List<TopBalanceEntry>> queryTopBalancesPeriodAsync(int limit, int offset, int daysAgo) {
         return CompletableFuture.supplyAsync(() -> {
             ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
-            try {
-                String sql = "    SELECT b.uuid, b.balance, b.player_name,\n           (b.balance - COALESCE(s.balance, 0)) AS trend\n    FROM balances b\n                        LEFT JOIN balance_snapshots s\n                            ON s.uuid = b.uuid AND s.snap_day = ?\n    ORDER BY trend DESC\n    LIMIT ? OFFSET ?\n";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = "    SELECT b.uuid, b.balance, b.player_name,\n           (b.balance - COALESCE(s.balance, 0)) AS trend\n    FROM balances b\n                        LEFT JOIN balance_snapshots s\n                            ON s.uuid = b.uuid AND s.snap_day = " + BalanceHistory.asOfDay("balance_snapshots", "?") + "\n    ORDER BY trend DESC\n    LIMIT ? OFFSET ?\n";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
                     ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(daysAgo)));
                     ps.setInt(2, limit);
                     ps.setInt(3, offset);
                     try (ResultSet rs = ps.executeQuery();){
                         while (rs.next()) {
-                            UUID uuid = UUID.fromString(rs.getString("uuid"));
-                            double balance = rs.getDouble("balance");
+                            UUID uuid = UuidCodec.read(rs, "uuid");
+                            double balance = Money.toDouble(rs.getLong("balance"));
                             String name = rs.getString("player_name");
-                            double trend = rs.getDouble("trend");
+                            double trend = Money.toDouble(rs.getLong("trend"));
                             result.add(new TopBalanceEntry(uuid, name, balance, trend));
                         }
                     }
@@ -310,33 +406,130 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to query period balances: %s", (Object)e.getMessage());
             }
             return result;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
-    public CompletableFuture<Void> snapshotTodayAsync() {
-        return this.snapshotForDateAsync(LocalDate.now());
+    /**
+     * Leaderboard page ordered by {@code balance DESC, uuid DESC}, served from the
+     * {@code idx_balance_uuid} index. Each page is an index range scan starting at the key
+     * in the token, so deep pages cost the same as the first.
+     *
+     * @param pageToken Token from the previous page, null for the first page
+     * @throws IllegalArgumentException If the token is not a leaderboard token
+     */
+    public CompletableFuture<Page<TopBalanceEntry>> queryTopBalancesPageAsync(String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.BALANCE);
+        return CompletableFuture.supplyAsync(() -> {
+            ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+            String nextToken = null;
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = after == null
+                    ? "SELECT uuid, balance, player_name FROM balances ORDER BY balance DESC, uuid DESC LIMIT ?"
+                    : "SELECT uuid, balance, player_name FROM balances WHERE balance <= ? AND (balance < ? OR uuid < ?) ORDER BY balance DESC, uuid DESC LIMIT ?";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    int paramIndex = 1;
+                    if (after != null) {
+                        ps.setLong(paramIndex++, after.primary());
+                        ps.setLong(paramIndex++, after.primary());
+                        UuidCodec.bind(ps, paramIndex++, after.uuid());
+                    }
+                    // One extra row tells whether a next page exists
+                    ps.setInt(paramIndex, limit + 1);
+                    try (ResultSet rs = ps.executeQuery();){
+                        long lastBalance = 0L;
+                        UUID lastUuid = null;
+                        while (rs.next()) {
+                            if (result.size() == limit) {
+                                nextToken = PageToken.encode(PageToken.BALANCE, lastBalance, 0L, lastUuid);
+                                break;
+                            }
+                            lastUuid = UuidCodec.read(rs, "uuid");
+                            lastBalance = rs.getLong("balance");
+                            result.add(new TopBalanceEntry(lastUuid, rs.getString("player_name"), Money.toDouble(lastBalance), 0.0));
+                        }
+                    }
+                }
+            }
+            catch (SQLException e) {
+                LOGGER.at(Level.WARNING).log("Failed to query top balances: %s", (Object)e.getMessage());
+            }
+            return new Page<TopBalanceEntry>(result, nextToken);
+        }, this.readExecutor);
     }
 
-    public CompletableFuture<Void> snapshotForDateAsync(@Nonnull LocalDate date) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                String sql = "    MERGE INTO balance_snapshots (snap_day, uuid, balance)\n    KEY(snap_day, uuid)\n    SELECT ?, uuid, balance FROM balances\n";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setDate(1, Date.valueOf(date));
-                    ps.executeUpdate();
+    /**
+     * Trend leaderboard page ordered by {@code trend DESC, uuid DESC}.
+     *
+     * The trend is computed per row, so this still evaluates the join, but the database
+     * only has to keep the top {@code limit + 1} rows past the token instead of sorting
+     * and discarding every earlier page.
+     *
+     * @param pageToken Token from the previous page of the same period, null for the first page
+     * @throws IllegalArgumentException If the token is not a trend token for {@code daysAgo}
+     */
+    public CompletableFuture<Page<TopBalanceEntry>> queryTopBalancesPeriodPageAsync(String pageToken, int limit, int daysAgo) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.TREND);
+        if (after != null && after.secondary() != daysAgo) {
+            throw new IllegalArgumentException("Page token is for a " + after.secondary() + " day period");
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+            String nextToken = null;
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = "    SELECT * FROM (\n        SELECT b.uuid, b.balance, b.player_name,\n               (b.balance - COALESCE(s.balance, 0)) AS trend\n        FROM balances b\n        LEFT JOIN balance_snapshots s\n            ON s.uuid = b.uuid AND s.snap_day = " + BalanceHistory.asOfDay("balance_snapshots", "?") + "\n    ) t\n"
+                    + (after == null ? "" : "    WHERE trend <= ? AND (trend < ? OR uuid < ?)\n")
+                    + "    ORDER BY trend DESC, uuid DESC\n    LIMIT ?\n";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    int paramIndex = 1;
+                    ps.setDate(paramIndex++, Date.valueOf(LocalDate.now().minusDays(daysAgo)));
+                    if (after != null) {
+                        ps.setLong(paramIndex++, after.primary());
+                        ps.setLong(paramIndex++, after.primary());
+                        UuidCodec.bind(ps, paramIndex++, after.uuid());
+                    }
+                    ps.setInt(paramIndex, limit + 1);
+                    try (ResultSet rs = ps.executeQuery();){
+                        long lastTrend = 0L;
+                        UUID lastUuid = null;
+                        while (rs.next()) {
+                            if (result.size() == limit) {
+                                nextToken = PageToken.encode(PageToken.TREND, lastTrend, daysAgo, lastUuid);
+                                break;
+                            }
+                            lastUuid = UuidCodec.read(rs, "uuid");
+                            lastTrend = rs.getLong("trend");
+                            result.add(new TopBalanceEntry(lastUuid, rs.getString("player_name"), Money.toDouble(rs.getLong("balance")), Money.toDouble(lastTrend)));
+                        }
+                    }
                 }
             }
             catch (SQLException e) {
-                LOGGER.at(Level.WARNING).log("Failed to snapshot balances: %s", (Object)e.getMessage());
+                LOGGER.at(Level.WARNING).log("Failed to query period balances: %s", (Object)e.getMessage());
+            }
+            return new Page<TopBalanceEntry>(result, nextToken);
+        }, this.readExecutor);
+    }
+
+    /**
+     * Record the accounts that changed since the last daily snapshot (see {@link BalanceHistory}).
+     */
+    @Override
+    public CompletableFuture<Integer> writeDailySnapshot(@Nonnull LocalDate day, @Nonnull Collection<BalanceSnapshot> changed) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.balanceHistory.write(this.connection, day, changed);
+            }
+            catch (SQLException e) {
+                throw new CompletionException(e);
             }
         }, this.executor);
     }
 
     public CompletableFuture<Integer> countPlayersAsync() {
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT COUNT(*) AS total FROM balances";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);
                      ResultSet rs = ps.executeQuery();){
                     if (!rs.next()) return 0;
                     Integer n = rs.getInt("total");
@@ -347,15 +540,20 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to count players: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<Integer> countPlayersWithBalanceGreaterAsync(double balance) {
+        return this.countPlayersWithBalanceGreaterMinorAsync(Money.toMinor(balance));
+    }
+
+    @Override
+    public CompletableFuture<Integer> countPlayersWithBalanceGreaterMinorAsync(long balanceMinor) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT COUNT(*) AS total FROM balances WHERE balance > ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setDouble(1, balance);
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    ps.setLong(1, balanceMinor);
                     try (ResultSet rs = ps.executeQuery();){
                         if (!rs.next()) return 0;
                         Integer n = rs.getInt("total");
@@ -367,7 +565,7 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to count balance rank: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Deprecated
@@ -386,13 +584,14 @@ implements StorageProvider {
         }
         try {
             this.connection.setAutoCommit(false);
-            String sql = "    MERGE INTO balances (uuid, balance, total_earned, total_spent, updated_at)\n    KEY(uuid)\n    VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)\n";
-            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+            long now = System.currentTimeMillis();
+            try (PreparedStatement ps = this.connection.prepareStatement(UPSERT_BALANCE_SQL);){
                 for (Map.Entry<UUID, PlayerBalance> entry : dirtyPlayers.entrySet()) {
-                    ps.setString(1, entry.getKey().toString());
-                    ps.setDouble(2, entry.getValue().getBalance());
-                    ps.setDouble(3, entry.getValue().getTotalEarned());
-                    ps.setDouble(4, entry.getValue().getTotalSpent());
+                    UuidCodec.bind(ps, 1, entry.getKey());
+                    ps.setLong(2, entry.getValue().getBalanceMinor());
+                    ps.setLong(3, entry.getValue().getTotalEarnedMinor());
+                    ps.setLong(4, entry.getValue().getTotalSpentMinor());
+                    ps.setLong(5, now);
                     ps.addBatch();
                 }
                 ps.executeBatch();
@@ -417,18 +616,83 @@ implements StorageProvider {
         }
     }
 
+    @Override
+    public CompletableFuture<Set<UUID>> saveSnapshots(@Nonnull List<BalanceSnapshot> snapshots) {
+        return CompletableFuture.supplyAsync(() -> this.saveSnapshotsSync(snapshots), this.executor);
+    }
+
+    /**
+     * Write snapshots in one batched transaction. If the batch fails it is rolled
+     * back and retried row by row, so only the rows that really fail are reported.
+     *
+     * @return UUIDs whose rows could not be written
+     */
+    public Set<UUID> saveSnapshotsSync(@Nonnull List<BalanceSnapshot> snapshots) {
+        HashSet<UUID> failed = new HashSet<UUID>();
+        if (snapshots.isEmpty()) {
+            return failed;
+        }
+        String sql = UPSERT_BALANCE_SQL;
+        try {
+            this.connection.setAutoCommit(false);
+            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+                for (BalanceSnapshot snapshot : snapshots) {
+                    this.bindSnapshot(ps, snapshot);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            this.connection.commit();
+            LOGGER.at(Level.INFO).log("Saved %d player balances to H2", snapshots.size());
+            return failed;
+        }
+        catch (SQLException e) {
+            try {
+                this.connection.rollback();
+            }
+            catch (SQLException sQLException) {
+                // empty catch block
+            }
+            LOGGER.at(Level.WARNING).log("Batch save failed, retrying row by row: %s", (Object)e.getMessage());
+        }
+        finally {
+            try {
+                this.connection.setAutoCommit(true);
+            }
+            catch (SQLException sQLException) {}
+        }
+        for (BalanceSnapshot snapshot : snapshots) {
+            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+                this.bindSnapshot(ps, snapshot);
+                ps.executeUpdate();
+            }
+            catch (SQLException e) {
+                failed.add(snapshot.uuid());
+                LOGGER.at(Level.SEVERE).log("Failed to save player %s: %s", (Object)snapshot.uuid(), (Object)e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    private void bindSnapshot(PreparedStatement ps, BalanceSnapshot snapshot) throws SQLException {
+        UuidCodec.bind(ps, 1, snapshot.uuid());
+        ps.setLong(2, snapshot.balanceMinor());
+        ps.setLong(3, snapshot.totalEarnedMinor());
+        ps.setLong(4, snapshot.totalSpentMinor());
+        ps.setLong(5, System.currentTimeMillis());
+    }
+
     @Override
     public CompletableFuture<Map<UUID, PlayerBalance>> loadAll() {
         return CompletableFuture.supplyAsync(() -> {
             HashMap<UUID, PlayerBalance> result = new HashMap<UUID, PlayerBalance>();
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT uuid, balance, total_earned, total_spent FROM balances";
-                try (Statement stmt = this.connection.createStatement();
+                try (Statement stmt = lease.connection().createStatement();
                      ResultSet rs = stmt.executeQuery(sql);){
                     while (rs.next()) {
-                        UUID uuid = UUID.fromString(rs.getString("uuid"));
-                        PlayerBalance pb = new PlayerBalance(uuid);
-                        pb.setBalance(rs.getDouble("balance"), "Bulk load");
+                        UUID uuid = UuidCodec.read(rs, "uuid");
+                        PlayerBalance pb = PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent"));
                         result.put(uuid, pb);
                     }
                 }
@@ -438,18 +702,90 @@ implements StorageProvider {
                 LOGGER.at(Level.SEVERE).log("Failed to load all balances: %s", (Object)e.getMessage());
             }
             return result;
-        }, this.executor);
+        }, this.readExecutor);
+    }
+
+    /**
+     * Stream all accounts for the preload. Read connections use lazy query execution, so rows
+     * are produced as the cursor advances instead of the whole table being held in memory.
+     */
+    @Override
+    public CompletableFuture<Integer> loadAllChunked(int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            int total = this.streamBalances(-1L, chunkSize, sink);
+            this.playerCount = total;
+            return total;
+        }, this.readExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> loadActiveChunked(long activeSinceMillis, int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return CompletableFuture.supplyAsync(() -> this.streamBalances(activeSinceMillis, chunkSize, sink), this.readExecutor);
+    }
+
+    /**
+     * @param activeSinceMillis Only rows with a later {@code updated_at}, or -1 for all rows
+     */
+    private int streamBalances(long activeSinceMillis, int chunkSize, Consumer<List<PlayerBalance>> sink) {
+        int total = 0;
+        try (ConnectionPool.Lease lease = this.readPool.borrow();){
+            String sql = "SELECT uuid, balance, total_earned, total_spent FROM balances" + (activeSinceMillis >= 0L ? " WHERE updated_at >= ?" : "");
+            try (PreparedStatement stmt = lease.connection().prepareStatement(sql);){
+                stmt.setFetchSize(chunkSize);
+                if (activeSinceMillis >= 0L) {
+                    stmt.setLong(1, activeSinceMillis);
+                }
+                try (ResultSet rs = stmt.executeQuery();){
+                    ArrayList<PlayerBalance> chunk = new ArrayList<PlayerBalance>(chunkSize);
+                    while (rs.next()) {
+                        UUID uuid = UuidCodec.read(rs, "uuid");
+                        chunk.add(PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent")));
+                        if (chunk.size() == chunkSize) {
+                            sink.accept(chunk);
+                            total += chunk.size();
+                            chunk = new ArrayList<PlayerBalance>(chunkSize);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        sink.accept(chunk);
+                        total += chunk.size();
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+        return total;
+    }
+
+    @Override
+    public CompletableFuture<StorageTotals> queryTotalsAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                String sql = "SELECT COUNT(*), COALESCE(SUM(balance), 0), COALESCE(SUM(total_earned), 0), COALESCE(SUM(total_spent), 0), COALESCE(MAX(balance), 0), COALESCE(MIN(balance), 0) FROM balances";
+                try (Statement stmt = lease.connection().createStatement();
+                     ResultSet rs = stmt.executeQuery(sql);){
+                    if (!rs.next()) return null;
+                    return new StorageTotals(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6));
+                }
+            }
+            catch (SQLException e) {
+                LOGGER.at(Level.WARNING).log("Failed to query economy totals: %s", (Object)e.getMessage());
+            }
+            return null;
+        }, this.readExecutor);
     }
 
     @Override
     public CompletableFuture<Boolean> playerExists(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
                 String sql = "SELECT 1 FROM balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
                     Boolean bl;
                     block14: {
-                        ps.setString(1, playerUuid.toString());
+                        UuidCodec.bind(ps, 1, playerUuid);
                         ResultSet rs = ps.executeQuery();
                         try {
                             bl = rs.next();
@@ -472,9 +808,10 @@ implements StorageProvider {
                 }
             }
             catch (SQLException e) {
-                return false;
+                // Not "missing": callers must not mistake an outage for an unknown player
+                throw new CompletionException(e);
             }
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Override
@@ -483,7 +820,7 @@ implements StorageProvider {
             try {
                 String sql = "DELETE FROM balances WHERE uuid = ?";
                 try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
+                    UuidCodec.bind(ps, 1, playerUuid);
                     int affected = ps.executeUpdate();
                     if (affected > 0) {
                         --this.playerCount;
@@ -497,35 +834,119 @@ implements StorageProvider {
     }
 
     public void logTransaction(TransactionEntry entry) {
-        this.executor.execute(() -> {
-            try {
-                String sql = "    INSERT INTO transactions (timestamp, type, source_uuid, target_uuid, player_name, amount)\n    VALUES (?, ?, ?, ?, ?, ?)\n";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+        this.logTransactions(List.of(entry));
+    }
+
+    /**
+     * Queue log entries; the {@link TransactionLogWriter} inserts them in batches on the writer lane.
+     */
+    public void logTransactions(List<TransactionEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (this.transactionLog == null) {
+            LOGGER.at(Level.WARNING).log("H2 not initialized, dropped %d transaction log entries", entries.size());
+            return;
+        }
+        this.transactionLog.appendAll(entries);
+    }
+
+    public TransactionLogWriter getTransactionLog() {
+        return this.transactionLog;
+    }
+
+    public TransactionArchiver getArchiver() {
+        return this.archiver;
+    }
+
+    /**
+     * Move transactions older than the cutoff out of the hot table, one day at a time.
+     * Each day is exported through the read pool, so writes keep flowing; only its rollup
+     * and delete run on the writer lane.
+     */
+    private TransactionArchiver.Result archiveTransactionsSync(long cutoffMillis, int retentionDays) throws SQLException, IOException {
+        long start = System.nanoTime();
+        TransactionArchive archive = new TransactionArchive("transactions", "tx_rollup_hourly", ECOTALE_PATH.resolve("archive"), false);
+        int days = 0;
+        long rows = 0L;
+        while (!this.closing) {
+            TransactionArchive.Export export;
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                long day = archive.oldestDueDay(lease.connection(), cutoffMillis);
+                if (day < 0L) break;
+                export = archive.export(lease.connection(), day, cutoffMillis);
+            }
+            if (export.rows() == 0L) break;
+            rows += CompletableFuture.supplyAsync(() -> {
+                try {
+                    return archive.commit(this.connection, export);
+                }
+                catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor).join();
+            ++days;
+        }
+        int filesDeleted = retentionDays > 0 ? archive.deleteFilesBefore(LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays)) : 0;
+        return new TransactionArchiver.Result(System.currentTimeMillis(), days, rows, filesDeleted, (System.nanoTime() - start) / 1000000L);
+    }
+
+    /**
+     * Insert one batch in one transaction. Runs on the writer thread.
+     */
+    private void insertTransactionsSync(List<TransactionEntry> entries) {
+        try {
+            this.connection.setAutoCommit(false);
+            String sql = "    INSERT INTO transactions (timestamp, type_code, source_uuid, target_uuid, player_name, amount)\n    VALUES (?, ?, ?, ?, ?, ?)\n";
+            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+                for (TransactionEntry entry : entries) {
                     ps.setLong(1, entry.timestamp().toEpochMilli());
-                    ps.setString(2, entry.type().name());
-                    ps.setString(3, entry.sourcePlayer() != null ? entry.sourcePlayer().toString() : null);
-                    ps.setString(4, entry.targetPlayer() != null ? entry.targetPlayer().toString() : null);
+                    ps.setInt(2, entry.type().getCode());
+                    UuidCodec.bind(ps, 3, entry.sourcePlayer());
+                    UuidCodec.bind(ps, 4, entry.targetPlayer());
                     ps.setString(5, entry.playerName());
-                    ps.setDouble(6, entry.amount());
-                    ps.executeUpdate();
-                    LOGGER.at(Level.INFO).log("Logged transaction to H2: %s %s %.0f", (Object)entry.type(), (Object)entry.playerName(), (Object)entry.amount());
+                    ps.setLong(6, entry.amountMinor());
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
-            catch (SQLException e) {
-                LOGGER.at(Level.WARNING).log("Failed to log transaction: %s", (Object)e.getMessage());
+            this.connection.commit();
+        }
+        catch (SQLException e) {
+            try {
+                this.connection.rollback();
+            }
+            catch (SQLException sQLException) {
+                // empty catch block
             }
-        });
+            throw new CompletionException(e);
+        }
+        finally {
+            try {
+                this.connection.setAutoCommit(true);
+            }
+            catch (SQLException sQLException) {}
+        }
     }
 
     public CompletableFuture<List<TransactionEntry>> queryTransactionsAsync(String playerFilter, int limit, int offset) {
         return CompletableFuture.supplyAsync(() -> {
             ArrayList<TransactionEntry> results = new ArrayList<TransactionEntry>();
-            try {
-                String sql = playerFilter != null && !playerFilter.isEmpty() ? "    SELECT * FROM transactions\n    WHERE LOWER(player_name) LIKE ?\n    ORDER BY timestamp DESC\n    LIMIT ? OFFSET ?\n" : "    SELECT * FROM transactions\n    ORDER BY timestamp DESC\n    LIMIT ? OFFSET ?\n";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                List<UUID> players = null;
+                if (playerFilter != null && !playerFilter.isEmpty()) {
+                    players = HistoryQuery.resolvePlayers(lease.connection(), "balances", playerFilter);
+                    if (players.isEmpty()) return results;
+                }
+                String sql = players != null ? "    SELECT * FROM transactions\n    WHERE " + HistoryQuery.whereInvolves(players.size()) + "\n    ORDER BY timestamp DESC\n    LIMIT ? OFFSET ?\n" : "    SELECT * FROM transactions\n    ORDER BY timestamp DESC\n    LIMIT ? OFFSET ?\n";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
                     int paramIndex = 1;
-                    if (playerFilter != null && !playerFilter.isEmpty()) {
-                        ps.setString(paramIndex++, "%" + playerFilter.toLowerCase() + "%");
+                    if (players != null) {
+                        for (int i = 0; i < 2; ++i) {
+                            for (UUID player : players) {
+                                UuidCodec.bind(ps, paramIndex++, player);
+                            }
+                        }
                     }
                     ps.setInt(paramIndex++, limit);
                     ps.setInt(paramIndex, offset);
@@ -540,7 +961,7 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to query transactions: %s", (Object)e.getMessage());
             }
             return results;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Deprecated
@@ -548,19 +969,82 @@ implements StorageProvider {
         return this.queryTransactionsAsync(playerFilter, limit, offset).join();
     }
 
+    /**
+     * Transaction log page ordered by {@code timestamp DESC, id DESC}, served from the
+     * {@code idx_tx_timestamp_id} index, or from the per-player indexes when filtered
+     * (see {@link HistoryQuery}).
+     *
+     * @param playerFilter Player UUID or case-insensitive name prefix, null or empty for all
+     * @param pageToken    Token from the previous page with the same filter, null for the first page
+     * @return The page; fails with {@link PlayerFilterTooBroadException} if the prefix
+     *         matches more than {@link HistoryQuery#MAX_PLAYERS} accounts
+     * @throws IllegalArgumentException If the token is not a transaction log token
+     */
+    public CompletableFuture<Page<TransactionEntry>> queryTransactionsPageAsync(String playerFilter, String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.LOG);
+        boolean filtered = playerFilter != null && !playerFilter.isEmpty();
+        return CompletableFuture.supplyAsync(() -> {
+            ArrayList<TransactionEntry> results = new ArrayList<TransactionEntry>();
+            String nextToken = null;
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                List<UUID> players = null;
+                if (filtered) {
+                    players = HistoryQuery.resolvePlayers(lease.connection(), "balances", playerFilter);
+                    if (players.isEmpty()) return Page.<TransactionEntry>empty();
+                }
+                String sql = players != null
+                    ? HistoryQuery.pageSql("transactions", players.size(), after != null)
+                    : "SELECT * FROM transactions" + (after != null ? " WHERE timestamp <= ? AND (timestamp < ? OR id < ?)" : "") + " ORDER BY timestamp DESC, id DESC LIMIT ?";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    if (players != null) {
+                        HistoryQuery.bindPage(ps, players, after, limit + 1);
+                    } else {
+                        int paramIndex = 1;
+                        if (after != null) {
+                            ps.setLong(paramIndex++, after.primary());
+                            ps.setLong(paramIndex++, after.primary());
+                            ps.setLong(paramIndex++, after.secondary());
+                        }
+                        ps.setInt(paramIndex, limit + 1);
+                    }
+                    try (ResultSet rs = ps.executeQuery();){
+                        long lastTimestamp = 0L;
+                        long lastId = 0L;
+                        while (rs.next()) {
+                            if (results.size() == limit) {
+                                nextToken = PageToken.encode(PageToken.LOG, lastTimestamp, lastId, null);
+                                break;
+                            }
+                            lastTimestamp = rs.getLong("timestamp");
+                            lastId = rs.getLong("id");
+                            results.add(this.resultSetToEntry(rs));
+                        }
+                    }
+                }
+            }
+            catch (SQLException e) {
+                LOGGER.at(Level.WARNING).log("Failed to query transactions: %s", (Object)e.getMessage());
+            }
+            return new Page<TransactionEntry>(results, nextToken);
+        }, this.readExecutor);
+    }
+
     public CompletableFuture<Integer> countTransactionsAsync(String playerFilter) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                String sql = playerFilter != null && !playerFilter.isEmpty() ? "SELECT COUNT(*) FROM transactions WHERE LOWER(player_name) LIKE ?" : "SELECT COUNT(*) FROM transactions";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    if (playerFilter != null && !playerFilter.isEmpty()) {
-                        ps.setString(1, "%" + playerFilter.toLowerCase() + "%");
+            try (ConnectionPool.Lease lease = this.readPool.borrow();){
+                List<UUID> players = null;
+                if (playerFilter != null && !playerFilter.isEmpty()) {
+                    players = HistoryQuery.resolvePlayers(lease.connection(), "balances", playerFilter);
+                    if (players.isEmpty()) return 0;
+                }
+                String sql = players != null ? HistoryQuery.countSql("transactions", players.size()) : "SELECT COUNT(*) FROM transactions";
+                try (PreparedStatement ps = lease.connection().prepareStatement(sql);){
+                    if (players != null) {
+                        HistoryQuery.bindCount(ps, players);
                     }
                     try (ResultSet rs = ps.executeQuery();){
                         if (!rs.next()) return 0;
-                        int count = rs.getInt(1);
-                        LOGGER.at(Level.INFO).log("H2 transaction count: %d (filter: %s)", count, (Object)playerFilter);
-                        Integer n = count;
+                        Integer n = rs.getInt(1);
                         return n;
                     }
                 }
@@ -569,7 +1053,7 @@ implements StorageProvider {
                 LOGGER.at(Level.WARNING).log("Failed to count transactions: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Deprecated
@@ -580,14 +1064,11 @@ implements StorageProvider {
     private TransactionEntry resultSetToEntry(ResultSet rs) throws SQLException {
         long timestampMs = rs.getLong("timestamp");
         Instant timestamp = Instant.ofEpochMilli(timestampMs);
-        String typeStr = rs.getString("type");
-        TransactionType type = TransactionType.valueOf(typeStr);
-        String sourceUuidStr = rs.getString("source_uuid");
-        UUID sourceUuid = sourceUuidStr != null ? UUID.fromString(sourceUuidStr) : null;
-        String targetUuidStr = rs.getString("target_uuid");
-        UUID targetUuid = targetUuidStr != null ? UUID.fromString(targetUuidStr) : null;
+        TransactionType type = TransactionType.fromCode(rs.getInt("type_code"));
+        UUID sourceUuid = UuidCodec.read(rs, "source_uuid");
+        UUID targetUuid = UuidCodec.read(rs, "target_uuid");
         String playerName = rs.getString("player_name");
-        double amount = rs.getDouble("amount");
+        long amount = rs.getLong("amount");
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
         String formattedTime = formatter.format(timestamp);
         return new TransactionEntry(timestamp, formattedTime, type, sourceUuid, targetUuid, amount, playerName);
@@ -595,8 +1076,28 @@ implements StorageProvider {
 
     @Override
     public CompletableFuture<Void> shutdown() {
+        this.closing = true;
+        if (this.archiver != null) {
+            // Stops after the day in progress, before the lanes below go away
+            this.archiver.shutdown();
+        }
+        if (this.transactionLog != null) {
+            // Queued log entries go through the writer lane, so drain them before it stops
+            this.transactionLog.close(5000L);
+        }
         this.executor.shutdown();
+        this.readExecutor.shutdown();
         LOGGER.at(Level.INFO).log("H2 shutdown: closing connection...");
+        try {
+            this.executor.awaitTermination(5L, TimeUnit.SECONDS);
+            this.readExecutor.awaitTermination(2L, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.readPool != null) {
+            this.readPool.close();
+        }
         try {
             if (this.connection != null && !this.connection.isClosed()) {
                 this.connection.close();
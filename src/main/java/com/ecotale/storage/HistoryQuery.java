@@ -0,0 +1,154 @@
+package com.ecotale.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Player-scoped transaction history shared by the SQL providers.
+ *
+ * A player filter is first resolved to account UUIDs. A UUID is used as is. Anything else
+ * is a case-insensitive name prefix, looked up in the indexed {@code balances.name_lower}
+ * column. History rows are then read per UUID through the
+ * {@code (source_uuid, timestamp, id)} and {@code (target_uuid, timestamp, id)} indexes.
+ * Each branch of the query is an index range scan that stops after one page, so the cost
+ * does not depend on the size of the table.
+ *
+ * A transfer between two matched players is found by two branches; UNION drops the duplicate.
+ *
+ * A prefix matching more than {@link #MAX_PLAYERS} accounts is rejected with
+ * {@link PlayerFilterTooBroadException} rather than silently searching only some of them.
+ */
+final class HistoryQuery {
+    /** Max accounts a name prefix expands to; keeps the UNION small. */
+    static final int MAX_PLAYERS = 16;
+    private static final String ORDER = " ORDER BY timestamp DESC, id DESC";
+    private static final String[] COLUMNS = {"source_uuid", "target_uuid"};
+
+    private HistoryQuery() {
+    }
+
+    /**
+     * @param balancesTable Fully prefixed balances table
+     * @param filter        Non-empty player filter: a UUID or a name prefix
+     * @return Matching accounts, at most {@link #MAX_PLAYERS}; empty if nobody matches
+     * @throws PlayerFilterTooBroadException If the prefix matches more than {@link #MAX_PLAYERS} accounts
+     */
+    static List<UUID> resolvePlayers(Connection connection, String balancesTable, String filter) throws SQLException {
+        UUID uuid = parseUuid(filter);
+        if (uuid != null) {
+            return List.of(uuid);
+        }
+        ArrayList<UUID> players = new ArrayList<UUID>();
+        String sql = "SELECT uuid FROM " + balancesTable + " WHERE name_lower LIKE ? ORDER BY name_lower LIMIT " + (MAX_PLAYERS + 1);
+        try (PreparedStatement ps = connection.prepareStatement(sql);){
+            ps.setString(1, prefixPattern(filter));
+            try (ResultSet rs = ps.executeQuery();){
+                while (rs.next()) {
+                    players.add(UuidCodec.read(rs, "uuid"));
+                }
+            }
+        }
+        if (players.size() > MAX_PLAYERS) {
+            throw new PlayerFilterTooBroadException(filter, MAX_PLAYERS);
+        }
+        return players;
+    }
+
+    /**
+     * One page of history for the given accounts, newest first.
+     *
+     * Parameters, bound by {@link #bindPage}: per account and column the UUID, the keyset
+     * (if {@code keyset}) and the branch limit; then the overall limit.
+     */
+    static String pageSql(String table, int players, boolean keyset) {
+        StringJoiner branches = new StringJoiner(" UNION ");
+        for (int i = 0; i < players; ++i) {
+            for (String column : COLUMNS) {
+                branches.add("(SELECT * FROM " + table + " WHERE " + column + " = ?"
+                    + (keyset ? " AND timestamp <= ? AND (timestamp < ? OR id < ?)" : "")
+                    + ORDER + " LIMIT ?)");
+            }
+        }
+        return "SELECT * FROM (" + branches + ") h" + ORDER + " LIMIT ?";
+    }
+
+    static void bindPage(PreparedStatement ps, List<UUID> players, PageToken.Key after, int fetch) throws SQLException {
+        int paramIndex = 1;
+        for (UUID player : players) {
+            for (int c = 0; c < COLUMNS.length; ++c) {
+                UuidCodec.bind(ps, paramIndex++, player);
+                if (after != null) {
+                    ps.setLong(paramIndex++, after.primary());
+                    ps.setLong(paramIndex++, after.primary());
+                    ps.setLong(paramIndex++, after.secondary());
+                }
+                ps.setInt(paramIndex++, fetch);
+            }
+        }
+        ps.setInt(paramIndex, fetch);
+    }
+
+    /**
+     * Number of history rows for the given accounts; reads only the two UUID indexes.
+     * Parameters: the account UUIDs, twice.
+     */
+    static String countSql(String table, int players) {
+        String in = "?" + ", ?".repeat(players - 1);
+        return "SELECT COUNT(*) FROM (SELECT id FROM " + table + " WHERE source_uuid IN (" + in + ")"
+            + " UNION SELECT id FROM " + table + " WHERE target_uuid IN (" + in + ")) c";
+    }
+
+    static void bindCount(PreparedStatement ps, List<UUID> players) throws SQLException {
+        int paramIndex = 1;
+        for (int c = 0; c < COLUMNS.length; ++c) {
+            for (UUID player : players) {
+                UuidCodec.bind(ps, paramIndex++, player);
+            }
+        }
+    }
+
+    /**
+     * Rows involving any of the accounts, for the offset queries kept for older callers.
+     * Parameters: the account UUIDs, twice.
+     */
+    static String whereInvolves(int players) {
+        String in = "?" + ", ?".repeat(players - 1);
+        return "(source_uuid IN (" + in + ") OR target_uuid IN (" + in + "))";
+    }
+
+    private static UUID parseUuid(String filter) {
+        if (filter.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(filter);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * LIKE pattern matching names that start with the filter; '\' is the default escape
+     * character in both H2 and MySQL.
+     */
+    private static String prefixPattern(String filter) {
+        String lower = filter.toLowerCase(Locale.ROOT);
+        StringBuilder pattern = new StringBuilder(lower.length() + 2);
+        for (int i = 0; i < lower.length(); ++i) {
+            char c = lower.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+}
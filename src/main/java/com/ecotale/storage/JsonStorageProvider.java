@@ -2,6 +2,7 @@ package com.ecotale.storage;
 
 import com.ecotale.Main;
 import com.ecotale.config.EcotaleConfig;
+import com.ecotale.economy.BalanceSnapshot;
 import com.ecotale.economy.BalanceStorage;
 import com.ecotale.economy.PlayerBalance;
 import com.ecotale.storage.StorageProvider;
@@ -15,11 +16,16 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
@@ -99,39 +105,60 @@ implements StorageProvider {
 
     @Override
     public CompletableFuture<Void> savePlayer(@Nonnull UUID playerUuid, @Nonnull PlayerBalance balance) {
-        return CompletableFuture.runAsync(() -> {
-            block7: {
-                Path playerFile = this.getPlayerFile(playerUuid);
-                Path backupFile = this.getBackupFile(playerUuid);
-                Path tempFile = this.getTempFile(playerUuid);
-                try {
-                    BsonUtil.writeSync((Path)tempFile, PlayerBalance.CODEC, balance, (HytaleLogger)this.logger);
-                    if (Files.exists(playerFile, new LinkOption[0])) {
-                        Files.move(playerFile, backupFile, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                    Files.move(tempFile, playerFile, StandardCopyOption.ATOMIC_MOVE);
-                }
-                catch (IOException e) {
-                    this.logger.at(Level.SEVERE).log("Failed to save %s: %s", (Object)playerUuid, (Object)e.getMessage());
-                    try {
-                        Files.deleteIfExists(tempFile);
-                    }
-                    catch (IOException iOException) {
-                        // empty catch block
-                    }
-                    if (Files.exists(playerFile, new LinkOption[0]) || !Files.exists(backupFile, new LinkOption[0])) break block7;
-                    try {
-                        Files.copy(backupFile, playerFile, StandardCopyOption.REPLACE_EXISTING);
-                        this.logger.at(Level.INFO).log("Restored %s from backup after save failure", (Object)playerUuid);
-                    }
-                    catch (IOException e2) {
-                        this.logger.at(Level.SEVERE).log("Could not restore backup for %s", (Object)playerUuid);
-                    }
-                }
+        return CompletableFuture.runAsync(() -> this.writePlayer(playerUuid, balance));
+    }
+
+    @Override
+    public CompletableFuture<Set<UUID>> saveSnapshots(@Nonnull List<BalanceSnapshot> snapshots) {
+        Set<UUID> failed = ConcurrentHashMap.newKeySet();
+        CompletableFuture[] futures = (CompletableFuture[])snapshots.stream().map(snapshot -> CompletableFuture.runAsync(() -> {
+            if (!this.writePlayer(snapshot.uuid(), snapshot.toPlayerBalance())) {
+                failed.add(snapshot.uuid());
             }
+        })).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenApply(v -> {
+            EcoLogger.debug("Saved %d player snapshots (%d failed)", snapshots.size() - failed.size(), failed.size());
+            return failed;
         });
     }
 
+    /**
+     * Write a player file via temp file + atomic move, keeping the previous file as backup.
+     *
+     * @return true if the new file is in place
+     */
+    private boolean writePlayer(UUID playerUuid, PlayerBalance balance) {
+        Path playerFile = this.getPlayerFile(playerUuid);
+        Path backupFile = this.getBackupFile(playerUuid);
+        Path tempFile = this.getTempFile(playerUuid);
+        try {
+            BsonUtil.writeSync((Path)tempFile, PlayerBalance.CODEC, balance, (HytaleLogger)this.logger);
+            if (Files.exists(playerFile, new LinkOption[0])) {
+                Files.move(playerFile, backupFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempFile, playerFile, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch (IOException e) {
+            this.logger.at(Level.SEVERE).log("Failed to save %s: %s", (Object)playerUuid, (Object)e.getMessage());
+            try {
+                Files.deleteIfExists(tempFile);
+            }
+            catch (IOException iOException) {
+                // empty catch block
+            }
+            if (Files.exists(playerFile, new LinkOption[0]) || !Files.exists(backupFile, new LinkOption[0])) return false;
+            try {
+                Files.copy(backupFile, playerFile, StandardCopyOption.REPLACE_EXISTING);
+                this.logger.at(Level.INFO).log("Restored %s from backup after save failure", (Object)playerUuid);
+            }
+            catch (IOException e2) {
+                this.logger.at(Level.SEVERE).log("Could not restore backup for %s", (Object)playerUuid);
+            }
+            return false;
+        }
+    }
+
     @Override
     public CompletableFuture<Void> saveAll(@Nonnull Map<UUID, PlayerBalance> dirtyPlayers) {
         if (dirtyPlayers.isEmpty()) {
@@ -168,6 +195,45 @@ implements StorageProvider {
         });
     }
 
+    /**
+     * Parse player files in parallel batches of {@code chunkSize} for the preload. Each batch
+     * is handed to the sink as soon as it is parsed.
+     */
+    @Override
+    public CompletableFuture<Integer> loadAllChunked(int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Path> paths;
+            try (Stream<Path> files = Files.list(PLAYERS_PATH);){
+                paths = files.filter(p -> p.toString().endsWith(".json")).toList();
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            ArrayList<CompletableFuture<Integer>> batches = new ArrayList<CompletableFuture<Integer>>();
+            for (int from = 0; from < paths.size(); from += chunkSize) {
+                List<Path> batch = paths.subList(from, Math.min(from + chunkSize, paths.size()));
+                batches.add(CompletableFuture.supplyAsync(() -> {
+                    ArrayList<PlayerBalance> chunk = new ArrayList<PlayerBalance>(batch.size());
+                    for (Path path : batch) {
+                        String filename = path.getFileName().toString();
+                        try {
+                            PlayerBalance balance = (PlayerBalance)RawJsonReader.readSync((Path)path, PlayerBalance.CODEC, (HytaleLogger)this.logger);
+                            if (balance != null && balance.getPlayerUuid() != null) {
+                                chunk.add(balance);
+                            }
+                        }
+                        catch (Exception e) {
+                            this.logger.at(Level.WARNING).log("Skipping invalid file: %s", (Object)filename);
+                        }
+                    }
+                    sink.accept(chunk);
+                    return chunk.size();
+                }));
+            }
+            return batches.stream().mapToInt(CompletableFuture::join).sum();
+        });
+    }
+
     @Override
     public CompletableFuture<Boolean> playerExists(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> Files.exists(this.getPlayerFile(playerUuid), new LinkOption[0]));
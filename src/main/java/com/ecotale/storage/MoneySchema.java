@@ -0,0 +1,155 @@
+package com.ecotale.storage;
+
+import com.ecotale.economy.Money;
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Schema helper shared by the SQL providers for fixed-point money columns.
+ *
+ * Responsibilities:
+ * - Convert legacy DOUBLE money columns to BIGINT minor units in place
+ * - Remember the minor-unit scale in a small key/value meta table
+ * - Rescale stored values when DecimalPlaces changes between restarts
+ *
+ * The DOUBLE to BIGINT conversion is done as UPDATE (scale values) followed by
+ * an ALTER (change type), which keeps existing indexes. A marker row recording the scale
+ * the column was converted at is written in the same transaction as the UPDATE, so a crash
+ * before the ALTER never scales twice. The marker stays until the final step, which brings
+ * every column from its own scale (its marker, or the stored scale) to the current one and
+ * records the new scale in a single transaction; a column converted in the same run as a
+ * DecimalPlaces change is therefore never rescaled on top of its conversion.
+ */
+final class MoneySchema {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-Schema");
+    private static final String SCALE_KEY = "money_scale";
+    private static final String MARKER_PREFIX = "minor_scaled:";
+
+    private final Connection connection;
+    private final SchemaMeta meta;
+    private final boolean mysql;
+
+    /**
+     * @param connection Open connection used for all schema work
+     * @param metaTable  Fully prefixed name of the meta table
+     * @param mysql      True for MySQL DDL dialect, false for H2
+     */
+    MoneySchema(Connection connection, String metaTable, boolean mysql) {
+        this.connection = connection;
+        this.meta = new SchemaMeta(connection, metaTable);
+        this.mysql = mysql;
+    }
+
+    /**
+     * Bring all given money columns to BIGINT at the current {@link Money#scale()}.
+     * Safe to call on every startup; does nothing once the schema is up to date.
+     */
+    void ensureMinorUnits(List<MoneyColumn> columns) throws SQLException {
+        this.meta.ensureTable();
+        for (MoneyColumn column : columns) {
+            if (!this.isIntegerColumn(column.table(), column.column())) {
+                this.convertColumn(column);
+            }
+        }
+        int scale = Money.scale();
+        String stored = this.meta.get(SCALE_KEY);
+        int storedScale = stored != null ? Integer.parseInt(stored.trim()) : scale;
+        LinkedHashMap<MoneyColumn, Integer> from = new LinkedHashMap<>();
+        boolean pending = stored == null || storedScale != scale;
+        for (MoneyColumn column : columns) {
+            String converted = this.meta.get(marker(column));
+            pending |= converted != null;
+            from.put(column, converted != null ? Integer.parseInt(converted.trim()) : storedScale);
+        }
+        if (pending) {
+            this.rescale(from, scale);
+        }
+    }
+
+    private void convertColumn(MoneyColumn column) throws SQLException {
+        String marker = marker(column);
+        if (this.meta.get(marker) == null) {
+            boolean autoCommit = this.connection.getAutoCommit();
+            this.connection.setAutoCommit(false);
+            try (Statement stmt = this.connection.createStatement();){
+                int rows = stmt.executeUpdate("UPDATE %s SET %s = ROUND(%s * %d, 0)".formatted(column.table(), column.column(), column.column(), Money.factor()));
+                this.meta.set(marker, Integer.toString(Money.scale()));
+                this.connection.commit();
+                LOGGER.at(Level.INFO).log("Scaled %d rows of %s.%s to minor units", rows, (Object)column.table(), (Object)column.column());
+            }
+            catch (SQLException e) {
+                this.connection.rollback();
+                throw e;
+            }
+            finally {
+                this.connection.setAutoCommit(autoCommit);
+            }
+        }
+        try (Statement stmt = this.connection.createStatement();){
+            if (this.mysql) {
+                stmt.execute("ALTER TABLE %s MODIFY COLUMN %s %s".formatted(column.table(), column.column(), column.definition()));
+            } else {
+                stmt.execute("ALTER TABLE %s ALTER COLUMN %s SET DATA TYPE BIGINT".formatted(column.table(), column.column()));
+            }
+        }
+    }
+
+    /**
+     * Rescale each column from its own scale to {@code to}, record {@code to} as the stored
+     * scale and clear the conversion markers, all in one transaction.
+     */
+    private void rescale(Map<MoneyColumn, Integer> from, int to) throws SQLException {
+        boolean autoCommit = this.connection.getAutoCommit();
+        this.connection.setAutoCommit(false);
+        try (Statement stmt = this.connection.createStatement();){
+            for (Map.Entry<MoneyColumn, Integer> entry : from.entrySet()) {
+                MoneyColumn column = entry.getKey();
+                int scale = entry.getValue();
+                if (scale == to) continue;
+                String expression = to > scale
+                    ? "%s * " + Money.pow10(to - scale)
+                    : "ROUND(CAST(%s AS DECIMAL(38, 6)) / " + Money.pow10(scale - to) + ", 0)";
+                stmt.executeUpdate("UPDATE %s SET %s = %s".formatted(column.table(), column.column(), expression.formatted(column.column())));
+                LOGGER.at(Level.INFO).log("Rescaled %s.%s from %d to %d decimal places", (Object)column.table(), (Object)column.column(), scale, to);
+            }
+            this.meta.set(SCALE_KEY, Integer.toString(to));
+            for (MoneyColumn column : from.keySet()) {
+                this.meta.delete(marker(column));
+            }
+            this.connection.commit();
+        }
+        catch (SQLException e) {
+            this.connection.rollback();
+            throw e;
+        }
+        finally {
+            this.connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String marker(MoneyColumn column) {
+        return MARKER_PREFIX + column.table() + "." + column.column();
+    }
+
+    private boolean isIntegerColumn(String table, String column) throws SQLException {
+        int type = SchemaMeta.columnType(this.connection, table, column);
+        return type == Types.BIGINT || type == Types.INTEGER;
+    }
+
+    /**
+     * A money column to keep in minor units.
+     *
+     * @param table      Fully prefixed table name
+     * @param column     Column name
+     * @param definition Full MySQL column definition used when changing the type
+     */
+    record MoneyColumn(String table, String column, String definition) {
+    }
+}
@@ -2,14 +2,19 @@ package com.ecotale.storage;
 
 import com.ecotale.Main;
 import com.ecotale.config.EcotaleConfig;
+import com.ecotale.economy.BalanceSnapshot;
+import com.ecotale.economy.Money;
+import com.ecotale.economy.Page;
 import com.ecotale.economy.PlayerBalance;
 import com.ecotale.economy.TopBalanceEntry;
 import com.ecotale.economy.TransactionEntry;
 import com.ecotale.economy.TransactionType;
 import com.ecotale.storage.StorageProvider;
 import com.hypixel.hytale.logger.HytaleLogger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,30 +23,62 @@ import java.sql.Statement;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
 
+/**
+ * MySQL storage for networks that share one database between servers.
+ *
+ * Two lanes, like the H2 provider:
+ * - Writes run in order on the single Ecotale-MySQL-IO thread over a one-connection pool
+ * - Reads run on virtual threads over a pool of {@code MysqlReadConnections}
+ *
+ * Both pools validate connections that sat idle and reconnect with backoff, so a network
+ * blip or a server-side wait_timeout costs one retried statement instead of the storage.
+ * Statements are prepared server-side and cached per connection by the driver.
+ */
 public class MySQLStorageProvider
 implements StorageProvider {
     private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-MySQL");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneId.systemDefault());
+    private static final long BORROW_TIMEOUT_MS = 10000L;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final Path ARCHIVE_PATH = Path.of("mods", "Ecotale_Ecotale", "archive");
+    private static final String BALANCES_DDL = "CREATE TABLE IF NOT EXISTS %s (\n    uuid BINARY(16) PRIMARY KEY,\n    player_name VARCHAR(64),\n    name_lower VARCHAR(64) GENERATED ALWAYS AS (LOWER(player_name)) STORED,\n    balance BIGINT DEFAULT 0,\n    total_earned BIGINT DEFAULT 0,\n    total_spent BIGINT DEFAULT 0,\n    updated_at BIGINT DEFAULT 0,\n    INDEX idx_name_lower (name_lower),\n    INDEX idx_balance_uuid (balance DESC, uuid DESC)\n)\n";
+    private static final String TRANSACTIONS_DDL = "CREATE TABLE IF NOT EXISTS %s (\n    id BIGINT AUTO_INCREMENT PRIMARY KEY,\n    timestamp BIGINT NOT NULL,\n    type_code SMALLINT NOT NULL,\n    source_uuid BINARY(16),\n    target_uuid BINARY(16),\n    player_name VARCHAR(64),\n    amount BIGINT,\n    INDEX idx_timestamp_id (timestamp DESC, id DESC),\n    INDEX idx_source (source_uuid, timestamp DESC, id DESC),\n    INDEX idx_target (target_uuid, timestamp DESC, id DESC)\n)\n";
+    private static final String SNAPSHOTS_DDL = "CREATE TABLE IF NOT EXISTS %s (\n    snap_day DATE NOT NULL,\n    uuid BINARY(16) NOT NULL,\n    balance BIGINT NOT NULL,\n    PRIMARY KEY (snap_day, uuid),\n    INDEX idx_uuid_day (uuid, snap_day)\n)\n";
     private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
         Thread t = new Thread(r, "Ecotale-MySQL-IO");
         t.setDaemon(false);
         return t;
     });
-    private Connection connection;
+    private final ExecutorService readExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Ecotale-MySQL-Read-", 0).factory());
+    private ConnectionPool writePool;
+    private ConnectionPool readPool;
+    private TransactionLogWriter transactionLog;
+    private TransactionArchiver archiver;
+    private BalanceHistory balanceHistory;
+    private volatile boolean closing = false;
     private String tablePrefix;
-    private int playerCount = 0;
+    private String upsertBalanceSql;
+    private final AtomicInteger playerCount = new AtomicInteger();
 
     @Override
     public CompletableFuture<Void> initialize() {
@@ -49,23 +86,41 @@ implements StorageProvider {
             try {
                 EcotaleConfig config = (EcotaleConfig)Main.CONFIG.get();
                 this.tablePrefix = config.getMysqlTablePrefix();
+                this.balanceHistory = new BalanceHistory(this.tablePrefix + "balance_snapshots", this.tablePrefix + "balances", this.tablePrefix + "meta", true);
+                this.upsertBalanceSql = "INSERT INTO %sbalances (uuid, balance, total_earned, total_spent, updated_at)\nVALUES (?, ?, ?, ?, ?)\nON DUPLICATE KEY UPDATE\n    balance = VALUES(balance),\n    total_earned = VALUES(total_earned),\n    total_spent = VALUES(total_spent),\n    updated_at = VALUES(updated_at)\n".formatted(this.tablePrefix);
                 String host = config.getMysqlHost();
                 int port = config.getMysqlPort();
                 String database = config.getMysqlDatabase();
                 String username = config.getMysqlUsername();
                 String password = config.getMysqlPassword();
-                String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true", host, port, database);
+                // Server-side prepared statements, cached per connection by the driver
+                String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true"
+                    + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=64&prepStmtCacheSqlLimit=2048"
+                    + "&rewriteBatchedStatements=true&tcpKeepAlive=true&connectTimeout=%d", host, port, database, config.getMysqlConnectTimeoutMs());
                 LOGGER.at(Level.INFO).log("Connecting to MySQL: %s:%d/%s", (Object)host, (Object)port, (Object)database);
                 Class.forName("com.mysql.cj.jdbc.Driver");
-                this.connection = DriverManager.getConnection(url, username, password);
-                this.createTables();
-                try (Statement stmt = this.connection.createStatement();
-                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + this.tablePrefix + "balances");){
-                    if (rs.next()) {
-                        this.playerCount = rs.getInt(1);
+                ConnectionPool.ConnectionFactory factory = () -> DriverManager.getConnection(url, username, password);
+                this.writePool = new ConnectionPool("MySQL-write", factory, 1, BORROW_TIMEOUT_MS, VALIDATION_TIMEOUT_SECONDS);
+                this.readPool = new ConnectionPool("MySQL-read", factory, config.getMysqlReadConnections(), BORROW_TIMEOUT_MS, VALIDATION_TIMEOUT_SECONDS);
+                this.writePool.warmUp();
+                this.readPool.warmUp();
+                this.withWriter(connection -> {
+                    this.createTables(connection);
+                    try (Statement stmt = connection.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + this.tablePrefix + "balances");){
+                        if (rs.next()) {
+                            this.playerCount.set(rs.getInt(1));
+                        }
                     }
+                    return null;
+                });
+                this.transactionLog = new TransactionLogWriter("MySQL", config.getTxLogQueueCapacity(), config.getTxLogBatchSize(), config.getTxLogFlushIntervalMs(),
+                    batch -> CompletableFuture.runAsync(() -> this.insertTransactionsSync(batch), this.executor).join());
+                if (config.getTxArchiveAfterDays() > 0) {
+                    this.archiver = new TransactionArchiver("MySQL", this::archiveTransactionsSync, config.getTxArchiveAfterDays(), config.getTxArchiveRetentionDays());
+                    this.archiver.start();
                 }
-                LOGGER.at(Level.INFO).log("MySQL connected successfully (%d players)", this.playerCount);
+                LOGGER.at(Level.INFO).log("MySQL connected successfully (%d players, %d read connections)", this.playerCount.get(), this.readPool.getSize());
             }
             catch (ClassNotFoundException e) {
                 LOGGER.at(Level.SEVERE).log("MySQL driver not found!");
@@ -78,40 +133,135 @@ implements StorageProvider {
         }, this.executor);
     }
 
-    private void createTables() throws SQLException {
-        try (Statement stmt = this.connection.createStatement();){
-            stmt.execute("CREATE TABLE IF NOT EXISTS %sbalances (\n    uuid VARCHAR(36) PRIMARY KEY,\n    player_name VARCHAR(64),\n    balance DOUBLE DEFAULT 0.0,\n    total_earned DOUBLE DEFAULT 0.0,\n    total_spent DOUBLE DEFAULT 0.0,\n    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,\n    INDEX idx_player_name (player_name),\n    INDEX idx_balance (balance DESC)\n)\n".formatted(this.tablePrefix));
-            stmt.execute("CREATE TABLE IF NOT EXISTS %stransactions (\n    id BIGINT AUTO_INCREMENT PRIMARY KEY,\n    timestamp BIGINT NOT NULL,\n    type VARCHAR(20) NOT NULL,\n    source_uuid VARCHAR(36),\n    target_uuid VARCHAR(36),\n    player_name VARCHAR(64),\n    amount DOUBLE,\n    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,\n    INDEX idx_timestamp (timestamp DESC),\n    INDEX idx_player (player_name)\n)\n".formatted(this.tablePrefix));
-            stmt.execute("CREATE TABLE IF NOT EXISTS %sbalance_snapshots (\n    id BIGINT AUTO_INCREMENT PRIMARY KEY,\n    snap_day DATE NOT NULL,\n    uuid VARCHAR(36) NOT NULL,\n    balance DOUBLE NOT NULL,\n    UNIQUE KEY uk_snap (snap_day, uuid),\n    INDEX idx_snap_day (snap_day)\n)\n".formatted(this.tablePrefix));
+    /**
+     * Run {@code work} on a pooled connection. If the connection turns out to be dead,
+     * it is dropped and the work is retried once on a fresh one.
+     *
+     * @param retry false for work that must not run twice if the first attempt's outcome is unknown
+     */
+    private <T> T withConnection(ConnectionPool pool, boolean retry, SqlWork<T> work) throws SQLException {
+        int attempt = 0;
+        while (true) {
+            try (ConnectionPool.Lease lease = pool.borrow();){
+                try {
+                    return work.apply(lease.connection());
+                }
+                catch (SQLException e) {
+                    if (!ConnectionPool.isConnectionError(e)) {
+                        throw e;
+                    }
+                    lease.markBroken();
+                    if (!retry || attempt++ > 0) {
+                        throw e;
+                    }
+                    LOGGER.at(Level.WARNING).log("MySQL connection lost (%s), retrying on a new connection", (Object)e.getMessage());
+                }
+            }
         }
     }
 
+    private <T> T withReader(SqlWork<T> work) throws SQLException {
+        return this.withConnection(this.readPool, true, work);
+    }
+
+    private <T> T withWriter(SqlWork<T> work) throws SQLException {
+        return this.withConnection(this.writePool, true, work);
+    }
+
+    private void createTables(Connection connection) throws SQLException {
+        new CompactSchema(connection, this.tablePrefix + "meta", true).recoverInterruptedSwaps(List.of(this.tablePrefix + "balances", this.tablePrefix + "transactions", this.tablePrefix + "balance_snapshots"));
+        try (Statement stmt = connection.createStatement();){
+            stmt.execute(BALANCES_DDL.formatted(this.tablePrefix + "balances"));
+            stmt.execute(TRANSACTIONS_DDL.formatted(this.tablePrefix + "transactions"));
+            stmt.execute(SNAPSHOTS_DDL.formatted(this.tablePrefix + "balance_snapshots"));
+            stmt.execute(TransactionArchive.ROLLUP_DDL.formatted(this.tablePrefix + "tx_rollup_hourly"));
+        }
+        new MoneySchema(connection, this.tablePrefix + "meta", true).ensureMinorUnits(List.of(
+            new MoneySchema.MoneyColumn(this.tablePrefix + "balances", "balance", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn(this.tablePrefix + "balances", "total_earned", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn(this.tablePrefix + "balances", "total_spent", "BIGINT DEFAULT 0"),
+            new MoneySchema.MoneyColumn(this.tablePrefix + "transactions", "amount", "BIGINT"),
+            new MoneySchema.MoneyColumn(this.tablePrefix + "balance_snapshots", "balance", "BIGINT NOT NULL")));
+        CompactSchema compact = new CompactSchema(connection, this.tablePrefix + "meta", true);
+        compact.ensureCompact(List.of(
+            new CompactSchema.TableMigration(this.tablePrefix + "balances", "uuid", BALANCES_DDL,
+                "uuid, player_name, balance, total_earned, total_spent, updated_at",
+                compact.uuidToBinary("uuid") + ", player_name, balance, total_earned, total_spent, " + compact.timestampToEpochMillis("updated_at"),
+                List.of()),
+            new CompactSchema.TableMigration(this.tablePrefix + "transactions", "source_uuid", TRANSACTIONS_DDL,
+                "id, timestamp, type_code, source_uuid, target_uuid, player_name, amount",
+                "id, timestamp, " + compact.typeNameToCode("type") + ", " + compact.uuidToBinary("source_uuid") + ", " + compact.uuidToBinary("target_uuid") + ", player_name, amount",
+                List.of()),
+            new CompactSchema.TableMigration(this.tablePrefix + "balance_snapshots", "uuid", SNAPSHOTS_DDL,
+                "snap_day, uuid, balance",
+                "snap_day, " + compact.uuidToBinary("uuid") + ", balance",
+                List.of())));
+        // Keyset pagination indexes for tables created before they were part of the DDL
+        this.ensureIndex(connection, "balances", "idx_balance_uuid", "balance DESC, uuid DESC");
+        this.ensureIndex(connection, "transactions", "idx_timestamp_id", "timestamp DESC, id DESC");
+        // Player-scoped history: name prefix lookup, then per-UUID range scans
+        if (!SchemaMeta.hasColumn(connection, this.tablePrefix + "balances", "name_lower")) {
+            try (Statement stmt = connection.createStatement();){
+                stmt.execute("ALTER TABLE " + this.tablePrefix + "balances ADD COLUMN name_lower VARCHAR(64) GENERATED ALWAYS AS (LOWER(player_name)) STORED");
+            }
+        }
+        this.ensureIndex(connection, "balances", "idx_name_lower", "name_lower");
+        this.ensureIndex(connection, "transactions", "idx_source", "source_uuid, timestamp DESC, id DESC");
+        this.ensureIndex(connection, "transactions", "idx_target", "target_uuid, timestamp DESC, id DESC");
+        this.ensureIndex(connection, "balance_snapshots", "idx_uuid_day", "uuid, snap_day");
+        this.dropIndex(connection, "transactions", "idx_player");
+    }
+
+    private void dropIndex(Connection connection, String table, String index) throws SQLException {
+        if (!SchemaMeta.hasIndex(connection, this.tablePrefix + table, index)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement();){
+            stmt.execute("DROP INDEX %s ON %s%s".formatted(index, this.tablePrefix, table));
+        }
+        LOGGER.at(Level.INFO).log("Dropped unused index %s on %s%s", (Object)index, (Object)this.tablePrefix, (Object)table);
+    }
+
+    private void ensureIndex(Connection connection, String table, String index, String columns) throws SQLException {
+        if (SchemaMeta.hasIndex(connection, this.tablePrefix + table, index)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement();){
+            stmt.execute("CREATE INDEX %s ON %s%s (%s)".formatted(index, this.tablePrefix, table, columns));
+        }
+        LOGGER.at(Level.INFO).log("Created index %s on %s%s", (Object)index, (Object)this.tablePrefix, (Object)table);
+    }
+
     @Override
     public CompletableFuture<PlayerBalance> loadPlayer(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "SELECT balance, total_earned, total_spent FROM " + this.tablePrefix + "balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
-                    try (ResultSet rs = ps.executeQuery();){
-                        if (rs.next()) {
-                            PlayerBalance pb = new PlayerBalance(playerUuid);
-                            pb.setBalance(rs.getDouble("balance"), "Loaded from MySQL");
-                            PlayerBalance playerBalance = pb;
-                            return playerBalance;
+                PlayerBalance existing = this.withReader(connection -> {
+                    String sql = "SELECT balance, total_earned, total_spent FROM " + this.tablePrefix + "balances WHERE uuid = ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        UuidCodec.bind(ps, 1, playerUuid);
+                        try (ResultSet rs = ps.executeQuery();){
+                            if (rs.next()) {
+                                return PlayerBalance.restore(playerUuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent"));
+                            }
                         }
                     }
+                    return null;
+                });
+                if (existing != null) {
+                    return existing;
                 }
                 PlayerBalance newBalance = new PlayerBalance(playerUuid);
                 newBalance.setBalance(((EcotaleConfig)Main.CONFIG.get()).getStartingBalance(), "Initial balance");
-                ++this.playerCount;
+                this.playerCount.incrementAndGet();
                 return newBalance;
             }
             catch (SQLException e) {
+                // Fail the load so callers retry once the database is back, instead of caching an empty account
                 LOGGER.at(Level.SEVERE).log("Failed to load player %s: %s", (Object)playerUuid, (Object)e.getMessage());
-                return new PlayerBalance(playerUuid);
+                throw new CompletionException(e);
             }
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Override
@@ -121,14 +271,16 @@ implements StorageProvider {
 
     private void savePlayerSync(UUID playerUuid, PlayerBalance balance) {
         try {
-            String sql = "INSERT INTO %sbalances (uuid, balance, total_earned, total_spent, updated_at)\nVALUES (?, ?, ?, ?, NOW())\nON DUPLICATE KEY UPDATE\n    balance = VALUES(balance),\n    total_earned = VALUES(total_earned),\n    total_spent = VALUES(total_spent),\n    updated_at = NOW()\n".formatted(this.tablePrefix);
-            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                ps.setString(1, playerUuid.toString());
-                ps.setDouble(2, balance.getBalance());
-                ps.setDouble(3, balance.getTotalEarned());
-                ps.setDouble(4, balance.getTotalSpent());
-                ps.executeUpdate();
-            }
+            this.withWriter(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(this.upsertBalanceSql);){
+                    UuidCodec.bind(ps, 1, playerUuid);
+                    ps.setLong(2, balance.getBalanceMinor());
+                    ps.setLong(3, balance.getTotalEarnedMinor());
+                    ps.setLong(4, balance.getTotalSpentMinor());
+                    ps.setLong(5, System.currentTimeMillis());
+                    return ps.executeUpdate();
+                }
+            });
         }
         catch (SQLException e) {
             LOGGER.at(Level.SEVERE).log("Failed to save player %s: %s", (Object)playerUuid, (Object)e.getMessage());
@@ -139,13 +291,15 @@ implements StorageProvider {
     public void updatePlayerName(@Nonnull UUID playerUuid, @Nonnull String playerName) {
         CompletableFuture.runAsync(() -> {
             try {
-                String sql = "INSERT INTO %sbalances (uuid, player_name, balance)\nVALUES (?, ?, ?)\nON DUPLICATE KEY UPDATE player_name = VALUES(player_name)\n".formatted(this.tablePrefix);
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
-                    ps.setString(2, playerName);
-                    ps.setDouble(3, ((EcotaleConfig)Main.CONFIG.get()).getStartingBalance());
-                    ps.executeUpdate();
-                }
+                this.withWriter(connection -> {
+                    String sql = "INSERT INTO %sbalances (uuid, player_name, balance)\nVALUES (?, ?, ?)\nON DUPLICATE KEY UPDATE player_name = VALUES(player_name)\n".formatted(this.tablePrefix);
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        UuidCodec.bind(ps, 1, playerUuid);
+                        ps.setString(2, playerName);
+                        ps.setLong(3, Money.toMinor(((EcotaleConfig)Main.CONFIG.get()).getStartingBalance()));
+                        return ps.executeUpdate();
+                    }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to update player name: %s", (Object)e.getMessage());
@@ -157,146 +311,286 @@ implements StorageProvider {
     public CompletableFuture<String> getPlayerNameAsync(@Nonnull UUID playerUuid) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "SELECT player_name FROM " + this.tablePrefix + "balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
-                    try (ResultSet rs = ps.executeQuery();){
-                        if (!rs.next()) return null;
-                        String string = rs.getString("player_name");
-                        return string;
+                return this.withReader(connection -> {
+                    String sql = "SELECT player_name FROM " + this.tablePrefix + "balances WHERE uuid = ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        UuidCodec.bind(ps, 1, playerUuid);
+                        try (ResultSet rs = ps.executeQuery();){
+                            return rs.next() ? rs.getString("player_name") : null;
+                        }
                     }
-                }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to get player name: %s", (Object)e.getMessage());
             }
             return null;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<UUID> getPlayerUuidByName(@Nonnull String playerName) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "SELECT uuid FROM " + this.tablePrefix + "balances WHERE LOWER(player_name) = LOWER(?)";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerName);
-                    try (ResultSet rs = ps.executeQuery();){
-                        if (!rs.next()) return null;
-                        UUID uUID = UUID.fromString(rs.getString("uuid"));
-                        return uUID;
+                return this.withReader(connection -> {
+                    String sql = "SELECT uuid FROM " + this.tablePrefix + "balances WHERE name_lower = LOWER(?)";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        ps.setString(1, playerName);
+                        try (ResultSet rs = ps.executeQuery();){
+                            return rs.next() ? UuidCodec.read(rs, "uuid") : null;
+                        }
                     }
-                }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to get UUID by name: %s", (Object)e.getMessage());
             }
             return null;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public Map<UUID, String> getAllPlayerNamesSync() {
-        HashMap<UUID, String> result = new HashMap<UUID, String>();
         try {
-            String sql = "SELECT uuid, player_name FROM " + this.tablePrefix + "balances WHERE player_name IS NOT NULL";
-            try (Statement stmt = this.connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql);){
-                while (rs.next()) {
-                    String name = rs.getString("player_name");
-                    if (name == null || name.isBlank()) continue;
-                    result.put(UUID.fromString(rs.getString("uuid")), name);
+            return this.withReader(connection -> {
+                HashMap<UUID, String> result = new HashMap<UUID, String>();
+                String sql = "SELECT uuid, player_name FROM " + this.tablePrefix + "balances WHERE player_name IS NOT NULL";
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql);){
+                    while (rs.next()) {
+                        String name = rs.getString("player_name");
+                        if (name == null || name.isBlank()) continue;
+                        result.put(UuidCodec.read(rs, "uuid"), name);
+                    }
                 }
-            }
+                return result;
+            });
         }
         catch (SQLException e) {
             LOGGER.at(Level.WARNING).log("Failed to get all player names: %s", (Object)e.getMessage());
         }
-        return result;
+        return new HashMap<UUID, String>();
     }
 
     public CompletableFuture<List<PlayerBalance>> getTopBalances(int limit) {
+        return this.getTopBalancesPage(null, limit).thenApply(Page::items);
+    }
+
+    /**
+     * Accounts in leaderboard order, {@code balance DESC, uuid DESC}, through the
+     * {@code idx_balance_uuid} index; see {@link #queryTopBalancesPageAsync(String, int)}.
+     *
+     * @param pageToken Token from the previous page, null for the first page
+     * @throws IllegalArgumentException If the token is not a leaderboard token
+     */
+    @Override
+    public CompletableFuture<Page<PlayerBalance>> getTopBalancesPage(String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.BALANCE);
         return CompletableFuture.supplyAsync(() -> {
-            ArrayList<PlayerBalance> result = new ArrayList<PlayerBalance>();
             try {
-                String sql = "SELECT uuid, balance FROM " + this.tablePrefix + "balances ORDER BY balance DESC LIMIT ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setInt(1, limit);
-                    try (ResultSet rs = ps.executeQuery();){
-                        while (rs.next()) {
-                            UUID uuid = UUID.fromString(rs.getString("uuid"));
-                            PlayerBalance pb = new PlayerBalance(uuid);
-                            pb.setBalance(rs.getDouble("balance"), "Top query");
-                            result.add(pb);
+                return this.withReader(connection -> {
+                    ArrayList<PlayerBalance> result = new ArrayList<PlayerBalance>();
+                    String nextToken = null;
+                    String sql = after == null
+                        ? "SELECT uuid, balance, total_earned, total_spent FROM " + this.tablePrefix + "balances ORDER BY balance DESC, uuid DESC LIMIT ?"
+                        : "SELECT uuid, balance, total_earned, total_spent FROM " + this.tablePrefix + "balances WHERE balance <= ? AND (balance < ? OR uuid < ?) ORDER BY balance DESC, uuid DESC LIMIT ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        int paramIndex = 1;
+                        if (after != null) {
+                            ps.setLong(paramIndex++, after.primary());
+                            ps.setLong(paramIndex++, after.primary());
+                            UuidCodec.bind(ps, paramIndex++, after.uuid());
+                        }
+                        ps.setInt(paramIndex, limit + 1);
+                        try (ResultSet rs = ps.executeQuery();){
+                            while (rs.next()) {
+                                if (result.size() == limit) {
+                                    PlayerBalance last = result.get(limit - 1);
+                                    nextToken = PageToken.encode(PageToken.BALANCE, last.getBalanceMinor(), 0L, last.getPlayerUuid());
+                                    break;
+                                }
+                                UUID uuid = UuidCodec.read(rs, "uuid");
+                                result.add(PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent")));
+                            }
                         }
                     }
-                }
+                    return new Page<PlayerBalance>(result, nextToken);
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to get top balances: %s", (Object)e.getMessage());
             }
-            return result;
-        }, this.executor);
+            return Page.<PlayerBalance>empty();
+        }, this.readExecutor);
     }
 
     public CompletableFuture<List<TopBalanceEntry>> queryTopBalancesAsync(int limit, int offset) {
         return CompletableFuture.supplyAsync(() -> {
-            ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
             try {
-                String sql = "SELECT uuid, player_name, balance FROM " + this.tablePrefix + "balances ORDER BY balance DESC LIMIT ? OFFSET ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setInt(1, limit);
-                    ps.setInt(2, offset);
-                    try (ResultSet rs = ps.executeQuery();){
-                        while (rs.next()) {
-                            result.add(new TopBalanceEntry(UUID.fromString(rs.getString("uuid")), rs.getString("player_name"), rs.getDouble("balance"), 0.0));
+                return this.withReader(connection -> {
+                    ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+                    String sql = "SELECT uuid, player_name, balance FROM " + this.tablePrefix + "balances ORDER BY balance DESC, uuid DESC LIMIT ? OFFSET ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        ps.setInt(1, limit);
+                        ps.setInt(2, offset);
+                        try (ResultSet rs = ps.executeQuery();){
+                            while (rs.next()) {
+                                result.add(new TopBalanceEntry(UuidCodec.read(rs, "uuid"), rs.getString("player_name"), Money.toDouble(rs.getLong("balance")), 0.0));
+                            }
                         }
                     }
-                }
+                    return result;
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to query top balances: %s", (Object)e.getMessage());
             }
-            return result;
-        }, this.executor);
+            return new ArrayList<TopBalanceEntry>();
+        }, this.readExecutor);
     }
 
     public CompletableFuture<List<TopBalanceEntry>> queryTopBalancesPeriodAsync(int limit, int offset, int daysAgo) {
         return CompletableFuture.supplyAsync(() -> {
-            ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
             try {
-                String sql = "SELECT b.uuid, b.player_name, b.balance,\n       COALESCE(b.balance - s.balance, 0) as trend\nFROM %sbalances b\nLEFT JOIN %sbalance_snapshots s ON b.uuid = s.uuid AND s.snap_day = DATE_SUB(CURDATE(), INTERVAL ? DAY)\nORDER BY trend DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix, this.tablePrefix);
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setInt(1, daysAgo);
-                    ps.setInt(2, limit);
-                    ps.setInt(3, offset);
-                    try (ResultSet rs = ps.executeQuery();){
-                        while (rs.next()) {
-                            result.add(new TopBalanceEntry(UUID.fromString(rs.getString("uuid")), rs.getString("player_name"), rs.getDouble("balance"), rs.getDouble("trend")));
+                return this.withReader(connection -> {
+                    ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+                    String sql = "SELECT b.uuid, b.player_name, b.balance,\n       COALESCE(b.balance - s.balance, 0) as trend\nFROM %sbalances b\nLEFT JOIN %sbalance_snapshots s ON b.uuid = s.uuid AND s.snap_day = %s\nORDER BY trend DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix, this.tablePrefix, BalanceHistory.asOfDay(this.tablePrefix + "balance_snapshots", "DATE_SUB(CURDATE(), INTERVAL ? DAY)"));
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        ps.setInt(1, daysAgo);
+                        ps.setInt(2, limit);
+                        ps.setInt(3, offset);
+                        try (ResultSet rs = ps.executeQuery();){
+                            while (rs.next()) {
+                                result.add(new TopBalanceEntry(UuidCodec.read(rs, "uuid"), rs.getString("player_name"), Money.toDouble(rs.getLong("balance")), Money.toDouble(rs.getLong("trend"))));
+                            }
                         }
                     }
-                }
+                    return result;
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to query period balances: %s", (Object)e.getMessage());
             }
-            return result;
-        }, this.executor);
+            return new ArrayList<TopBalanceEntry>();
+        }, this.readExecutor);
     }
 
-    public CompletableFuture<Void> snapshotTodayAsync() {
-        return this.snapshotForDateAsync(LocalDate.now());
+    /**
+     * Leaderboard page ordered by {@code balance DESC, uuid DESC}, served from the
+     * {@code idx_balance_uuid} index. Each page is an index range scan starting at the key
+     * in the token, so deep pages cost the same as the first.
+     *
+     * @param pageToken Token from the previous page, null for the first page
+     * @throws IllegalArgumentException If the token is not a leaderboard token
+     */
+    public CompletableFuture<Page<TopBalanceEntry>> queryTopBalancesPageAsync(String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.BALANCE);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.withReader(connection -> {
+                    ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+                    String nextToken = null;
+                    String sql = after == null
+                        ? "SELECT uuid, player_name, balance FROM " + this.tablePrefix + "balances ORDER BY balance DESC, uuid DESC LIMIT ?"
+                        : "SELECT uuid, player_name, balance FROM " + this.tablePrefix + "balances WHERE balance <= ? AND (balance < ? OR uuid < ?) ORDER BY balance DESC, uuid DESC LIMIT ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        int paramIndex = 1;
+                        if (after != null) {
+                            ps.setLong(paramIndex++, after.primary());
+                            ps.setLong(paramIndex++, after.primary());
+                            UuidCodec.bind(ps, paramIndex++, after.uuid());
+                        }
+                        // One extra row tells whether a next page exists
+                        ps.setInt(paramIndex, limit + 1);
+                        try (ResultSet rs = ps.executeQuery();){
+                            long lastBalance = 0L;
+                            UUID lastUuid = null;
+                            while (rs.next()) {
+                                if (result.size() == limit) {
+                                    nextToken = PageToken.encode(PageToken.BALANCE, lastBalance, 0L, lastUuid);
+                                    break;
+                                }
+                                lastUuid = UuidCodec.read(rs, "uuid");
+                                lastBalance = rs.getLong("balance");
+                                result.add(new TopBalanceEntry(lastUuid, rs.getString("player_name"), Money.toDouble(lastBalance), 0.0));
+                            }
+                        }
+                    }
+                    return new Page<TopBalanceEntry>(result, nextToken);
+                });
+            }
+            catch (SQLException e) {
+                LOGGER.at(Level.WARNING).log("Failed to query top balances: %s", (Object)e.getMessage());
+            }
+            return Page.<TopBalanceEntry>empty();
+        }, this.readExecutor);
     }
 
-    public CompletableFuture<Void> snapshotForDateAsync(@Nonnull LocalDate date) {
-        return CompletableFuture.runAsync(() -> {
+    /**
+     * Trend leaderboard page ordered by {@code trend DESC, uuid DESC}.
+     *
+     * The trend is computed per row, so this still evaluates the join, but MySQL only has
+     * to keep the top {@code limit + 1} rows past the token instead of sorting and
+     * discarding every earlier page.
+     *
+     * @param pageToken Token from the previous page of the same period, null for the first page
+     * @throws IllegalArgumentException If the token is not a trend token for {@code daysAgo}
+     */
+    public CompletableFuture<Page<TopBalanceEntry>> queryTopBalancesPeriodPageAsync(String pageToken, int limit, int daysAgo) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.TREND);
+        if (after != null && after.secondary() != daysAgo) {
+            throw new IllegalArgumentException("Page token is for a " + after.secondary() + " day period");
+        }
+        return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "INSERT INTO %sbalance_snapshots (snap_day, uuid, balance)\nSELECT ?, uuid, balance FROM %sbalances\nON DUPLICATE KEY UPDATE balance = VALUES(balance)\n".formatted(this.tablePrefix, this.tablePrefix);
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setDate(1, Date.valueOf(date));
-                    ps.executeUpdate();
-                }
+                return this.withReader(connection -> {
+                    ArrayList<TopBalanceEntry> result = new ArrayList<TopBalanceEntry>();
+                    String nextToken = null;
+                    String sql = "SELECT * FROM (\n    SELECT b.uuid, b.player_name, b.balance,\n           COALESCE(b.balance - s.balance, 0) as trend\n    FROM %sbalances b\n    LEFT JOIN %sbalance_snapshots s ON b.uuid = s.uuid AND s.snap_day = %s\n) t\n".formatted(this.tablePrefix, this.tablePrefix, BalanceHistory.asOfDay(this.tablePrefix + "balance_snapshots", "DATE_SUB(CURDATE(), INTERVAL ? DAY)"))
+                        + (after == null ? "" : "WHERE trend <= ? AND (trend < ? OR uuid < ?)\n")
+                        + "ORDER BY trend DESC, uuid DESC\nLIMIT ?\n";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        int paramIndex = 1;
+                        ps.setInt(paramIndex++, daysAgo);
+                        if (after != null) {
+                            ps.setLong(paramIndex++, after.primary());
+                            ps.setLong(paramIndex++, after.primary());
+                            UuidCodec.bind(ps, paramIndex++, after.uuid());
+                        }
+                        ps.setInt(paramIndex, limit + 1);
+                        try (ResultSet rs = ps.executeQuery();){
+                            long lastTrend = 0L;
+                            UUID lastUuid = null;
+                            while (rs.next()) {
+                                if (result.size() == limit) {
+                                    nextToken = PageToken.encode(PageToken.TREND, lastTrend, daysAgo, lastUuid);
+                                    break;
+                                }
+                                lastUuid = UuidCodec.read(rs, "uuid");
+                                lastTrend = rs.getLong("trend");
+                                result.add(new TopBalanceEntry(lastUuid, rs.getString("player_name"), Money.toDouble(rs.getLong("balance")), Money.toDouble(lastTrend)));
+                            }
+                        }
+                    }
+                    return new Page<TopBalanceEntry>(result, nextToken);
+                });
             }
             catch (SQLException e) {
-                LOGGER.at(Level.WARNING).log("Failed to snapshot balances: %s", (Object)e.getMessage());
+                LOGGER.at(Level.WARNING).log("Failed to query period balances: %s", (Object)e.getMessage());
+            }
+            return Page.<TopBalanceEntry>empty();
+        }, this.readExecutor);
+    }
+
+    /**
+     * Record the accounts that changed since the last daily snapshot (see {@link BalanceHistory}).
+     */
+    @Override
+    public CompletableFuture<Integer> writeDailySnapshot(@Nonnull LocalDate day, @Nonnull Collection<BalanceSnapshot> changed) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.withWriter(connection -> this.balanceHistory.write(connection, day, changed));
+            }
+            catch (SQLException e) {
+                throw new CompletionException(e);
             }
         }, this.executor);
     }
@@ -304,39 +598,44 @@ implements StorageProvider {
     public CompletableFuture<Integer> countPlayersAsync() {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "SELECT COUNT(*) AS total FROM " + this.tablePrefix + "balances";
-                try (Statement stmt = this.connection.createStatement();
-                     ResultSet rs = stmt.executeQuery(sql);){
-                    if (!rs.next()) return 0;
-                    Integer n = rs.getInt("total");
-                    return n;
-                }
+                return this.withReader(connection -> {
+                    String sql = "SELECT COUNT(*) AS total FROM " + this.tablePrefix + "balances";
+                    try (Statement stmt = connection.createStatement();
+                         ResultSet rs = stmt.executeQuery(sql);){
+                        return rs.next() ? rs.getInt("total") : 0;
+                    }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to count players: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     public CompletableFuture<Integer> countPlayersWithBalanceGreaterAsync(double balance) {
+        return this.countPlayersWithBalanceGreaterMinorAsync(Money.toMinor(balance));
+    }
+
+    @Override
+    public CompletableFuture<Integer> countPlayersWithBalanceGreaterMinorAsync(long balanceMinor) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = "SELECT COUNT(*) AS total FROM " + this.tablePrefix + "balances WHERE balance > ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setDouble(1, balance);
-                    try (ResultSet rs = ps.executeQuery();){
-                        if (!rs.next()) return 0;
-                        Integer n = rs.getInt("total");
-                        return n;
+                return this.withReader(connection -> {
+                    String sql = "SELECT COUNT(*) AS total FROM " + this.tablePrefix + "balances WHERE balance > ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        ps.setLong(1, balanceMinor);
+                        try (ResultSet rs = ps.executeQuery();){
+                            return rs.next() ? rs.getInt("total") : 0;
+                        }
                     }
-                }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to count balance rank: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     @Override
@@ -349,109 +648,230 @@ implements StorageProvider {
             return;
         }
         try {
-            this.connection.setAutoCommit(false);
-            String sql = "INSERT INTO %sbalances (uuid, balance, total_earned, total_spent, updated_at)\nVALUES (?, ?, ?, ?, NOW())\nON DUPLICATE KEY UPDATE\n    balance = VALUES(balance),\n    total_earned = VALUES(total_earned),\n    total_spent = VALUES(total_spent),\n    updated_at = NOW()\n".formatted(this.tablePrefix);
-            try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                for (Map.Entry<UUID, PlayerBalance> entry : dirtyPlayers.entrySet()) {
-                    ps.setString(1, entry.getKey().toString());
-                    ps.setDouble(2, entry.getValue().getBalance());
-                    ps.setDouble(3, entry.getValue().getTotalEarned());
-                    ps.setDouble(4, entry.getValue().getTotalSpent());
-                    ps.addBatch();
+            this.withWriter(connection -> {
+                connection.setAutoCommit(false);
+                long now = System.currentTimeMillis();
+                try (PreparedStatement ps = connection.prepareStatement(this.upsertBalanceSql);){
+                    for (Map.Entry<UUID, PlayerBalance> entry : dirtyPlayers.entrySet()) {
+                        UuidCodec.bind(ps, 1, entry.getKey());
+                        ps.setLong(2, entry.getValue().getBalanceMinor());
+                        ps.setLong(3, entry.getValue().getTotalEarnedMinor());
+                        ps.setLong(4, entry.getValue().getTotalSpentMinor());
+                        ps.setLong(5, now);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
                 }
-                ps.executeBatch();
-            }
-            this.connection.commit();
+                connection.commit();
+                connection.setAutoCommit(true);
+                return null;
+            });
             LOGGER.at(Level.INFO).log("Saved %d player balances to MySQL", dirtyPlayers.size());
         }
         catch (SQLException e) {
-            try {
-                this.connection.rollback();
-            }
-            catch (SQLException sQLException) {
-                // empty catch block
-            }
+            // The pool rolls back the unfinished transaction when the connection is returned
             LOGGER.at(Level.SEVERE).log("Failed to batch save: %s", (Object)e.getMessage());
         }
-        finally {
+    }
+
+    @Override
+    public CompletableFuture<Set<UUID>> saveSnapshots(@Nonnull List<BalanceSnapshot> snapshots) {
+        return CompletableFuture.supplyAsync(() -> this.saveSnapshotsSync(snapshots), this.executor);
+    }
+
+    /**
+     * Write snapshots in one batched transaction. If the batch fails it is rolled
+     * back and retried row by row, so only the rows that really fail are reported.
+     *
+     * @return UUIDs whose rows could not be written
+     */
+    public Set<UUID> saveSnapshotsSync(@Nonnull List<BalanceSnapshot> snapshots) {
+        HashSet<UUID> failed = new HashSet<UUID>();
+        if (snapshots.isEmpty()) {
+            return failed;
+        }
+        try {
+            this.withWriter(connection -> {
+                connection.setAutoCommit(false);
+                try (PreparedStatement ps = connection.prepareStatement(this.upsertBalanceSql);){
+                    for (BalanceSnapshot snapshot : snapshots) {
+                        this.bindSnapshot(ps, snapshot);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+                return null;
+            });
+            LOGGER.at(Level.INFO).log("Saved %d player balances to MySQL", snapshots.size());
+            return failed;
+        }
+        catch (SQLException e) {
+            LOGGER.at(Level.WARNING).log("Batch save failed, retrying row by row: %s", (Object)e.getMessage());
+        }
+        for (BalanceSnapshot snapshot : snapshots) {
             try {
-                this.connection.setAutoCommit(true);
+                this.withWriter(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(this.upsertBalanceSql);){
+                        this.bindSnapshot(ps, snapshot);
+                        return ps.executeUpdate();
+                    }
+                });
+            }
+            catch (SQLException e) {
+                failed.add(snapshot.uuid());
+                LOGGER.at(Level.SEVERE).log("Failed to save player %s: %s", (Object)snapshot.uuid(), (Object)e.getMessage());
             }
-            catch (SQLException sQLException) {}
         }
+        return failed;
+    }
+
+    private void bindSnapshot(PreparedStatement ps, BalanceSnapshot snapshot) throws SQLException {
+        UuidCodec.bind(ps, 1, snapshot.uuid());
+        ps.setLong(2, snapshot.balanceMinor());
+        ps.setLong(3, snapshot.totalEarnedMinor());
+        ps.setLong(4, snapshot.totalSpentMinor());
+        ps.setLong(5, System.currentTimeMillis());
     }
 
     @Override
     public CompletableFuture<Map<UUID, PlayerBalance>> loadAll() {
         return CompletableFuture.supplyAsync(() -> {
-            HashMap<UUID, PlayerBalance> result = new HashMap<UUID, PlayerBalance>();
             try {
-                String sql = "SELECT uuid, balance, total_earned, total_spent FROM " + this.tablePrefix + "balances";
-                try (Statement stmt = this.connection.createStatement();
-                     ResultSet rs = stmt.executeQuery(sql);){
-                    while (rs.next()) {
-                        UUID uuid = UUID.fromString(rs.getString("uuid"));
-                        PlayerBalance pb = new PlayerBalance(uuid);
-                        pb.setBalance(rs.getDouble("balance"), "Bulk load");
-                        result.put(uuid, pb);
+                Map<UUID, PlayerBalance> result = this.withReader(connection -> {
+                    HashMap<UUID, PlayerBalance> loaded = new HashMap<UUID, PlayerBalance>();
+                    String sql = "SELECT uuid, balance, total_earned, total_spent FROM " + this.tablePrefix + "balances";
+                    try (Statement stmt = connection.createStatement();
+                         ResultSet rs = stmt.executeQuery(sql);){
+                        while (rs.next()) {
+                            UUID uuid = UuidCodec.read(rs, "uuid");
+                            loaded.put(uuid, PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent")));
+                        }
                     }
-                }
-                this.playerCount = result.size();
+                    return loaded;
+                });
+                this.playerCount.set(result.size());
+                return result;
             }
             catch (SQLException e) {
                 LOGGER.at(Level.SEVERE).log("Failed to load all balances: %s", (Object)e.getMessage());
             }
-            return result;
-        }, this.executor);
+            return new HashMap<UUID, PlayerBalance>();
+        }, this.readExecutor);
     }
 
+    /**
+     * Stream all accounts for the preload. The result set is streamed row by row by the
+     * driver instead of being buffered whole, and handed over one chunk at a time.
+     * A retried read may deliver some accounts twice.
+     */
     @Override
-    public CompletableFuture<Boolean> playerExists(@Nonnull UUID playerUuid) {
+    public CompletableFuture<Integer> loadAllChunked(int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                String sql = "SELECT 1 FROM " + this.tablePrefix + "balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    Boolean bl;
-                    block14: {
-                        ps.setString(1, playerUuid.toString());
-                        ResultSet rs = ps.executeQuery();
-                        try {
-                            bl = rs.next();
-                            if (rs == null) break block14;
-                        }
-                        catch (Throwable t$) {
-                            if (rs != null) {
-                                try {
-                                    rs.close();
-                                }
-                                catch (Throwable x2) {
-                                    t$.addSuppressed(x2);
-                                }
+            int total = this.streamBalances(-1L, chunkSize, sink);
+            this.playerCount.set(total);
+            return total;
+        }, this.readExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> loadActiveChunked(long activeSinceMillis, int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return CompletableFuture.supplyAsync(() -> this.streamBalances(activeSinceMillis, chunkSize, sink), this.readExecutor);
+    }
+
+    /**
+     * @param activeSinceMillis Only rows with a later {@code updated_at}, or -1 for all rows
+     */
+    private int streamBalances(long activeSinceMillis, int chunkSize, Consumer<List<PlayerBalance>> sink) {
+        try {
+            return this.withReader(connection -> {
+                int delivered = 0;
+                String sql = "SELECT uuid, balance, total_earned, total_spent FROM " + this.tablePrefix + "balances" + (activeSinceMillis >= 0L ? " WHERE updated_at >= ?" : "");
+                try (PreparedStatement stmt = connection.prepareStatement(sql);){
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                    if (activeSinceMillis >= 0L) {
+                        stmt.setLong(1, activeSinceMillis);
+                    }
+                    try (ResultSet rs = stmt.executeQuery();){
+                        ArrayList<PlayerBalance> chunk = new ArrayList<PlayerBalance>(chunkSize);
+                        while (rs.next()) {
+                            UUID uuid = UuidCodec.read(rs, "uuid");
+                            chunk.add(PlayerBalance.restore(uuid, rs.getLong("balance"), rs.getLong("total_earned"), rs.getLong("total_spent")));
+                            if (chunk.size() == chunkSize) {
+                                sink.accept(chunk);
+                                delivered += chunk.size();
+                                chunk = new ArrayList<PlayerBalance>(chunkSize);
                             }
-                            throw t$;
                         }
-                        rs.close();
+                        if (!chunk.isEmpty()) {
+                            sink.accept(chunk);
+                            delivered += chunk.size();
+                        }
                     }
-                    return bl;
                 }
+                return delivered;
+            });
+        }
+        catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<StorageTotals> queryTotalsAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.withReader(connection -> {
+                    String sql = "SELECT COUNT(*), COALESCE(SUM(balance), 0), COALESCE(SUM(total_earned), 0), COALESCE(SUM(total_spent), 0), COALESCE(MAX(balance), 0), COALESCE(MIN(balance), 0) FROM " + this.tablePrefix + "balances";
+                    try (Statement stmt = connection.createStatement();
+                         ResultSet rs = stmt.executeQuery(sql);){
+                        if (!rs.next()) return null;
+                        return new StorageTotals(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6));
+                    }
+                });
             }
             catch (SQLException e) {
-                return false;
+                LOGGER.at(Level.WARNING).log("Failed to query economy totals: %s", (Object)e.getMessage());
             }
-        }, this.executor);
+            return null;
+        }, this.readExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> playerExists(@Nonnull UUID playerUuid) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.withReader(connection -> {
+                    String sql = "SELECT 1 FROM " + this.tablePrefix + "balances WHERE uuid = ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        UuidCodec.bind(ps, 1, playerUuid);
+                        try (ResultSet rs = ps.executeQuery();){
+                            return rs.next();
+                        }
+                    }
+                });
+            }
+            catch (SQLException e) {
+                // Not "missing": callers must not mistake an outage for an unknown player
+                throw new CompletionException(e);
+            }
+        }, this.readExecutor);
     }
 
     @Override
     public CompletableFuture<Void> deletePlayer(@Nonnull UUID playerUuid) {
         return CompletableFuture.runAsync(() -> {
             try {
-                String sql = "DELETE FROM " + this.tablePrefix + "balances WHERE uuid = ?";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setString(1, playerUuid.toString());
-                    int affected = ps.executeUpdate();
-                    if (affected > 0) {
-                        --this.playerCount;
+                int affected = this.withWriter(connection -> {
+                    String sql = "DELETE FROM " + this.tablePrefix + "balances WHERE uuid = ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        UuidCodec.bind(ps, 1, playerUuid);
+                        return ps.executeUpdate();
                     }
+                });
+                if (affected > 0) {
+                    this.playerCount.decrementAndGet();
                 }
             }
             catch (SQLException e) {
@@ -461,100 +881,279 @@ implements StorageProvider {
     }
 
     public void logTransaction(TransactionEntry entry) {
-        this.executor.execute(() -> {
+        this.logTransactions(List.of(entry));
+    }
+
+    /**
+     * Queue log entries; the {@link TransactionLogWriter} inserts them in batches on the writer lane.
+     */
+    public void logTransactions(List<TransactionEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (this.transactionLog == null) {
+            LOGGER.at(Level.WARNING).log("MySQL not initialized, dropped %d transaction log entries", entries.size());
+            return;
+        }
+        this.transactionLog.appendAll(entries);
+    }
+
+    public TransactionLogWriter getTransactionLog() {
+        return this.transactionLog;
+    }
+
+    public TransactionArchiver getArchiver() {
+        return this.archiver;
+    }
+
+    /**
+     * Move transactions older than the cutoff out of the hot table, one day at a time.
+     * Each day is exported through the read pool; its rollup and delete run on the writer lane.
+     *
+     * Several servers sharing the database may archive the same day. The rollup reads the
+     * rows that are still in the table inside the deleting transaction, so whichever server
+     * commits second finds nothing left to add.
+     */
+    private TransactionArchiver.Result archiveTransactionsSync(long cutoffMillis, int retentionDays) throws SQLException, IOException {
+        long start = System.nanoTime();
+        TransactionArchive archive = new TransactionArchive(this.tablePrefix + "transactions", this.tablePrefix + "tx_rollup_hourly", ARCHIVE_PATH, true);
+        int days = 0;
+        long rows = 0L;
+        while (!this.closing) {
+            TransactionArchive.Export export;
             try {
-                String sql = "INSERT INTO %stransactions (timestamp, type, source_uuid, target_uuid, player_name, amount)\nVALUES (?, ?, ?, ?, ?, ?)\n".formatted(this.tablePrefix);
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    ps.setLong(1, entry.timestamp().toEpochMilli());
-                    ps.setString(2, entry.type().name());
-                    ps.setString(3, entry.sourcePlayer() != null ? entry.sourcePlayer().toString() : null);
-                    ps.setString(4, entry.targetPlayer() != null ? entry.targetPlayer().toString() : null);
-                    ps.setString(5, entry.playerName());
-                    ps.setDouble(6, entry.amount());
-                    ps.executeUpdate();
-                }
+                export = this.withReader(connection -> {
+                    long day = archive.oldestDueDay(connection, cutoffMillis);
+                    if (day < 0L) {
+                        return null;
+                    }
+                    try {
+                        return archive.export(connection, day, cutoffMillis);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
             }
-            catch (SQLException e) {
-                LOGGER.at(Level.WARNING).log("Failed to log transaction: %s", (Object)e.getMessage());
+            catch (UncheckedIOException e) {
+                throw e.getCause();
             }
-        });
+            if (export == null || export.rows() == 0L) break;
+            rows += CompletableFuture.supplyAsync(() -> {
+                try {
+                    return this.withWriter(connection -> archive.commit(connection, export));
+                }
+                catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor).join();
+            ++days;
+        }
+        int filesDeleted = retentionDays > 0 ? archive.deleteFilesBefore(LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays)) : 0;
+        return new TransactionArchiver.Result(System.currentTimeMillis(), days, rows, filesDeleted, (System.nanoTime() - start) / 1000000L);
+    }
+
+    /**
+     * Insert one batch in one transaction; the driver rewrites the JDBC batch into
+     * multi-row INSERTs. Runs on the writer thread. Not retried after a lost
+     * connection: the commit may already have gone through.
+     */
+    private void insertTransactionsSync(List<TransactionEntry> entries) {
+        try {
+            this.withConnection(this.writePool, false, connection -> {
+                connection.setAutoCommit(false);
+                String sql = "INSERT INTO %stransactions (timestamp, type_code, source_uuid, target_uuid, player_name, amount)\nVALUES (?, ?, ?, ?, ?, ?)\n".formatted(this.tablePrefix);
+                try (PreparedStatement ps = connection.prepareStatement(sql);){
+                    for (TransactionEntry entry : entries) {
+                        ps.setLong(1, entry.timestamp().toEpochMilli());
+                        ps.setInt(2, entry.type().getCode());
+                        UuidCodec.bind(ps, 3, entry.sourcePlayer());
+                        UuidCodec.bind(ps, 4, entry.targetPlayer());
+                        ps.setString(5, entry.playerName());
+                        ps.setLong(6, entry.amountMinor());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+                return null;
+            });
+        }
+        catch (SQLException e) {
+            throw new CompletionException(e);
+        }
     }
 
     public CompletableFuture<List<TransactionEntry>> queryTransactionsAsync(String playerFilter, int limit, int offset) {
         return CompletableFuture.supplyAsync(() -> {
-            ArrayList<TransactionEntry> results = new ArrayList<TransactionEntry>();
             try {
-                String sql = playerFilter != null && !playerFilter.isEmpty() ? "SELECT * FROM %stransactions\nWHERE LOWER(player_name) LIKE ?\nORDER BY timestamp DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix) : "SELECT * FROM %stransactions\nORDER BY timestamp DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix);
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
-                    int paramIndex = 1;
+                return this.withReader(connection -> {
+                    ArrayList<TransactionEntry> results = new ArrayList<TransactionEntry>();
+                    List<UUID> players = null;
                     if (playerFilter != null && !playerFilter.isEmpty()) {
-                        ps.setString(paramIndex++, "%" + playerFilter.toLowerCase() + "%");
+                        players = HistoryQuery.resolvePlayers(connection, this.tablePrefix + "balances", playerFilter);
+                        if (players.isEmpty()) return results;
                     }
-                    ps.setInt(paramIndex++, limit);
-                    ps.setInt(paramIndex, offset);
-                    try (ResultSet rs = ps.executeQuery();){
-                        while (rs.next()) {
-                            results.add(this.resultSetToEntry(rs));
+                    String sql = players != null ? "SELECT * FROM %stransactions\nWHERE %s\nORDER BY timestamp DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix, HistoryQuery.whereInvolves(players.size())) : "SELECT * FROM %stransactions\nORDER BY timestamp DESC\nLIMIT ? OFFSET ?\n".formatted(this.tablePrefix);
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        int paramIndex = 1;
+                        if (players != null) {
+                            for (int i = 0; i < 2; ++i) {
+                                for (UUID player : players) {
+                                    UuidCodec.bind(ps, paramIndex++, player);
+                                }
+                            }
+                        }
+                        ps.setInt(paramIndex++, limit);
+                        ps.setInt(paramIndex, offset);
+                        try (ResultSet rs = ps.executeQuery();){
+                            while (rs.next()) {
+                                results.add(this.resultSetToEntry(rs));
+                            }
                         }
                     }
-                }
+                    return results;
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to query transactions: %s", (Object)e.getMessage());
             }
-            return results;
-        }, this.executor);
+            return new ArrayList<TransactionEntry>();
+        }, this.readExecutor);
+    }
+
+    /**
+     * Transaction log page ordered by {@code timestamp DESC, id DESC}, served from the
+     * {@code idx_timestamp_id} index, or from the per-player indexes when filtered
+     * (see {@link HistoryQuery}).
+     *
+     * @param playerFilter Player UUID or case-insensitive name prefix, null or empty for all
+     * @param pageToken    Token from the previous page with the same filter, null for the first page
+     * @return The page; fails with {@link PlayerFilterTooBroadException} if the prefix
+     *         matches more than {@link HistoryQuery#MAX_PLAYERS} accounts
+     * @throws IllegalArgumentException If the token is not a transaction log token
+     */
+    public CompletableFuture<Page<TransactionEntry>> queryTransactionsPageAsync(String playerFilter, String pageToken, int limit) {
+        PageToken.Key after = PageToken.decode(pageToken, PageToken.LOG);
+        boolean filtered = playerFilter != null && !playerFilter.isEmpty();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.withReader(connection -> {
+                    ArrayList<TransactionEntry> results = new ArrayList<TransactionEntry>();
+                    String nextToken = null;
+                    List<UUID> players = null;
+                    if (filtered) {
+                        players = HistoryQuery.resolvePlayers(connection, this.tablePrefix + "balances", playerFilter);
+                        if (players.isEmpty()) return Page.<TransactionEntry>empty();
+                    }
+                    String sql = players != null
+                        ? HistoryQuery.pageSql(this.tablePrefix + "transactions", players.size(), after != null)
+                        : "SELECT * FROM " + this.tablePrefix + "transactions" + (after != null ? " WHERE timestamp <= ? AND (timestamp < ? OR id < ?)" : "") + " ORDER BY timestamp DESC, id DESC LIMIT ?";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        if (players != null) {
+                            HistoryQuery.bindPage(ps, players, after, limit + 1);
+                        } else {
+                            int paramIndex = 1;
+                            if (after != null) {
+                                ps.setLong(paramIndex++, after.primary());
+                                ps.setLong(paramIndex++, after.primary());
+                                ps.setLong(paramIndex++, after.secondary());
+                            }
+                            ps.setInt(paramIndex, limit + 1);
+                        }
+                        try (ResultSet rs = ps.executeQuery();){
+                            long lastTimestamp = 0L;
+                            long lastId = 0L;
+                            while (rs.next()) {
+                                if (results.size() == limit) {
+                                    nextToken = PageToken.encode(PageToken.LOG, lastTimestamp, lastId, null);
+                                    break;
+                                }
+                                lastTimestamp = rs.getLong("timestamp");
+                                lastId = rs.getLong("id");
+                                results.add(this.resultSetToEntry(rs));
+                            }
+                        }
+                    }
+                    return new Page<TransactionEntry>(results, nextToken);
+                });
+            }
+            catch (SQLException e) {
+                LOGGER.at(Level.WARNING).log("Failed to query transactions: %s", (Object)e.getMessage());
+            }
+            return Page.<TransactionEntry>empty();
+        }, this.readExecutor);
     }
 
     public CompletableFuture<Integer> countTransactionsAsync(String playerFilter) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String sql = playerFilter != null && !playerFilter.isEmpty() ? "SELECT COUNT(*) FROM " + this.tablePrefix + "transactions WHERE LOWER(player_name) LIKE ?" : "SELECT COUNT(*) FROM " + this.tablePrefix + "transactions";
-                try (PreparedStatement ps = this.connection.prepareStatement(sql);){
+                return this.withReader(connection -> {
+                    List<UUID> players = null;
                     if (playerFilter != null && !playerFilter.isEmpty()) {
-                        ps.setString(1, "%" + playerFilter.toLowerCase() + "%");
+                        players = HistoryQuery.resolvePlayers(connection, this.tablePrefix + "balances", playerFilter);
+                        if (players.isEmpty()) return 0;
                     }
-                    try (ResultSet rs = ps.executeQuery();){
-                        if (!rs.next()) return 0;
-                        Integer n = rs.getInt(1);
-                        return n;
+                    String sql = players != null ? HistoryQuery.countSql(this.tablePrefix + "transactions", players.size()) : "SELECT COUNT(*) FROM " + this.tablePrefix + "transactions";
+                    try (PreparedStatement ps = connection.prepareStatement(sql);){
+                        if (players != null) {
+                            HistoryQuery.bindCount(ps, players);
+                        }
+                        try (ResultSet rs = ps.executeQuery();){
+                            return rs.next() ? rs.getInt(1) : 0;
+                        }
                     }
-                }
+                });
             }
             catch (SQLException e) {
                 LOGGER.at(Level.WARNING).log("Failed to count transactions: %s", (Object)e.getMessage());
             }
             return 0;
-        }, this.executor);
+        }, this.readExecutor);
     }
 
     private TransactionEntry resultSetToEntry(ResultSet rs) throws SQLException {
         long timestampMs = rs.getLong("timestamp");
         Instant timestamp = Instant.ofEpochMilli(timestampMs);
-        TransactionType type = TransactionType.valueOf(rs.getString("type"));
-        String sourceUuidStr = rs.getString("source_uuid");
-        UUID sourceUuid = sourceUuidStr != null ? UUID.fromString(sourceUuidStr) : null;
-        String targetUuidStr = rs.getString("target_uuid");
-        UUID targetUuid = targetUuidStr != null ? UUID.fromString(targetUuidStr) : null;
+        TransactionType type = TransactionType.fromCode(rs.getInt("type_code"));
+        UUID sourceUuid = UuidCodec.read(rs, "source_uuid");
+        UUID targetUuid = UuidCodec.read(rs, "target_uuid");
         String playerName = rs.getString("player_name");
-        double amount = rs.getDouble("amount");
+        long amount = rs.getLong("amount");
         String formattedTime = TIME_FORMATTER.format(timestamp);
         return new TransactionEntry(timestamp, formattedTime, type, sourceUuid, targetUuid, amount, playerName);
     }
 
     @Override
     public CompletableFuture<Void> shutdown() {
+        this.closing = true;
+        if (this.archiver != null) {
+            // Stops after the day in progress, before the pools below are closed
+            this.archiver.shutdown();
+        }
+        if (this.transactionLog != null) {
+            // Queued log entries go through the writer lane, so drain them before it stops
+            this.transactionLog.close(5000L);
+        }
+        this.readExecutor.shutdown();
         this.executor.shutdown();
-        LOGGER.at(Level.INFO).log("MySQL shutdown: closing connection...");
+        LOGGER.at(Level.INFO).log("MySQL shutdown: closing connections...");
         try {
-            if (this.connection != null && !this.connection.isClosed()) {
-                this.connection.close();
-            }
-            LOGGER.at(Level.INFO).log("MySQL connection closed");
+            // Let queued writes (saves, log batches) reach the database first
+            this.executor.awaitTermination(5L, TimeUnit.SECONDS);
+            this.readExecutor.awaitTermination(2L, TimeUnit.SECONDS);
         }
-        catch (SQLException e) {
-            LOGGER.at(Level.WARNING).log("Error closing MySQL connection: %s", (Object)e.getMessage());
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.readPool != null) {
+            this.readPool.close();
+        }
+        if (this.writePool != null) {
+            this.writePool.close();
         }
+        LOGGER.at(Level.INFO).log("MySQL connections closed");
         return CompletableFuture.completedFuture(null);
     }
 
@@ -565,7 +1164,11 @@ implements StorageProvider {
 
     @Override
     public int getPlayerCount() {
-        return this.playerCount;
+        return this.playerCount.get();
     }
-}
 
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ecotale.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset page tokens used by the SQL providers.
+ *
+ * A token holds the sort key of the last row of a page: {@code (balance, uuid)} for the
+ * leaderboard, {@code (trend, uuid)} plus the period for the trend leaderboard and
+ * {@code (timestamp, id)} for the transaction log. The next page is then a plain
+ * "rows after this key" range scan instead of an OFFSET that reads and discards every
+ * earlier row.
+ *
+ * Format: URL-safe base64 of {@code kind:primary:secondary:uuid}. The kind letter stops a
+ * token from one query being fed to another.
+ */
+final class PageToken {
+    static final char BALANCE = 'B';
+    static final char TREND = 'T';
+    static final char LOG = 'L';
+
+    private PageToken() {
+    }
+
+    static String encode(char kind, long primary, long secondary, UUID uuid) {
+        String raw = kind + ":" + primary + ":" + secondary + ":" + (uuid != null ? uuid.toString() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token Token from a previous page, or null/empty for the first page
+     * @param kind  Kind the calling query expects
+     * @return The decoded key, or null for the first page
+     * @throws IllegalArgumentException If the token is malformed or belongs to another query
+     */
+    static Key decode(String token, char kind) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length != 4 || parts[0].length() != 1 || parts[0].charAt(0) != kind) {
+                throw new IllegalArgumentException("Page token is not for this query");
+            }
+            UUID uuid = parts[3].isEmpty() ? null : UUID.fromString(parts[3]);
+            // UUID.fromString accepts short groups, so a truncated token would still parse
+            if (uuid != null && !uuid.toString().equals(parts[3])) {
+                throw new IllegalArgumentException("Page token has a malformed UUID");
+            }
+            return new Key(Long.parseLong(parts[1]), Long.parseLong(parts[2]), uuid);
+        }
+        catch (IllegalArgumentException e) {
+            // Also covers bad base64, numbers and UUIDs
+            throw new IllegalArgumentException("Invalid page token: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param primary   Main sort value of the last row (balance, trend or timestamp)
+     * @param secondary Tie-breaker id for the log, the period in days for the trend board
+     * @param uuid      Tie-breaker for the leaderboards
+     */
+    record Key(long primary, long secondary, UUID uuid) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecotale.storage;
+
+/**
+ * Thrown by the transaction history queries when a name-prefix filter matches more
+ * accounts than one history query covers. The caller should ask for a longer prefix or a UUID.
+ */
+public class PlayerFilterTooBroadException extends RuntimeException {
+
+    private final String filter;
+    private final int maxPlayers;
+
+    public PlayerFilterTooBroadException(String filter, int maxPlayers) {
+        super("More than " + maxPlayers + " players match '" + filter + "'");
+        this.filter = filter;
+        this.maxPlayers = maxPlayers;
+    }
+
+    /**
+     * Get the filter that matched too many players.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the maximum number of players one filter may match.
+     */
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ecotale.storage;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Small key/value meta table the SQL providers use to remember schema state
+ * (money scale, schema version, migration markers), plus column and index introspection.
+ */
+final class SchemaMeta {
+    private final Connection connection;
+    private final String table;
+
+    /**
+     * @param connection Open connection used for all meta reads and writes
+     * @param table      Fully prefixed name of the meta table
+     */
+    SchemaMeta(Connection connection, String table) {
+        this.connection = connection;
+        this.table = table;
+    }
+
+    void ensureTable() throws SQLException {
+        try (Statement stmt = this.connection.createStatement();){
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + this.table + " (\n    meta_key VARCHAR(64) PRIMARY KEY,\n    meta_value VARCHAR(255)\n)\n");
+        }
+    }
+
+    String get(String key) throws SQLException {
+        try (PreparedStatement ps = this.connection.prepareStatement("SELECT meta_value FROM " + this.table + " WHERE meta_key = ?");){
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery();){
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    void set(String key, String value) throws SQLException {
+        try (PreparedStatement ps = this.connection.prepareStatement("UPDATE " + this.table + " SET meta_value = ? WHERE meta_key = ?");){
+            ps.setString(1, value);
+            ps.setString(2, key);
+            if (ps.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement ps = this.connection.prepareStatement("INSERT INTO " + this.table + " (meta_key, meta_value) VALUES (?, ?)");){
+            ps.setString(1, key);
+            ps.setString(2, value);
+            ps.executeUpdate();
+        }
+    }
+
+    void delete(String key) throws SQLException {
+        try (PreparedStatement ps = this.connection.prepareStatement("DELETE FROM " + this.table + " WHERE meta_key = ?");){
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * JDBC type ({@link java.sql.Types}) of a column. H2 reports unquoted names in
+     * upper case, so both spellings are tried.
+     *
+     * @throws SQLException if the column does not exist
+     */
+    static int columnType(Connection connection, String table, String column) throws SQLException {
+        Integer type = findColumnType(connection, table, column);
+        if (type == null) {
+            throw new SQLException("Column not found: " + table + "." + column);
+        }
+        return type;
+    }
+
+    static boolean hasTable(Connection connection, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = meta.getTables(catalog, null, name, new String[]{"TABLE"});){
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        return findColumnType(connection, table, column) != null;
+    }
+
+    private static Integer findColumnType(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        for (String[] names : new String[][]{{table, column}, {table.toUpperCase(), column.toUpperCase()}}) {
+            try (ResultSet rs = meta.getColumns(catalog, null, names[0], names[1]);){
+                if (rs.next()) {
+                    return rs.getInt("DATA_TYPE");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether an index of that name exists on the table. Used where the database has
+     * no {@code CREATE INDEX IF NOT EXISTS} (MySQL).
+     */
+    static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = meta.getIndexInfo(catalog, null, name, false, true);){
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
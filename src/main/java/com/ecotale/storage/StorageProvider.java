@@ -1,14 +1,27 @@
 package com.ecotale.storage;
 
+import com.ecotale.economy.BalanceSnapshot;
+import com.ecotale.economy.Page;
 import com.ecotale.economy.PlayerBalance;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 public interface StorageProvider {
     public CompletableFuture<Void> initialize();
 
+    /**
+     * Load an account, creating it at the starting balance if it does not exist.
+     * Completes exceptionally on storage errors; never substitutes a fresh account for one it could not read.
+     */
     public CompletableFuture<PlayerBalance> loadPlayer(@Nonnull UUID var1);
 
     public CompletableFuture<Void> savePlayer(@Nonnull UUID var1, @Nonnull PlayerBalance var2);
@@ -17,6 +30,35 @@ public interface StorageProvider {
 
     public CompletableFuture<Map<UUID, PlayerBalance>> loadAll();
 
+    /**
+     * Stream every stored account to {@code sink} in chunks of up to {@code chunkSize}, for
+     * the startup preload. The sink may be called from several threads at once. If it
+     * throws, loading stops and the future fails.
+     *
+     * @return Number of accounts delivered
+     */
+    default public CompletableFuture<Integer> loadAllChunked(int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return this.loadAll().thenApply(all -> {
+            ArrayList<PlayerBalance> balances = new ArrayList<PlayerBalance>(all.values());
+            for (int from = 0; from < balances.size(); from += chunkSize) {
+                sink.accept(balances.subList(from, Math.min(from + chunkSize, balances.size())));
+            }
+            return balances.size();
+        });
+    }
+
+    /**
+     * Like {@link #loadAllChunked}, but only accounts changed since the given time, for the
+     * bounded cache preload. Providers that do not track change times load every account.
+     */
+    default public CompletableFuture<Integer> loadActiveChunked(long activeSinceMillis, int chunkSize, @Nonnull Consumer<List<PlayerBalance>> sink) {
+        return this.loadAllChunked(chunkSize, sink);
+    }
+
+    /**
+     * @return Whether the account is stored; fails, rather than answering false, if storage
+     *         could not be read
+     */
     public CompletableFuture<Boolean> playerExists(@Nonnull UUID var1);
 
     public CompletableFuture<Void> deletePlayer(@Nonnull UUID var1);
@@ -27,6 +69,57 @@ public interface StorageProvider {
 
     public int getPlayerCount();
 
+    /**
+     * Persist immutable account snapshots (used by autosave).
+     * The future always completes normally; rows that could not be written are
+     * reported back so only those are retried.
+     *
+     * @return UUIDs of the snapshots that failed to save
+     */
+    default public CompletableFuture<Set<UUID>> saveSnapshots(@Nonnull List<BalanceSnapshot> snapshots) {
+        Set<UUID> failed = ConcurrentHashMap.newKeySet();
+        CompletableFuture[] futures = snapshots.stream().map(snapshot -> this.savePlayer(snapshot.uuid(), snapshot.toPlayerBalance()).exceptionally(e -> {
+            failed.add(snapshot.uuid());
+            return null;
+        })).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenApply(v -> failed);
+    }
+
+    /**
+     * Record the accounts that changed since the last daily balance snapshot under
+     * {@code day}. Providers without balance history ignore it.
+     *
+     * @return Snapshot rows written
+     */
+    default public CompletableFuture<Integer> writeDailySnapshot(@Nonnull LocalDate day, @Nonnull Collection<BalanceSnapshot> changed) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    /**
+     * One page of stored accounts with their lifetime totals, highest balance first and
+     * ties by UUID, seeking past the previous page by key rather than OFFSET. Used when the
+     * account cache does not hold every account; the balances are copies, not cached accounts.
+     *
+     * @param pageToken {@code nextToken} of the previous page, null for the first page
+     */
+    default public CompletableFuture<Page<PlayerBalance>> getTopBalancesPage(String pageToken, int limit) {
+        return CompletableFuture.completedFuture(Page.empty());
+    }
+
+    /**
+     * Number of stored accounts with a balance strictly greater than the amount in minor units.
+     */
+    default public CompletableFuture<Integer> countPlayersWithBalanceGreaterMinorAsync(long balanceMinor) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    /**
+     * Totals over every stored account, or null if the provider cannot aggregate.
+     */
+    default public CompletableFuture<StorageTotals> queryTotalsAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     default public CompletableFuture<UUID> getPlayerUuid(@Nonnull String playerName) {
         return CompletableFuture.completedFuture(null);
     }
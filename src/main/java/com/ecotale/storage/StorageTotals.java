@@ -0,0 +1,15 @@
+package com.ecotale.storage;
+
+/**
+ * Economy-wide totals computed by the database over every stored account, for when the
+ * account cache holds only part of them.
+ *
+ * @param accounts    Number of stored accounts
+ * @param supplyMinor Sum of all balances in minor units
+ * @param earnedMinor Sum of lifetime credits in minor units
+ * @param spentMinor  Sum of lifetime debits in minor units
+ * @param maxMinor    Highest balance in minor units
+ * @param minMinor    Lowest balance in minor units
+ */
+public record StorageTotals(long accounts, long supplyMinor, long earnedMinor, long spentMinor, long maxMinor, long minMinor) {
+}
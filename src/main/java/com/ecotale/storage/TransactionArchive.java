@@ -0,0 +1,286 @@
+package com.ecotale.storage;
+
+import com.ecotale.economy.TransactionType;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SQL and file work for moving old transaction log rows out of the hot table, one UTC
+ * day at a time. The provider runs the steps on its own lanes:
+ *
+ * 1. {@link #export} streams the day's rows into a gzip file through a read connection.
+ *    The file is written to a temp name and then moved into place.
+ * 2. {@link #commit} adds the exported rows to the hourly rollup table and deletes them,
+ *    in one transaction on the writer connection.
+ *
+ * Only rows up to the highest exported id are rolled up and deleted, so rows that
+ * arrive in between are left for the next run. A crash between the two steps leaves
+ * the rows in place; the next run exports them again to the same file name (keyed by
+ * the first id) and then commits.
+ *
+ * Archive file: {@code <dir>/YYYY/transactions-YYYY-MM-DD.<firstId>.tsv.gz}. It is a
+ * header line and then one tab-separated row per transaction: id, epoch millis, type,
+ * source, target, amount in minor units, player name.
+ */
+final class TransactionArchive {
+    static final String ROLLUP_DDL = "CREATE TABLE IF NOT EXISTS %s (\n    hour_start BIGINT NOT NULL,\n    player_uuid BINARY(16) NOT NULL,\n    type_code SMALLINT NOT NULL,\n    tx_count BIGINT NOT NULL,\n    amount_in BIGINT NOT NULL,\n    amount_out BIGINT NOT NULL,\n    PRIMARY KEY (player_uuid, hour_start, type_code)\n)\n";
+    private static final long DAY_MILLIS = 86400000L;
+    private static final long HOUR_MILLIS = 3600000L;
+
+    private final String table;
+    private final String rollupTable;
+    private final Path directory;
+    private final boolean mysql;
+
+    /**
+     * @param table       Fully prefixed transactions table
+     * @param rollupTable Fully prefixed hourly rollup table
+     * @param directory   Root directory for archive files
+     * @param mysql       True for MySQL SQL dialect, false for H2
+     */
+    TransactionArchive(String table, String rollupTable, Path directory, boolean mysql) {
+        this.table = table;
+        this.rollupTable = rollupTable;
+        this.directory = directory;
+        this.mysql = mysql;
+    }
+
+    /**
+     * Start of the oldest UTC day that has rows older than the cutoff.
+     *
+     * @return Epoch millis of that day, or -1 if nothing is due
+     */
+    long oldestDueDay(Connection connection, long cutoffMillis) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT MIN(timestamp) FROM " + this.table + " WHERE timestamp < ?");){
+            ps.setLong(1, cutoffMillis);
+            try (ResultSet rs = ps.executeQuery();){
+                if (!rs.next()) {
+                    return -1L;
+                }
+                long oldest = rs.getLong(1);
+                return rs.wasNull() ? -1L : Math.floorDiv(oldest, DAY_MILLIS) * DAY_MILLIS;
+            }
+        }
+    }
+
+    /**
+     * Write every row of one day (capped at the cutoff) to the archive.
+     *
+     * @return What was written; {@link Export#rows()} is 0 if the range was empty
+     */
+    Export export(Connection connection, long dayStart, long cutoffMillis) throws SQLException, IOException {
+        long end = Math.min(dayStart + DAY_MILLIS, cutoffMillis);
+        LocalDate day = Instant.ofEpochMilli(dayStart).atZone(ZoneOffset.UTC).toLocalDate();
+        Path yearDir = this.directory.resolve(Integer.toString(day.getYear()));
+        Files.createDirectories(yearDir);
+        Path temp = Files.createTempFile(yearDir, "transactions-" + day, ".part");
+        long rows = 0L;
+        long firstId = -1L;
+        long lastId = -1L;
+        try {
+            String sql = "SELECT id, timestamp, type_code, source_uuid, target_uuid, player_name, amount FROM " + this.table
+                + " WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp, id";
+            try (PreparedStatement ps = connection.prepareStatement(sql);
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp), 65536), StandardCharsets.UTF_8));){
+                ps.setLong(1, dayStart);
+                ps.setLong(2, end);
+                if (this.mysql) {
+                    // Stream instead of buffering the whole day in the driver
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                } else {
+                    ps.setFetchSize(1000);
+                }
+                out.write("id\ttimestamp\ttype\tsource_uuid\ttarget_uuid\tamount_minor\tplayer_name\n");
+                try (ResultSet rs = ps.executeQuery();){
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        firstId = firstId < 0L ? id : Math.min(firstId, id);
+                        lastId = Math.max(lastId, id);
+                        UUID source = UuidCodec.read(rs, "source_uuid");
+                        UUID target = UuidCodec.read(rs, "target_uuid");
+                        out.write(Long.toString(id));
+                        out.write('\t');
+                        out.write(Long.toString(rs.getLong("timestamp")));
+                        out.write('\t');
+                        out.write(TransactionType.fromCode(rs.getInt("type_code")).name());
+                        out.write('\t');
+                        out.write(source != null ? source.toString() : "");
+                        out.write('\t');
+                        out.write(target != null ? target.toString() : "");
+                        out.write('\t');
+                        out.write(Long.toString(rs.getLong("amount")));
+                        out.write('\t');
+                        out.write(escape(rs.getString("player_name")));
+                        out.write('\n');
+                        ++rows;
+                    }
+                }
+            }
+            if (rows == 0L) {
+                Files.deleteIfExists(temp);
+                return new Export(dayStart, end, 0L, -1L, null);
+            }
+            Path file = yearDir.resolve("transactions-" + day + "." + firstId + ".tsv.gz");
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Export(dayStart, end, rows, lastId, file);
+        }
+        catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Roll the exported rows up into hourly per-player totals and delete them, atomically.
+     *
+     * @return Rows deleted from the hot table
+     */
+    long commit(Connection connection, Export export) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = connection.prepareStatement(this.rollupSql());){
+                int paramIndex = 1;
+                for (int side = 0; side < 2; ++side) {
+                    ps.setLong(paramIndex++, export.from());
+                    ps.setLong(paramIndex++, export.to());
+                    ps.setLong(paramIndex++, export.lastId());
+                }
+                ps.executeUpdate();
+            }
+            long deleted;
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + this.table + " WHERE timestamp >= ? AND timestamp < ? AND id <= ?");){
+                ps.setLong(1, export.from());
+                ps.setLong(2, export.to());
+                ps.setLong(3, export.lastId());
+                deleted = ps.executeUpdate();
+            }
+            connection.commit();
+            return deleted;
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Delete archive files for days before the given date.
+     *
+     * @return Files deleted
+     */
+    int deleteFilesBefore(LocalDate keepFrom) throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (var files = Files.walk(this.directory);){
+            for (Path file : (Iterable<Path>)files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                // transactions-YYYY-MM-DD.<firstId>.tsv.gz
+                if (!name.startsWith("transactions-") || !name.endsWith(".tsv.gz") || name.length() < 23) continue;
+                try {
+                    if (LocalDate.parse(name.substring(13, 23)).isBefore(keepFrom)) {
+                        Files.delete(file);
+                        ++deleted;
+                    }
+                }
+                catch (RuntimeException runtimeException) {
+                    // not one of ours
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Additive upsert of both sides of every transaction. A transfer books the amount as
+     * {@code amount_out} for the source and {@code amount_in} for the target. A single-player
+     * row keeps the player in {@code source_uuid} and is booked by type: GIVE, EARN, SET and
+     * RESET as {@code amount_in} (for SET/RESET that is the balance set), TAKE and SPEND as
+     * {@code amount_out}. Parameters: from, to, last id; twice.
+     */
+    private String rollupSql() {
+        String hour = "timestamp - MOD(timestamp, " + HOUR_MILLIS + ")";
+        String range = " WHERE timestamp >= ? AND timestamp < ? AND id <= ?";
+        String inflow = "target_uuid IS NULL AND type_code IN (" + TransactionType.GIVE.getCode() + ", " + TransactionType.EARN.getCode() + ", "
+            + TransactionType.SET.getCode() + ", " + TransactionType.RESET.getCode() + ")";
+        String aggregate = "SELECT hour_start, player_uuid, type_code, SUM(tx_count) AS tx_count, SUM(amount_in) AS amount_in, SUM(amount_out) AS amount_out FROM ("
+            + "SELECT " + hour + " AS hour_start, source_uuid AS player_uuid, type_code, COUNT(*) AS tx_count,"
+            + " SUM(CASE WHEN " + inflow + " THEN amount ELSE 0 END) AS amount_in, SUM(CASE WHEN " + inflow + " THEN 0 ELSE amount END) AS amount_out FROM " + this.table
+            + range + " AND source_uuid IS NOT NULL GROUP BY " + hour + ", source_uuid, type_code"
+            + " UNION ALL "
+            + "SELECT " + hour + " AS hour_start, target_uuid AS player_uuid, type_code, COUNT(*) AS tx_count, SUM(amount) AS amount_in, 0 AS amount_out FROM " + this.table
+            + range + " AND target_uuid IS NOT NULL GROUP BY " + hour + ", target_uuid, type_code"
+            + ") u GROUP BY hour_start, player_uuid, type_code";
+        if (this.mysql) {
+            return "INSERT INTO " + this.rollupTable + " (hour_start, player_uuid, type_code, tx_count, amount_in, amount_out) SELECT * FROM (" + aggregate + ") s"
+                + " ON DUPLICATE KEY UPDATE tx_count = " + this.rollupTable + ".tx_count + s.tx_count, amount_in = " + this.rollupTable + ".amount_in + s.amount_in, amount_out = " + this.rollupTable + ".amount_out + s.amount_out";
+        }
+        return "MERGE INTO " + this.rollupTable + " r USING (" + aggregate + ") s"
+            + " ON (r.player_uuid = s.player_uuid AND r.hour_start = s.hour_start AND r.type_code = s.type_code)"
+            + " WHEN MATCHED THEN UPDATE SET tx_count = r.tx_count + s.tx_count, amount_in = r.amount_in + s.amount_in, amount_out = r.amount_out + s.amount_out"
+            + " WHEN NOT MATCHED THEN INSERT (hour_start, player_uuid, type_code, tx_count, amount_in, amount_out) VALUES (s.hour_start, s.player_uuid, s.type_code, s.tx_count, s.amount_in, s.amount_out)";
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': {
+                    escaped.append("\\\\");
+                    break;
+                }
+                case '\t': {
+                    escaped.append("\\t");
+                    break;
+                }
+                case '\n': {
+                    escaped.append("\\n");
+                    break;
+                }
+                case '\r': {
+                    escaped.append("\\r");
+                    break;
+                }
+                default: {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * One exported day.
+     *
+     * @param from   First millisecond of the range, inclusive
+     * @param to     End of the range, exclusive
+     * @param rows   Rows written to the file
+     * @param lastId Highest exported id; rows above it are not part of this export
+     * @param file   Archive file, null if no rows were written
+     */
+    record Export(long from, long to, long rows, long lastId, Path file) {
+    }
+}
@@ -0,0 +1,115 @@
+package com.ecotale.storage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Runs the transaction archive of a SQL provider on a schedule.
+ *
+ * Once a day, rows older than {@code archiveAfterDays} are exported to compressed
+ * per-day files, folded into the hourly per-player rollup table and deleted from the
+ * hot {@code transactions} table (see {@link TransactionArchive}). The hot table then
+ * only holds the recent window, so log counts and pages stay fast. Archive files older
+ * than {@code retentionDays} are deleted; 0 keeps them forever.
+ */
+public class TransactionArchiver {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-Archive");
+    private static final long DAY_MILLIS = 86400000L;
+    private static final long FIRST_RUN_DELAY_MINUTES = 10L;
+
+    private final String name;
+    private final Job job;
+    private final int archiveAfterDays;
+    private final int retentionDays;
+    private final ScheduledExecutorService scheduler;
+    private volatile Result lastResult;
+
+    /**
+     * @param name             Provider name, used for the thread and log messages
+     * @param job              Archives everything older than the given epoch millis
+     * @param archiveAfterDays Age in days after which rows leave the hot table
+     * @param retentionDays    Age in days after which archive files are deleted, 0 to keep them
+     */
+    public TransactionArchiver(String name, Job job, int archiveAfterDays, int retentionDays) {
+        this.name = name;
+        this.job = job;
+        this.archiveAfterDays = Math.max(1, archiveAfterDays);
+        this.retentionDays = Math.max(0, retentionDays);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Ecotale-Archive-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Schedule the first run a few minutes after startup, then one run a day.
+     */
+    public void start() {
+        this.scheduler.scheduleWithFixedDelay(this::runSafely, FIRST_RUN_DELAY_MINUTES, TimeUnit.DAYS.toMinutes(1L), TimeUnit.MINUTES);
+        LOGGER.at(Level.INFO).log("%s transaction archive enabled: rows older than %d days are archived", (Object)this.name, this.archiveAfterDays);
+    }
+
+    /**
+     * Archive now, on the archive thread.
+     */
+    public void runNow() {
+        this.scheduler.execute(this::runSafely);
+    }
+
+    private void runSafely() {
+        long cutoff = System.currentTimeMillis() - this.archiveAfterDays * DAY_MILLIS;
+        try {
+            Result result = this.job.archiveBefore(cutoff, this.retentionDays);
+            this.lastResult = result;
+            if (result.rows() > 0L || result.filesDeleted() > 0) {
+                LOGGER.at(Level.INFO).log("%s archived %d transactions from %d days in %d ms (%d old files removed)", (Object)this.name, result.rows(), result.days(), result.durationMs(), result.filesDeleted());
+            }
+        }
+        catch (Exception e) {
+            LOGGER.at(Level.WARNING).log("%s transaction archive failed: %s", (Object)this.name, (Object)e.getMessage());
+        }
+    }
+
+    /**
+     * @return Outcome of the last completed run, null before the first one
+     */
+    public Result getLastResult() {
+        return this.lastResult;
+    }
+
+    public int getArchiveAfterDays() {
+        return this.archiveAfterDays;
+    }
+
+    /**
+     * Stop scheduling; a run in progress finishes its current day.
+     */
+    public void shutdown() {
+        this.scheduler.shutdown();
+        try {
+            this.scheduler.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Job {
+        Result archiveBefore(long cutoffMillis, int retentionDays) throws Exception;
+    }
+
+    /**
+     * @param finishedAt   Epoch millis when the run ended
+     * @param days         Days exported
+     * @param rows         Rows moved out of the hot table
+     * @param filesDeleted Archive files removed by retention
+     * @param durationMs   Run time
+     */
+    public record Result(long finishedAt, int days, long rows, int filesDeleted, long durationMs) {
+    }
+}
@@ -0,0 +1,236 @@
+package com.ecotale.storage;
+
+import com.ecotale.economy.TransactionEntry;
+import com.hypixel.hytale.logger.HytaleLogger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Group commit for the transaction log.
+ *
+ * Producers only enqueue into a bounded queue. One writer thread drains it and hands
+ * the provider a batch once {@code batchSize} entries are waiting or the oldest waiting
+ * entry is {@code flushIntervalMs} old, whichever comes first; the provider writes each
+ * batch as one JDBC batch in one transaction.
+ *
+ * When the queue is full, a producer waits up to a second in total per call for room and
+ * then drops what is left (counted in {@link #getDropped()}), so a stalled database cannot
+ * block the economy. Drops are reported as one warning at most every 10 seconds.
+ */
+public class TransactionLogWriter {
+    private static final HytaleLogger LOGGER = HytaleLogger.getLogger().getSubLogger("Ecotale-TxLog");
+    private static final long OFFER_TIMEOUT_MS = 1000L;
+    private static final long DROP_WARN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10L);
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final String name;
+    private final ArrayBlockingQueue<TransactionEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BatchSink sink;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lastDropWarnNanos = new AtomicLong(System.nanoTime() - DROP_WARN_INTERVAL_NANOS);
+    private long droppedAtLastWarn;
+    private long flushes;
+    private long written;
+    private long failed;
+    private long lastFlushNanos;
+    private long maxFlushNanos;
+    private double avgFlushNanos;
+    private int lastBatchSize;
+
+    /**
+     * @param name            Provider name, used for the thread and log messages
+     * @param capacity        Max entries waiting to be written
+     * @param batchSize       Max entries per batch
+     * @param flushIntervalMs Max time an entry waits for its batch to fill up
+     * @param sink            Writes one batch in one transaction, throwing if it failed
+     */
+    public TransactionLogWriter(String name, int capacity, int batchSize, long flushIntervalMs, BatchSink sink) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, flushIntervalMs));
+        this.sink = sink;
+        this.thread = new Thread(this::run, "Ecotale-TxLog-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void append(TransactionEntry entry) {
+        this.appendAll(List.of(entry));
+    }
+
+    /**
+     * Enqueue the entries, waiting at most {@code OFFER_TIMEOUT_MS} in total for room.
+     * Entries that do not fit by then are dropped.
+     */
+    public void appendAll(List<TransactionEntry> entries) {
+        if (!this.running) {
+            this.recordDrops(entries.size());
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFER_TIMEOUT_MS);
+        int drops = 0;
+        int i = 0;
+        try {
+            for (; i < entries.size(); ++i) {
+                TransactionEntry entry = entries.get(i);
+                if (this.queue.offer(entry)) continue;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L || !this.queue.offer(entry, remaining, TimeUnit.NANOSECONDS)) {
+                    ++drops;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drops += entries.size() - i;
+        }
+        this.recordDrops(drops);
+    }
+
+    /**
+     * Count dropped entries; warns with the drops since the last warning, at most every
+     * {@code DROP_WARN_INTERVAL_NANOS}.
+     */
+    private void recordDrops(int count) {
+        if (count <= 0) {
+            return;
+        }
+        long total = this.dropped.addAndGet(count);
+        long now = System.nanoTime();
+        long last = this.lastDropWarnNanos.get();
+        if (now - last < DROP_WARN_INTERVAL_NANOS || !this.lastDropWarnNanos.compareAndSet(last, now)) {
+            return;
+        }
+        long since;
+        synchronized (this) {
+            since = total - this.droppedAtLastWarn;
+            this.droppedAtLastWarn = total;
+        }
+        LOGGER.at(Level.WARNING).log("%s transaction log queue full, dropped %d entries (%d since startup)", (Object)this.name, since, total);
+    }
+
+    private void run() {
+        ArrayList<TransactionEntry> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                TransactionEntry first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + this.flushIntervalNanos;
+                while (batch.size() < this.batchSize) {
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= this.batchSize || remaining <= 0L || !this.running) break;
+                    TransactionEntry next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            }
+            catch (InterruptedException e) {
+                // Treat as close(): stop waiting for more, but still drain the queue
+                this.running = false;
+            }
+            if (!batch.isEmpty()) {
+                this.flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<TransactionEntry> batch) {
+        long start = System.nanoTime();
+        boolean ok = true;
+        try {
+            this.sink.write(batch);
+        }
+        catch (Exception e) {
+            ok = false;
+            LOGGER.at(Level.WARNING).log("Failed to log %d transactions to %s: %s", batch.size(), (Object)this.name, (Object)e.getMessage());
+        }
+        long duration = System.nanoTime() - start;
+        synchronized (this) {
+            ++this.flushes;
+            if (ok) {
+                this.written += batch.size();
+            } else {
+                this.failed += batch.size();
+            }
+            this.lastFlushNanos = duration;
+            this.maxFlushNanos = Math.max(this.maxFlushNanos, duration);
+            this.avgFlushNanos = this.flushes == 1L ? duration : this.avgFlushNanos + EWMA_WEIGHT * (duration - this.avgFlushNanos);
+            this.lastBatchSize = batch.size();
+        }
+    }
+
+    /**
+     * Stop accepting entries and write out everything still queued.
+     */
+    public void close(long timeoutMs) {
+        // No interrupt: it could abort a batch that is being written. The writer
+        // notices within one poll interval and drains what is left.
+        this.running = false;
+        try {
+            this.thread.join(timeoutMs);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!this.queue.isEmpty()) {
+            LOGGER.at(Level.WARNING).log("%d transaction log entries were not written to %s", this.queue.size(), (Object)this.name);
+        }
+    }
+
+    /**
+     * @return Entries waiting to be written
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public synchronized long getFlushes() {
+        return this.flushes;
+    }
+
+    public synchronized long getWritten() {
+        return this.written;
+    }
+
+    public synchronized long getFailed() {
+        return this.failed;
+    }
+
+    public synchronized int getLastBatchSize() {
+        return this.lastBatchSize;
+    }
+
+    public synchronized long getLastFlushMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastFlushNanos);
+    }
+
+    public synchronized long getMaxFlushMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxFlushNanos);
+    }
+
+    public synchronized double getAvgFlushMs() {
+        return this.avgFlushNanos / 1_000_000.0;
+    }
+
+    @FunctionalInterface
+    public interface BatchSink {
+        void write(List<TransactionEntry> batch) throws Exception;
+    }
+}
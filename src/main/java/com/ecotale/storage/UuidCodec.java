@@ -0,0 +1,67 @@
+package com.ecotale.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+/**
+ * UUID <-> BINARY(16) conversion for the SQL providers.
+ *
+ * Big-endian (most significant long first), the same byte order as MySQL's
+ * UUID_TO_BIN(uuid) and H2's UUID-to-binary cast. Encoding allocates the one
+ * 16-byte array the driver needs; decoding reads the two longs straight from the
+ * column bytes without going through a String.
+ */
+final class UuidCodec {
+    private UuidCodec() {
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        putLong(bytes, 0, uuid.getMostSignificantBits());
+        putLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Expected 16 UUID bytes, got " + bytes.length);
+        }
+        return new UUID(getLong(bytes, 0), getLong(bytes, 8));
+    }
+
+    /**
+     * Bind a UUID parameter; null binds SQL NULL.
+     */
+    static void bind(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+        if (uuid == null) {
+            ps.setNull(index, Types.BINARY);
+        } else {
+            ps.setBytes(index, toBytes(uuid));
+        }
+    }
+
+    static UUID read(ResultSet rs, String column) throws SQLException {
+        return fromBytes(rs.getBytes(column));
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; --i) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; ++i) {
+            value = value << 8 | (bytes[offset + i] & 0xFFL);
+        }
+        return value;
+    }
+}
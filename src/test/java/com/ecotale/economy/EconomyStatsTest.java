@@ -0,0 +1,109 @@
+package com.ecotale.economy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.ecotale.storage.StorageTotals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class EconomyStatsTest {
+    private final LeaderboardIndex leaderboard = new LeaderboardIndex();
+    private final EconomyStats stats = new EconomyStats(this.leaderboard);
+
+    @Test
+    void attachedAccountsReportEveryChange() {
+        PlayerBalance a = this.attach(10_000L, 10_000L, 0L);
+        PlayerBalance b = this.attach(20_000L, 25_000L, 5_000L);
+        assertEquals(30_000L, this.stats.getTotalSupplyMinor());
+        assertEquals(2, this.stats.getAccountCount());
+        assertEquals(150.0, this.stats.getAverageBalance(), 1e-9);
+
+        a.tryDeposit(5_000L, Long.MAX_VALUE, "test");
+        b.tryWithdraw(2_500L, "test");
+        assertEquals(32_500L, this.stats.getTotalSupplyMinor());
+        assertEquals(400.0, this.stats.getTotalEarned(), 1e-9);
+        assertEquals(75.0, this.stats.getTotalSpent(), 1e-9);
+
+        b.setBalanceMinor(0L, "test");
+        assertEquals(15_000L, this.stats.getTotalSupplyMinor());
+
+        a.detach();
+        assertEquals(0L, this.stats.getTotalSupplyMinor());
+        assertEquals(1, this.stats.getAccountCount());
+        assertEquals(250.0, this.stats.getTotalEarned(), 1e-9);
+        // Detaching twice must not take the account out again
+        a.detach();
+        assertEquals(1, this.stats.getAccountCount());
+    }
+
+    @Test
+    void rejectedChangesReportNothing() {
+        PlayerBalance a = this.attach(1_000L, 0L, 0L);
+        assertNull(a.tryWithdraw(5_000L, "test"));
+        assertNull(a.tryDeposit(5_000L, 2_000L, "test"));
+        assertEquals(1_000L, this.stats.getTotalSupplyMinor());
+    }
+
+    @Test
+    void concurrentChangesAddUp() throws InterruptedException {
+        List<PlayerBalance> accounts = new ArrayList<>();
+        for (int i = 0; i < 16; ++i) {
+            accounts.add(this.attach(1_000_000L, 0L, 0L));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; ++t) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; ++i) {
+                    PlayerBalance account = accounts.get(random.nextInt(accounts.size()));
+                    if (random.nextBoolean()) {
+                        account.tryDeposit(random.nextLong(1L, 500L), Long.MAX_VALUE, "test");
+                    } else {
+                        account.tryWithdraw(random.nextLong(1L, 500L), "test");
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long supply = accounts.stream().mapToLong(PlayerBalance::getBalanceMinor).sum();
+        long earned = accounts.stream().mapToLong(PlayerBalance::getTotalEarnedMinor).sum();
+        assertEquals(supply, this.stats.getTotalSupplyMinor());
+        assertEquals(Money.toDouble(earned), this.stats.getTotalEarned(), 1e-9);
+        assertEquals(accounts.size(), this.stats.getDistribution().getBrackets().stream().mapToLong(WealthDistribution.Bracket::count).sum());
+    }
+
+    @Test
+    void storageTotalsTakeOverInBoundedMode() {
+        this.attach(10_000L, 0L, 0L);
+        this.stats.useStorageTotals(new StorageTotals(1_000L, 5_000_000L, 6_000_000L, 1_000_000L, 90_000L, 0L));
+        assertEquals(5_000_000L, this.stats.getTotalSupplyMinor());
+        assertEquals(1_000, this.stats.getAccountCount());
+        assertEquals(900.0, this.stats.getMaxBalance(), 1e-9);
+        this.stats.useStorageTotals(null);
+        assertEquals(5_000_000L, this.stats.getTotalSupplyMinor());
+    }
+
+    @Test
+    void minAndMaxComeFromTheLeaderboard() {
+        PlayerBalance low = this.attach(500L, 0L, 0L);
+        PlayerBalance high = this.attach(90_000L, 0L, 0L);
+        this.leaderboard.refresh(low.getPlayerUuid(), low);
+        this.leaderboard.refresh(high.getPlayerUuid(), high);
+        assertEquals(900.0, this.stats.getMaxBalance(), 1e-9);
+        assertEquals(5.0, this.stats.getMinBalance(), 1e-9);
+    }
+
+    private PlayerBalance attach(long balance, long earned, long spent) {
+        PlayerBalance account = PlayerBalance.restore(UUID.randomUUID(), balance, earned, spent);
+        account.attach(this.stats);
+        return account;
+    }
+}
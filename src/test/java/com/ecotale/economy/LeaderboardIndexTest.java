@@ -0,0 +1,108 @@
+package com.ecotale.economy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LeaderboardIndexTest {
+    private static final Comparator<LeaderboardIndex.Entry> ORDER = Comparator
+        .comparingLong(LeaderboardIndex.Entry::balanceMinor).reversed()
+        .thenComparing(LeaderboardIndex.Entry::uuid);
+
+    private final Random random = new Random(42L);
+    private final Map<UUID, Long> balances = new HashMap<>();
+    private LeaderboardIndex index;
+
+    @BeforeEach
+    void fill() {
+        this.index = new LeaderboardIndex();
+        // Few distinct balances, so most positions are decided by the UUID tie-break
+        for (int i = 0; i < 500; ++i) {
+            this.set(new UUID(this.random.nextLong(), this.random.nextLong()), this.random.nextInt(20));
+        }
+    }
+
+    @Test
+    void pagesFollowBalanceThenUuidOrder() {
+        List<LeaderboardIndex.Entry> expected = this.expected();
+        assertEquals(expected, this.index.page(0, expected.size()));
+        for (int offset : new int[] {0, 1, 7, 250, 495, 499}) {
+            int end = Math.min(expected.size(), offset + 10);
+            assertEquals(expected.subList(offset, end), this.index.page(offset, 10), "page at " + offset);
+        }
+        assertEquals(expected.subList(0, 5), this.index.top(5));
+        assertTrue(this.index.page(500, 10).isEmpty());
+        assertTrue(this.index.page(0, 0).isEmpty());
+    }
+
+    @Test
+    void rankOfMatchesPagePosition() {
+        List<LeaderboardIndex.Entry> expected = this.expected();
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(i + 1, this.index.rankOf(expected.get(i).uuid()));
+        }
+        assertEquals(-1, this.index.rankOf(UUID.randomUUID()));
+    }
+
+    @Test
+    void countAboveIsStrictlyGreater() {
+        for (long threshold = -1L; threshold <= 20L; ++threshold) {
+            long limit = threshold;
+            long expected = this.balances.values().stream().filter(balance -> balance > limit).count();
+            assertEquals(expected, this.index.countAbove(threshold), "above " + threshold);
+        }
+    }
+
+    @Test
+    void refreshRekeysChangedAccounts() {
+        List<UUID> accounts = new ArrayList<>(this.balances.keySet());
+        for (int i = 0; i < 2000; ++i) {
+            this.set(accounts.get(this.random.nextInt(accounts.size())), this.random.nextInt(1000));
+        }
+        assertEquals(this.expected(), this.index.page(0, accounts.size()));
+        assertEquals(accounts.size(), this.index.size());
+    }
+
+    @Test
+    void removeDropsTheAccount() {
+        UUID leader = this.expected().get(0).uuid();
+        this.index.remove(leader);
+        this.balances.remove(leader);
+        assertEquals(-1, this.index.rankOf(leader));
+        assertEquals(499, this.index.size());
+        assertEquals(this.expected(), this.index.page(0, 500));
+    }
+
+    @Test
+    void firstAndLastAreTheExtremes() {
+        List<LeaderboardIndex.Entry> expected = this.expected();
+        assertEquals(expected.get(0), this.index.first());
+        assertEquals(expected.get(expected.size() - 1), this.index.last());
+        this.index.clear();
+        assertNull(this.index.first());
+        assertNull(this.index.last());
+        assertEquals(0, this.index.size());
+    }
+
+    private void set(UUID uuid, long balanceMinor) {
+        this.balances.put(uuid, balanceMinor);
+        this.index.refresh(uuid, PlayerBalance.restore(uuid, balanceMinor, 0L, 0L));
+    }
+
+    private List<LeaderboardIndex.Entry> expected() {
+        List<LeaderboardIndex.Entry> entries = new ArrayList<>();
+        this.balances.forEach((uuid, balance) -> entries.add(new LeaderboardIndex.Entry(uuid, balance)));
+        entries.sort(ORDER);
+        return entries;
+    }
+}
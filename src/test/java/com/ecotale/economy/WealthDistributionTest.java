@@ -0,0 +1,115 @@
+package com.ecotale.economy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class WealthDistributionTest {
+    private static final int BUCKETS = WealthDistribution.bucketOf(Long.MAX_VALUE) + 1;
+
+    @AfterEach
+    void resetScale() {
+        Money.configure(2);
+    }
+
+    @Test
+    void bucketsTileTheWholeRange() {
+        assertEquals(0L, WealthDistribution.lowerBound(0));
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            assertEquals(WealthDistribution.upperBound(i), WealthDistribution.lowerBound(i + 1), "gap after bucket " + i);
+        }
+        assertEquals(Long.MAX_VALUE, WealthDistribution.upperBound(BUCKETS - 1));
+    }
+
+    @Test
+    void boundsMapBackToTheirBucket() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            long lower = WealthDistribution.lowerBound(i);
+            long upper = WealthDistribution.upperBound(i);
+            assertEquals(i, WealthDistribution.bucketOf(lower), "lower bound of " + i);
+            assertEquals(i, WealthDistribution.bucketOf(upper - 1L), "last value of " + i);
+        }
+    }
+
+    @Test
+    void smallBalancesGetOneBucketEach() {
+        for (long balance = 0L; balance < 16L; ++balance) {
+            assertEquals((int) balance, WealthDistribution.bucketOf(balance));
+            assertEquals(balance + 1L, WealthDistribution.upperBound((int) balance));
+        }
+        assertEquals(16, WealthDistribution.bucketOf(16L));
+        assertEquals(0, WealthDistribution.bucketOf(-5L));
+    }
+
+    @Test
+    void logBucketsSpanAtMostAnEighthOfTheirLowerBound() {
+        for (int i = 16; i < BUCKETS - 1; ++i) {
+            long lower = WealthDistribution.lowerBound(i);
+            long width = WealthDistribution.upperBound(i) - lower;
+            assertTrue(width * 8L <= lower, "bucket " + i + " is too wide");
+        }
+    }
+
+    @Test
+    void quantilesStayWithinOneBucket() {
+        WealthDistribution distribution = new WealthDistribution();
+        for (long balance = 1L; balance <= 10_000L; ++balance) {
+            distribution.add(balance);
+        }
+        assertEquals(0L, new WealthDistribution().quantileMinor(0.5));
+        assertEquals(1L, distribution.quantileMinor(0.0));
+        assertWithinEighth(5_000L, distribution.quantileMinor(0.5));
+        assertWithinEighth(9_000L, distribution.quantileMinor(0.9));
+        assertWithinEighth(9_900L, distribution.quantileMinor(0.99));
+    }
+
+    @Test
+    void moveKeepsCountsAndSums() {
+        WealthDistribution distribution = new WealthDistribution();
+        distribution.add(1_000L);
+        distribution.add(1_000L);
+        distribution.move(1_000L, 1_001L);
+        distribution.move(1_001L, 50_000L);
+        distribution.remove(1_000L);
+        // One account left, in the bucket of 50_000
+        assertEquals(WealthDistribution.bucketOf(50_000L), WealthDistribution.bucketOf(distribution.quantileMinor(0.0)));
+        assertEquals(WealthDistribution.bucketOf(50_000L), WealthDistribution.bucketOf(distribution.quantileMinor(1.0)));
+        assertEquals(0.0, distribution.getGini(), 1e-9);
+    }
+
+    @Test
+    void giniOfEqualAndConcentratedWealth() {
+        WealthDistribution equal = new WealthDistribution();
+        WealthDistribution concentrated = new WealthDistribution();
+        for (int i = 0; i < 10; ++i) {
+            equal.add(500L);
+            concentrated.add(i == 0 ? 1_000_000L : 0L);
+        }
+        assertEquals(0.0, equal.getGini(), 1e-9);
+        assertEquals(0.9, concentrated.getGini(), 1e-9);
+    }
+
+    @Test
+    void bracketsArePowersOfTenOfWholeUnits() {
+        Money.configure(2);
+        WealthDistribution distribution = new WealthDistribution();
+        distribution.add(50L);
+        distribution.add(500L);
+        distribution.add(520L);
+        distribution.add(400_000L);
+        List<WealthDistribution.Bracket> brackets = distribution.getBrackets();
+        assertEquals(List.of(
+            new WealthDistribution.Bracket(0.0, 1.0, 1L),
+            new WealthDistribution.Bracket(1.0, 10.0, 2L),
+            new WealthDistribution.Bracket(10.0, 100.0, 0L),
+            new WealthDistribution.Bracket(100.0, 1_000.0, 0L),
+            new WealthDistribution.Bracket(1_000.0, 10_000.0, 1L)), brackets);
+    }
+
+    private static void assertWithinEighth(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) * 8L <= expected, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,210 @@
+package com.ecotale.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    @Test
+    void reusesTheMostRecentlyReturnedConnection() throws SQLException {
+        ConnectionPool pool = this.pool(2, 100L);
+        Connection first;
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            first = lease.connection();
+            assertEquals(1, pool.getActive());
+        }
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertSame(first, lease.connection());
+        }
+        assertEquals(1, this.opened.size());
+        assertEquals(0, pool.getActive());
+        assertEquals(1, pool.getIdle());
+        // Returned moments ago, so it was not validated
+        assertEquals(0, this.opened.get(0).validations);
+    }
+
+    @Test
+    void validatesConnectionsThatSatIdleAndReplacesDeadOnes() throws Exception {
+        ConnectionPool pool = this.pool(1, 100L);
+        Connection first;
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            first = lease.connection();
+        }
+        this.opened.get(0).valid = false;
+        Thread.sleep(1100L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertNotSame(first, lease.connection());
+        }
+        assertEquals(1, this.opened.get(0).validations);
+        assertTrue(this.opened.get(0).closed);
+        assertEquals(2, this.opened.size());
+    }
+
+    @Test
+    void discardsConnectionsClosedBehindItsBack() throws SQLException {
+        ConnectionPool pool = this.pool(1, 100L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            lease.connection();
+        }
+        this.opened.get(0).closed = true;
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertSame(this.opened.get(1).proxy, lease.connection());
+        }
+    }
+
+    @Test
+    void brokenLeasesAreClosedInsteadOfReturned() throws SQLException {
+        ConnectionPool pool = this.pool(1, 100L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            lease.markBroken();
+        }
+        assertTrue(this.opened.get(0).closed);
+        assertEquals(0, pool.getIdle());
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    void rollsBackUnfinishedTransactionsOnRelease() throws SQLException {
+        ConnectionPool pool = this.pool(1, 100L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            lease.connection().setAutoCommit(false);
+        }
+        FakeConnection connection = this.opened.get(0);
+        assertEquals(1, connection.rollbacks);
+        assertTrue(connection.autoCommit);
+    }
+
+    @Test
+    void borrowTimesOutWhenEveryConnectionIsLeased() throws SQLException {
+        ConnectionPool pool = this.pool(1, 50L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertThrows(SQLTimeoutException.class, pool::borrow);
+        }
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertEquals(1, pool.getActive());
+        }
+    }
+
+    @Test
+    void failedOpensBackOffExponentially() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        boolean[] reachable = {false};
+        ConnectionPool pool = new ConnectionPool("test", () -> {
+            attempts.incrementAndGet();
+            if (!reachable[0]) {
+                throw new SQLNonTransientConnectionException("down", "08001");
+            }
+            return this.open();
+        }, 2, 100L, 1);
+
+        assertThrows(SQLNonTransientConnectionException.class, pool::borrow);
+        // Within the 250 ms backoff callers fail fast without touching the server
+        assertThrows(SQLTransientConnectionException.class, pool::borrow);
+        assertEquals(1, attempts.get());
+        assertEquals(0, pool.getActive());
+
+        Thread.sleep(400L);
+        assertThrows(SQLNonTransientConnectionException.class, pool::borrow);
+        assertEquals(2, attempts.get());
+        // The second failure doubles the backoff to 500 ms
+        Thread.sleep(250L);
+        assertThrows(SQLTransientConnectionException.class, pool::borrow);
+        assertEquals(2, attempts.get());
+
+        reachable[0] = true;
+        Thread.sleep(400L);
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            assertSame(this.opened.get(0).proxy, lease.connection());
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    void closedPoolRejectsBorrowsAndClosesReturnedConnections() throws SQLException {
+        ConnectionPool pool = this.pool(2, 100L);
+        ConnectionPool.Lease leased = pool.borrow();
+        pool.borrow().close();
+        pool.close();
+        assertThrows(SQLException.class, pool::borrow);
+        leased.close();
+        assertTrue(this.opened.stream().allMatch(connection -> connection.closed));
+    }
+
+    @Test
+    void classifiesConnectionErrors() {
+        assertTrue(ConnectionPool.isConnectionError(new SQLTransientConnectionException("timeout")));
+        assertTrue(ConnectionPool.isConnectionError(new SQLNonTransientConnectionException("gone")));
+        assertTrue(ConnectionPool.isConnectionError(new SQLException("link failure", "08S01")));
+        assertFalse(ConnectionPool.isConnectionError(new SQLSyntaxErrorException("bad sql", "42000")));
+        assertFalse(ConnectionPool.isConnectionError(new SQLException("no state")));
+    }
+
+    private ConnectionPool pool(int size, long borrowTimeoutMs) {
+        return new ConnectionPool("test", this::open, size, borrowTimeoutMs, 1);
+    }
+
+    private Connection open() {
+        FakeConnection connection = new FakeConnection();
+        this.opened.add(connection);
+        return connection.proxy;
+    }
+
+    /**
+     * Connection stub that records what the pool does with it.
+     */
+    private static final class FakeConnection {
+        final Connection proxy;
+        boolean closed;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int validations;
+        int rollbacks;
+
+        FakeConnection() {
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (self, method, args) -> {
+                switch (method.getName()) {
+                    case "isClosed":
+                        return this.closed;
+                    case "isValid":
+                        ++this.validations;
+                        return this.valid;
+                    case "close":
+                        this.closed = true;
+                        return null;
+                    case "getAutoCommit":
+                        return this.autoCommit;
+                    case "setAutoCommit":
+                        this.autoCommit = (Boolean) args[0];
+                        return null;
+                    case "rollback":
+                        ++this.rollbacks;
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+}
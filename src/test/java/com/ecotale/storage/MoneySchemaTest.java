@@ -0,0 +1,128 @@
+package com.ecotale.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.ecotale.economy.Money;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MoneySchemaTest {
+    private static final List<MoneySchema.MoneyColumn> COLUMNS = List.of(
+        new MoneySchema.MoneyColumn("balances", "balance", "BIGINT DEFAULT 0"),
+        new MoneySchema.MoneyColumn("transactions", "amount", "BIGINT"));
+
+    private Connection connection;
+
+    @BeforeEach
+    void open() throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:h2:mem:money_schema;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        try (Statement stmt = this.connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        this.connection.close();
+        Money.configure(2);
+    }
+
+    @Test
+    void convertsLegacyDoublesAtTheCurrentScale() throws SQLException {
+        this.createTables("DOUBLE", "DOUBLE");
+        this.execute("INSERT INTO balances VALUES (12.34)", "INSERT INTO transactions VALUES (5.5)");
+        Money.configure(2);
+
+        this.schema().ensureMinorUnits(COLUMNS);
+
+        assertEquals(1234L, this.read("balances", "balance"));
+        assertEquals(550L, this.read("transactions", "amount"));
+        assertEquals("2", this.meta("money_scale"));
+    }
+
+    @Test
+    void convertThenRescaleDoesNotScaleTheConvertedColumnTwice() throws SQLException {
+        // balances already in minor units at 2 decimals, transactions still a legacy DOUBLE
+        this.createTables("BIGINT", "DOUBLE");
+        this.execute("INSERT INTO balances VALUES (1234)", "INSERT INTO transactions VALUES (5.5)");
+        this.storeScale("2");
+        Money.configure(3);
+
+        this.schema().ensureMinorUnits(COLUMNS);
+
+        assertEquals(12340L, this.read("balances", "balance"));
+        assertEquals(5500L, this.read("transactions", "amount"));
+        assertEquals("3", this.meta("money_scale"));
+        assertNull(this.meta("minor_scaled:transactions.amount"));
+    }
+
+    @Test
+    void resumesAConversionInterruptedBeforeTheAlter() throws SQLException {
+        // A crash left the UPDATE committed (marker at 2 decimals) but the column still DOUBLE
+        this.createTables("BIGINT", "DOUBLE");
+        this.execute("INSERT INTO balances VALUES (1234)", "INSERT INTO transactions VALUES (550)");
+        this.storeScale("2");
+        this.execute("INSERT INTO ecotale_meta VALUES ('minor_scaled:transactions.amount', '2')");
+        Money.configure(3);
+
+        this.schema().ensureMinorUnits(COLUMNS);
+
+        assertEquals(12340L, this.read("balances", "balance"));
+        assertEquals(5500L, this.read("transactions", "amount"));
+    }
+
+    @Test
+    void runningTwiceIsANoOp() throws SQLException {
+        this.createTables("DOUBLE", "DOUBLE");
+        this.execute("INSERT INTO balances VALUES (12.34)", "INSERT INTO transactions VALUES (5.5)");
+        Money.configure(2);
+
+        this.schema().ensureMinorUnits(COLUMNS);
+        this.schema().ensureMinorUnits(COLUMNS);
+
+        assertEquals(1234L, this.read("balances", "balance"));
+        assertEquals(550L, this.read("transactions", "amount"));
+    }
+
+    private MoneySchema schema() {
+        return new MoneySchema(this.connection, "ecotale_meta", false);
+    }
+
+    private void storeScale(String scale) throws SQLException {
+        SchemaMeta meta = new SchemaMeta(this.connection, "ecotale_meta");
+        meta.ensureTable();
+        meta.set("money_scale", scale);
+    }
+
+    private void createTables(String balanceType, String amountType) throws SQLException {
+        this.execute("CREATE TABLE balances (balance " + balanceType + ")", "CREATE TABLE transactions (amount " + amountType + ")");
+    }
+
+    private void execute(String... sql) throws SQLException {
+        try (Statement stmt = this.connection.createStatement()) {
+            for (String statement : sql) {
+                stmt.execute(statement);
+            }
+        }
+    }
+
+    private long read(String table, String column) throws SQLException {
+        try (Statement stmt = this.connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + column + " FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private String meta(String key) throws SQLException {
+        return new SchemaMeta(this.connection, "ecotale_meta").get(key);
+    }
+}
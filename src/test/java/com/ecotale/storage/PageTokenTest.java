@@ -0,0 +1,70 @@
+package com.ecotale.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class PageTokenTest {
+
+    @Test
+    void roundTripsEveryKind() {
+        UUID uuid = UUID.randomUUID();
+        assertEquals(new PageToken.Key(123_456L, 0L, uuid), PageToken.decode(PageToken.encode(PageToken.BALANCE, 123_456L, 0L, uuid), PageToken.BALANCE));
+        assertEquals(new PageToken.Key(-42L, 7L, uuid), PageToken.decode(PageToken.encode(PageToken.TREND, -42L, 7L, uuid), PageToken.TREND));
+        assertEquals(new PageToken.Key(1_700_000_000_000L, 99L, null), PageToken.decode(PageToken.encode(PageToken.LOG, 1_700_000_000_000L, 99L, null), PageToken.LOG));
+    }
+
+    @Test
+    void roundTripsExtremeValues() {
+        UUID uuid = new UUID(-1L, -1L);
+        PageToken.Key key = PageToken.decode(PageToken.encode(PageToken.BALANCE, Long.MIN_VALUE, Long.MAX_VALUE, uuid), PageToken.BALANCE);
+        assertEquals(new PageToken.Key(Long.MIN_VALUE, Long.MAX_VALUE, uuid), key);
+    }
+
+    @Test
+    void tokensAreUrlSafe() {
+        String token = PageToken.encode(PageToken.BALANCE, Long.MAX_VALUE, 0L, new UUID(-1L, -1L));
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void missingTokenMeansFirstPage() {
+        assertNull(PageToken.decode(null, PageToken.BALANCE));
+        assertNull(PageToken.decode("", PageToken.BALANCE));
+    }
+
+    @Test
+    void rejectsTokensFromAnotherQuery() {
+        String token = PageToken.encode(PageToken.LOG, 1L, 2L, null);
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, PageToken.TREND));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        String uuid = UUID.randomUUID().toString();
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("not base64!", PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("B:12x:0:" + uuid), PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("B:12:0:not-a-uuid"), PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("B:12:0"), PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("B:12:0:" + uuid + ":extra"), PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("BB:12:0:" + uuid), PageToken.BALANCE));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(raw("B:99999999999999999999:0:" + uuid), PageToken.BALANCE));
+    }
+
+    @Test
+    void truncatedTokensAreRejected() {
+        String token = PageToken.encode(PageToken.BALANCE, 5_000L, 0L, UUID.randomUUID());
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token.substring(0, token.length() - 4), PageToken.BALANCE));
+    }
+
+    private static String raw(String content) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
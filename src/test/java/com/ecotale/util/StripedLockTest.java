@@ -0,0 +1,138 @@
+package com.ecotale.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class StripedLockTest {
+    private final StripedLock locks = new StripedLock(16);
+
+    @Test
+    void stripeCountIsRoundedUpToAPowerOfTwo() {
+        assertEquals(16, this.locks.size());
+        assertEquals(64, new StripedLock(64).size());
+        assertEquals(128, new StripedLock(65).size());
+        assertTrue(new StripedLock().size() >= 64);
+    }
+
+    @Test
+    void sameAccountAlwaysMapsToTheSameLock() {
+        for (int i = 0; i < 1000; ++i) {
+            UUID uuid = UUID.randomUUID();
+            int index = this.locks.indexOf(uuid);
+            assertTrue(index >= 0 && index < this.locks.size());
+            assertEquals(index, this.locks.indexOf(new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())));
+            assertSame(this.locks.get(uuid), this.locks.get(uuid));
+        }
+    }
+
+    @Test
+    void lockBothTakesASharedStripeOnce() {
+        UUID a = UUID.randomUUID();
+        UUID b = this.onSameStripe(a);
+        ReentrantLock stripe = this.locks.get(a);
+        this.locks.lockBoth(a, b);
+        assertEquals(1, stripe.getHoldCount());
+        this.locks.unlockBoth(a, b);
+        assertFalse(stripe.isHeldByCurrentThread());
+    }
+
+    @Test
+    void lockAllLocksEachStripeOnceInAscendingOrder() {
+        UUID a = UUID.randomUUID();
+        UUID b = this.onSameStripe(a);
+        UUID c = this.onOtherStripe(a);
+        int[] indices = this.locks.lockAll(List.of(c, a, b));
+        int low = Math.min(this.locks.indexOf(a), this.locks.indexOf(c));
+        int high = Math.max(this.locks.indexOf(a), this.locks.indexOf(c));
+        assertArrayEquals(new int[] {low, high}, indices);
+        assertEquals(1, this.locks.get(a).getHoldCount());
+        assertEquals(1, this.locks.get(c).getHoldCount());
+        this.locks.unlockAll(indices);
+        assertFalse(this.locks.get(a).isHeldByCurrentThread());
+        assertFalse(this.locks.get(c).isHeldByCurrentThread());
+    }
+
+    @Test
+    void opposingTransfersAndBatchesDoNotDeadlock() throws InterruptedException {
+        List<UUID> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            accounts.add(UUID.randomUUID());
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; ++t) {
+            boolean batches = t % 2 == 0;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; ++i) {
+                    UUID from = accounts.get(random.nextInt(accounts.size()));
+                    UUID to = accounts.get(random.nextInt(accounts.size()));
+                    if (batches) {
+                        int[] indices = this.locks.lockAll(List.of(to, from, accounts.get(random.nextInt(accounts.size()))));
+                        this.locks.unlockAll(indices);
+                    } else {
+                        this.locks.lockBoth(from, to);
+                        this.locks.unlockBoth(from, to);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30_000L);
+            assertFalse(thread.isAlive(), "lock ordering deadlocked");
+        }
+    }
+
+    @Test
+    void stripeLockIsMutuallyExclusive() throws InterruptedException {
+        UUID account = UUID.randomUUID();
+        long[] balance = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; ++t) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; ++i) {
+                    ReentrantLock lock = this.locks.get(account);
+                    lock.lock();
+                    try {
+                        ++balance[0];
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000L, balance[0]);
+    }
+
+    private UUID onSameStripe(UUID account) {
+        UUID other;
+        do {
+            other = UUID.randomUUID();
+        } while (other.equals(account) || this.locks.indexOf(other) != this.locks.indexOf(account));
+        return other;
+    }
+
+    private UUID onOtherStripe(UUID account) {
+        UUID other;
+        do {
+            other = UUID.randomUUID();
+        } while (this.locks.indexOf(other) == this.locks.indexOf(account));
+        return other;
+    }
+}